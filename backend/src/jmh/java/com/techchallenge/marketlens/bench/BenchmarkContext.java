@@ -0,0 +1,61 @@
+package com.techchallenge.marketlens.bench;
+
+import com.techchallenge.marketlens.MarketlensApplication;
+import com.techchallenge.marketlens.service.PriceStatisticsService;
+import com.techchallenge.marketlens.service.ProductCatalogService;
+import com.techchallenge.marketlens.service.ProductItemColumnStore;
+import com.techchallenge.marketlens.service.ProductSearchIndex;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Sobe a aplicação (sem servidor web) num H2 em memória exclusivo e popula com o gerador sintético.
+ * Cada benchmark cria o seu contexto no @Setup(Level.Trial) e fecha no @TearDown.
+ */
+public final class BenchmarkContext implements AutoCloseable {
+
+    private final ConfigurableApplicationContext context;
+    private final SyntheticReceiptGenerator.Result data;
+
+    private BenchmarkContext(ConfigurableApplicationContext context, SyntheticReceiptGenerator.Result data) {
+        this.context = context;
+        this.data = data;
+    }
+
+    public static BenchmarkContext start(SyntheticReceiptGenerator.Spec spec) {
+        // Argumentos de linha de comando têm prioridade sobre o application.properties.
+        // O schema do banco em memória vem das migrações do Flyway, igual à aplicação
+        ConfigurableApplicationContext context = new SpringApplicationBuilder(MarketlensApplication.class)
+                .web(WebApplicationType.NONE)
+                .run("--spring.datasource.url=jdbc:h2:mem:bench-" + System.nanoTime() + ";DB_CLOSE_DELAY=-1",
+                     "--spring.jpa.show-sql=false",
+                     "--spring.main.banner-mode=off",
+                     "--logging.level.root=WARN");
+
+        SyntheticReceiptGenerator.Result data = new SyntheticReceiptGenerator()
+                .generate(context.getBean(JdbcTemplate.class), context.getBean(ProductCatalogService.class), spec);
+        System.out.printf("%n[bench] %d notas / %d itens gerados em %d ms%n", data.receipts(), data.items(), data.elapsedMs());
+
+        // Os dados entraram direto via JDBC: reconstrói as estruturas em memória que a aplicação mantém
+        context.getBean(ProductSearchIndex.class).rebuild();
+        context.getBean(PriceStatisticsService.class).rebuild();
+        context.getBean(ProductItemColumnStore.class).rebuild();
+
+        return new BenchmarkContext(context, data);
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.getBean(type);
+    }
+
+    public SyntheticReceiptGenerator.Result data() {
+        return data;
+    }
+
+    @Override
+    public void close() {
+        context.close();
+    }
+}
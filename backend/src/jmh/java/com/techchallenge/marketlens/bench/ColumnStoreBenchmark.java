@@ -0,0 +1,102 @@
+package com.techchallenge.marketlens.bench;
+
+import com.techchallenge.marketlens.repository.ReferenceItemQueries;
+import com.techchallenge.marketlens.repository.projection.DailyPriceAggregate;
+import com.techchallenge.marketlens.repository.projection.PricePoint;
+import com.techchallenge.marketlens.service.HistoricalPriceSnapshot;
+import com.techchallenge.marketlens.service.ProductCatalogService;
+import com.techchallenge.marketlens.service.ProductItemColumnStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Leituras analíticas: consulta no banco (ReferenceItemQueries, o caminho antigo, via JDBC) x retrato colunar em
+ * memória (ProductItemColumnStore), com o mesmo resultado. Cada par mede a mesma pergunta.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ColumnStoreBenchmark {
+
+    private static final List<String> ESSENTIAL_CATEGORIES = List.of("MERCEARIA", "LIMPEZA", "HIGIENE", "LATICINIOS");
+
+    @Param({"Leite"})
+    public String subCategory;
+
+    private Long catalogProductId;
+    private ReferenceItemQueries database;
+
+    @Setup(Level.Trial)
+    public void resolveProduct(Dataset dataset) {
+        catalogProductId = dataset.bean(ProductCatalogService.class).findProductId(subCategory);
+        database = new ReferenceItemQueries(dataset.bean(JdbcTemplate.class));
+    }
+
+    // Histórico "cru" de um produto do catálogo (/category-history)
+    @Benchmark
+    public List<ReferenceItemQueries.Point> historyDatabase() {
+        return database.pricePointsByCatalogProduct(catalogProductId);
+    }
+
+    @Benchmark
+    public List<PricePoint> historyColumnar(Dataset dataset) {
+        return dataset.bean(ProductItemColumnStore.class).query().catalogProduct(catalogProductId).pricePoints();
+    }
+
+    // Agregado por dia + mercado (base do /price-series)
+    @Benchmark
+    public List<ReferenceItemQueries.Day> dailyPricesDatabase() {
+        return database.dailyPricesByCatalogProduct(catalogProductId);
+    }
+
+    @Benchmark
+    public List<DailyPriceAggregate> dailyPricesColumnar(Dataset dataset) {
+        return dataset.bean(ProductItemColumnStore.class).query().catalogProduct(catalogProductId).dailyPrices();
+    }
+
+    // Retrato de preços do planejador (média por nome de produto)
+    @Benchmark
+    public HistoricalPriceSnapshot priceSnapshotDatabase() {
+        return new HistoricalPriceSnapshot(database.productTotals());
+    }
+
+    @Benchmark
+    public HistoricalPriceSnapshot priceSnapshotColumnar(Dataset dataset) {
+        return HistoricalPriceSnapshot.of(dataset.bean(ProductItemColumnStore.class).query()
+                .groupBy(ProductItemColumnStore.Dimension.PRODUCT_NAME));
+    }
+
+    // Essenciais dos últimos 60 dias da família 1 (injeção de histórico do planejador)
+    @Benchmark
+    public List<String> essentialsDatabase() {
+        return database.essentialItemsSince(1L, LocalDateTime.now().minusDays(60));
+    }
+
+    @Benchmark
+    public List<String> essentialsColumnar(Dataset dataset) {
+        return dataset.bean(ProductItemColumnStore.class).query()
+                .household(1L)
+                .categories(ESSENTIAL_CATEGORIES)
+                .between(LocalDate.now().minusDays(60), null)
+                .distinctProductNames();
+    }
+}
@@ -0,0 +1,49 @@
+package com.techchallenge.marketlens.bench;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Estado compartilhado pelos benchmarks que precisam do banco: a aplicação + a massa sintética.
+ * O tamanho é controlado pelos @Param (ex.: -p households=100 -p receiptsPerHousehold=200 -p itemsPerReceipt=50
+ * gera 1 milhão de ProductItem).
+ */
+@State(Scope.Benchmark)
+public class Dataset {
+
+    @Param({"20"})
+    public int households;
+
+    @Param({"50"})
+    public int receiptsPerHousehold;
+
+    @Param({"30"})
+    public int itemsPerReceipt;
+
+    @Param({"365"})
+    public int daySpan;
+
+    @Param({"42"})
+    public long seed;
+
+    private BenchmarkContext context;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start(new SyntheticReceiptGenerator.Spec(
+                households, receiptsPerHousehold, itemsPerReceipt, daySpan, seed));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    public <T> T bean(Class<T> type) {
+        return context.bean(type);
+    }
+}
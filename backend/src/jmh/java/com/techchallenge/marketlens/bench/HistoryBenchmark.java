@@ -0,0 +1,85 @@
+package com.techchallenge.marketlens.bench;
+
+import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.repository.projection.PricePoint;
+import com.techchallenge.marketlens.service.PriceSeriesService;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Histórico de preços: entidades com a nota carregada item a item (caminho antigo do /category-history)
+ * x pontos e série semanal do PriceSeriesService (retrato colunar; ver ColumnStoreBenchmark para o par com o banco).
+ * Como nos endpoints, o histórico é o de uma família (a 1).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class HistoryBenchmark {
+
+    private static final Long HOUSEHOLD = 1L;
+
+    @Param({"Leite", "Arroz"})
+    public String subCategory;
+
+    // Os dois lados têm que achar os mesmos itens: uma comparação com 0 linhas não mede nada
+    @Setup(Level.Trial)
+    public void checkRowCounts(Dataset dataset) {
+        int legacy = legacyItems(dataset).size();
+        int projected = rawProjection(dataset).size();
+        if (legacy == 0 || legacy != projected) {
+            throw new IllegalStateException("Histórico de '" + subCategory + "': " + legacy + " itens pela query antiga, "
+                    + projected + " pelo PriceSeriesService");
+        }
+    }
+
+    @Benchmark
+    public List<LocalDateTime> legacyEntities(Dataset dataset) {
+        return legacyItems(dataset).stream()
+                .map(item -> item.getReceipt().getDate())
+                .filter(Objects::nonNull)
+                .sorted(Comparator.naturalOrder())
+                .toList();
+    }
+
+    // A antiga busca do repositório: entidades, com a nota de cada item carregada pelo @ManyToOne
+    // (o *_norm guarda o TextNormalizer.fold do texto, então o parâmetro vai normalizado do mesmo jeito)
+    private List<ProductItem> legacyItems(Dataset dataset) {
+        return dataset.bean(EntityManager.class)
+                .createQuery("SELECT p FROM ProductItem p WHERE p.receipt.householdId = :household " +
+                        "AND p.subCategoryNorm = :subCategory", ProductItem.class)
+                .setParameter("household", HOUSEHOLD)
+                .setParameter("subCategory", TextNormalizer.fold(subCategory))
+                .getResultList();
+    }
+
+    @Benchmark
+    public List<PricePoint> rawProjection(Dataset dataset) {
+        return dataset.bean(PriceSeriesService.class).rawBySubCategory(HOUSEHOLD, subCategory);
+    }
+
+    @Benchmark
+    public List<PriceSeriesService.PriceBucket> weeklySeries(Dataset dataset) {
+        return dataset.bean(PriceSeriesService.class).seriesBySubCategory(HOUSEHOLD, subCategory, PriceSeriesService.Resolution.WEEKLY, false);
+    }
+}
@@ -0,0 +1,34 @@
+package com.techchallenge.marketlens.bench;
+
+import com.techchallenge.marketlens.dto.PlannerBatchResultDTO;
+import com.techchallenge.marketlens.dto.PlannerSummaryDTO;
+import com.techchallenge.marketlens.service.PlannerBatchService;
+import com.techchallenge.marketlens.service.PlannerService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlannerBenchmark {
+
+    @Benchmark
+    public PlannerSummaryDTO generateMonthlyPlan(Dataset dataset) {
+        return dataset.bean(PlannerService.class).generateMonthlyPlan(1L);
+    }
+
+    // Todas as famílias do dataset, em paralelo, com o retrato de preços compartilhado
+    @Benchmark
+    public PlannerBatchResultDTO generateAllHouseholds(Dataset dataset) {
+        return dataset.bean(PlannerBatchService.class).generatePlans(null);
+    }
+}
@@ -0,0 +1,78 @@
+package com.techchallenge.marketlens.bench;
+
+import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.service.ProductSearchIndex;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import jakarta.persistence.EntityManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Autocomplete: varredura LIKE do searchAny (caminho antigo do /search-smart) x índice de trigramas,
+ * os dois nas notas de uma família (a 1), como no endpoint.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SearchBenchmark {
+
+    private static final Long HOUSEHOLD = 1L;
+
+    @Param({"le", "leite", "sabao em po", "cafe"})
+    public String query;
+
+    // A varredura tem que achar itens sempre que o índice acha: uma comparação com 0 linhas não mede nada
+    @Setup(Level.Trial)
+    public void checkRowCounts(Dataset dataset) {
+        int scanned = searchAnyScan(dataset).size();
+        int indexed = searchIndex(dataset).size();
+        if (indexed == 0 || scanned == 0) {
+            throw new IllegalStateException("Busca '" + query + "': " + scanned + " nomes pela varredura, "
+                    + indexed + " termos pelo índice");
+        }
+    }
+
+    @Benchmark
+    public List<String> searchAnyScan(Dataset dataset) {
+        // Reproduz o que o /search-smart fazia: carrega as entidades e deduplica em memória.
+        // O *_norm guarda o TextNormalizer.fold do texto, então o parâmetro vai normalizado do mesmo jeito
+        return dataset.bean(EntityManager.class)
+                .createQuery("SELECT p FROM ProductItem p WHERE p.receipt.householdId = :household AND (" +
+                        "p.productNameNorm LIKE CONCAT('%', :text, '%') OR " +
+                        "p.categoryNorm LIKE CONCAT('%', :text, '%') OR " +
+                        "p.subCategoryNorm LIKE CONCAT('%', :text, '%'))", ProductItem.class)
+                .setParameter("household", HOUSEHOLD)
+                .setParameter("text", TextNormalizer.fold(query))
+                .getResultList().stream()
+                .map(ProductItem::getProductName)
+                .distinct()
+                .limit(10)
+                .toList();
+    }
+
+    @Benchmark
+    public List<ProductSearchIndex.SearchHit> searchIndex(Dataset dataset) {
+        // Mesma composição do /search-smart: categorias primeiro, depois produtos
+        ProductSearchIndex index = dataset.bean(ProductSearchIndex.class);
+        List<ProductSearchIndex.SearchHit> hits = new ArrayList<>(index.search(HOUSEHOLD, query, ProductSearchIndex.TermType.CATEGORIA, 10));
+        hits.addAll(index.search(HOUSEHOLD, query, ProductSearchIndex.TermType.PRODUTO, 10 - hits.size()));
+        return hits;
+    }
+}
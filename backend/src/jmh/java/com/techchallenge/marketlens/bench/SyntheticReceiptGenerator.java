@@ -0,0 +1,141 @@
+package com.techchallenge.marketlens.bench;
+
+import com.techchallenge.marketlens.service.ProductCatalogService;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Gera um histórico de compras sintético e DETERMINÍSTICO (mesma semente = mesmos dados)
+ * direto via JDBC em lote, para conseguir chegar a milhões de ProductItem no H2 em segundos.
+ */
+public class SyntheticReceiptGenerator {
+
+    private static final int BATCH_SIZE = 1_000;
+
+    // subCategoria, categoria macro, unidade, preço base, variações de marca/tamanho do nome
+    private static final Product[] CATALOG = {
+        new Product("Arroz", "MERCEARIA", "UN", 25.90, "Arroz Tio João 5kg", "Arroz Camil 5kg", "Arroz Parboilizado Prato Fino 5kg"),
+        new Product("Feijão", "MERCEARIA", "UN", 8.50, "Feijão Carioca Kicaldo 1kg", "Feijão Preto Camil 1kg"),
+        new Product("Macarrão", "MERCEARIA", "UN", 4.20, "Macarrão Espaguete Renata", "Macarrão Parafuso Adria"),
+        new Product("Óleo de Soja", "MERCEARIA", "UN", 6.50, "Óleo de Soja Liza 900ml", "Óleo de Soja Soya 900ml"),
+        new Product("Açúcar", "MERCEARIA", "UN", 4.50, "Açúcar Refinado União 1kg", "Açúcar Cristal Caravelas 1kg"),
+        new Product("Café", "MERCEARIA", "UN", 18.90, "Café Pilão 500g", "Café Melitta Tradicional 500g"),
+        new Product("Ovos", "MERCEARIA", "UN", 17.90, "Ovos Brancos Dúzia", "Ovos Vermelhos Caipira 12un"),
+        new Product("Leite", "LATICINIOS", "UN", 4.80, "Leite Integral Italac 1L", "Leite Desnatado Parmalat 1L", "Leite Semidesnatado Piracanjuba 1L"),
+        new Product("Manteiga", "LATICINIOS", "UN", 12.50, "Manteiga Aviação 200g", "Manteiga Itambé com Sal 200g"),
+        new Product("Queijo", "LATICINIOS", "KG", 49.90, "Queijo Mussarela Fatiado", "Queijo Prato Tirolez"),
+        new Product("Iogurte", "LATICINIOS", "UN", 3.90, "Iogurte Natural Nestlé", "Iogurte Morango Danone"),
+        new Product("Carne Bovina", "ACOGUE", "KG", 42.90, "Patinho Bovino", "Contra Filé Bovino", "Acém Moído"),
+        new Product("Frango", "ACOGUE", "KG", 19.90, "Peito de Frango Sadia", "Sobrecoxa de Frango Seara"),
+        new Product("Pão", "PADARIA", "UN", 8.50, "Pão Francês", "Pão de Forma Wickbold", "Pão de Forma Pullman"),
+        new Product("Banana", "HORTIFRUTI", "KG", 6.90, "Banana Prata", "Banana Nanica"),
+        new Product("Tomate", "HORTIFRUTI", "KG", 8.90, "Tomate Italiano", "Tomate Carmem"),
+        new Product("Alface", "HORTIFRUTI", "UN", 3.50, "Alface Crespa", "Alface Americana"),
+        new Product("Sabão em Pó", "LIMPEZA", "UN", 14.50, "Sabão em Pó Omo 1.6kg", "Sabão em Pó Brilhante 1.6kg"),
+        new Product("Detergente", "LIMPEZA", "UN", 2.90, "Detergente Ypê Neutro 500ml", "Detergente Limpol 500ml"),
+        new Product("Água Sanitária", "LIMPEZA", "UN", 5.90, "Água Sanitária Qboa 2L", "Água Sanitária Ypê 2L"),
+        new Product("Sabonete", "HIGIENE", "UN", 2.50, "Sabonete Dove 90g", "Sabonete Lux 85g"),
+        new Product("Creme Dental", "HIGIENE", "UN", 5.90, "Creme Dental Colgate 90g", "Creme Dental Sorriso 90g"),
+        new Product("Papel Higiênico", "HIGIENE", "UN", 19.90, "Papel Higiênico Neve 12 rolos", "Papel Higiênico Personal 12 rolos"),
+        new Product("Refrigerante", "BEBIDAS", "UN", 9.90, "Refrigerante Coca-Cola 2L", "Refrigerante Guaraná Antarctica 2L"),
+        new Product("Cerveja", "BEBIDAS", "UN", 4.50, "Cerveja Skol Lata 350ml", "Cerveja Brahma Lata 350ml"),
+    };
+
+    private static final String[] SUPERMARKETS = {
+        "Supermercado Preço Bom", "Mercadão da Cidade", "Carrefour Bairro", "Atacadão Centro", "Pão de Açúcar"
+    };
+
+    public record Spec(int households, int receiptsPerHousehold, int itemsPerReceipt, int daySpan, long seed) {
+        public long totalItems() {
+            return (long) households * receiptsPerHousehold * itemsPerReceipt;
+        }
+    }
+
+    public record Result(long receipts, long items, long elapsedMs) {}
+
+    public Result generate(JdbcTemplate jdbc, ProductCatalogService catalog, Spec spec) {
+        long start = System.currentTimeMillis();
+
+        // Cada variante de nome já ligada ao produto do catálogo, como a ingestão faria (1 vez por nome, não por item)
+        Map<String, Long> catalogIdByName = new HashMap<>();
+        for (Product product : CATALOG) {
+            for (String name : product.names()) {
+                catalogIdByName.put(name, catalog.resolve(name, product.subCategory(), product.category()));
+            }
+        }
+        Random random = new Random(spec.seed());
+        LocalDateTime end = LocalDateTime.now().withNano(0);
+
+        // Uma família (household) por perfil, com ids 1..households
+        List<Object[]> profileRows = new ArrayList<>();
+        for (int household = 0; household < spec.households(); household++) {
+            profileRows.add(new Object[] {household + 1L, 1 + random.nextInt(3), random.nextInt(4), 800 + random.nextInt(40) * 50});
+        }
+        jdbc.batchUpdate("INSERT INTO family_profiles (household_id, adults_count, children_count, monthly_budget) VALUES (?, ?, ?, ?)", profileRows);
+
+        List<Object[]> receiptRows = new ArrayList<>(BATCH_SIZE);
+        List<Object[]> itemRows = new ArrayList<>(BATCH_SIZE);
+        long receiptId = 0;
+        long itemId = 0;
+
+        for (int household = 0; household < spec.households(); household++) {
+            for (int r = 0; r < spec.receiptsPerHousehold(); r++) {
+                receiptId++;
+                int daysAgo = random.nextInt(Math.max(1, spec.daySpan()));
+                LocalDateTime date = end.minusDays(daysAgo).withHour(8 + random.nextInt(12)).withMinute(random.nextInt(60));
+                // Inflação simulada: preços ~6% ao ano mais baixos no passado
+                double inflation = Math.pow(1.06, -daysAgo / 365.0);
+                String supermarket = SUPERMARKETS[(household + random.nextInt(3)) % SUPERMARKETS.length];
+
+                double total = 0.0;
+                for (int i = 0; i < spec.itemsPerReceipt(); i++) {
+                    itemId++;
+                    Product product = CATALOG[random.nextInt(CATALOG.length)];
+                    String name = product.names()[random.nextInt(product.names().length)];
+                    double quantity = "KG".equals(product.unit()) ? 0.5 + random.nextInt(30) / 10.0 : 1 + random.nextInt(4);
+                    double unitPrice = Math.round(product.basePrice() * inflation * (0.85 + random.nextDouble() * 0.3) * 100.0) / 100.0;
+                    double totalPrice = Math.round(unitPrice * quantity * 100.0) / 100.0;
+                    total += totalPrice;
+
+                    itemRows.add(new Object[] {itemId, name, product.category(), product.subCategory(),
+                            quantity, product.unit(), unitPrice, totalPrice, receiptId, catalogIdByName.get(name),
+                            TextNormalizer.fold(name), TextNormalizer.fold(product.category()), TextNormalizer.fold(product.subCategory())});
+                }
+                receiptRows.add(new Object[] {receiptId, household + 1L, supermarket, Timestamp.valueOf(date), Math.round(total * 100.0) / 100.0});
+
+                if (itemRows.size() >= BATCH_SIZE) {
+                    flush(jdbc, receiptRows, itemRows);
+                }
+            }
+        }
+        flush(jdbc, receiptRows, itemRows);
+
+        // Ids explícitos: as sequences vão para depois do maior id (como a migração V8), para os INSERTs da aplicação
+        jdbc.execute("ALTER SEQUENCE receipt_seq RESTART WITH " + (receiptId + 50));
+        jdbc.execute("ALTER SEQUENCE product_item_seq RESTART WITH " + (itemId + 50));
+
+        return new Result(receiptId, itemId, System.currentTimeMillis() - start);
+    }
+
+    private void flush(JdbcTemplate jdbc, List<Object[]> receiptRows, List<Object[]> itemRows) {
+        if (!receiptRows.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO receipt (id, household_id, supermarket_name, date, total_amount, version) VALUES (?, ?, ?, ?, ?, 0)", receiptRows);
+            receiptRows.clear();
+        }
+        if (!itemRows.isEmpty()) {
+            jdbc.batchUpdate("INSERT INTO product_item (id, product_name, category, sub_category, quantity, unit, unit_price, total_price, receipt_id, catalog_product_id, " +
+                    "product_name_norm, category_norm, sub_category_norm) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", itemRows);
+            itemRows.clear();
+        }
+    }
+
+    private record Product(String subCategory, String category, String unit, double basePrice, String... names) {}
+}
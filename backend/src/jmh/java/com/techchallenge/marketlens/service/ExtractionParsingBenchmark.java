@@ -0,0 +1,93 @@
+package com.techchallenge.marketlens.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.techchallenge.marketlens.domain.Receipt;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.unit.DataSize;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pós-processamento da resposta do Gemini, sem rede: extrair o JSON do envelope e desserializar a Receipt.
+ * Fica no pacote service para acessar o extractJsonFromResponse (package-private).
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ExtractionParsingBenchmark {
+
+    @Param({"10", "60"})
+    public int itemsPerReceipt;
+
+    private AIService aiService;
+    private ObjectMapper objectMapper;
+    private String geminiResponse;
+    private String receiptJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // Só o parsing é medido: sem cliente HTTP
+        aiService = new AIService(null, DataSize.ofMegabytes(10), new SimpleMeterRegistry());
+        // Mesma configuração do ReceiptService
+        objectMapper = new ObjectMapper();
+        objectMapper.registerModule(new JavaTimeModule());
+
+        receiptJson = syntheticReceiptJson(itemsPerReceipt, new Random(42));
+        // O Gemini devolve o JSON como texto (com cerca de markdown) dentro de candidates[0].content.parts[0].text
+        String text = "```json\n" + receiptJson + "\n```";
+        geminiResponse = "{\"candidates\":[{\"content\":{\"parts\":[{\"text\":" + objectMapper.writeValueAsString(text) + "}],"
+                + "\"role\":\"model\"},\"finishReason\":\"STOP\",\"index\":0}],"
+                + "\"usageMetadata\":{\"promptTokenCount\":1290,\"candidatesTokenCount\":850,\"totalTokenCount\":2140}}";
+    }
+
+    @Benchmark
+    public String extractJson() {
+        return aiService.extractJsonFromResponse(geminiResponse);
+    }
+
+    @Benchmark
+    public Receipt deserializeReceipt() throws Exception {
+        return objectMapper.readValue(receiptJson, Receipt.class);
+    }
+
+    @Benchmark
+    public Receipt extractAndDeserialize() throws Exception {
+        return objectMapper.readValue(aiService.extractJsonFromResponse(geminiResponse), Receipt.class);
+    }
+
+    private static String syntheticReceiptJson(int items, Random random) {
+        StringBuilder json = new StringBuilder("{\"supermarketName\":\"Supermercado Preço Bom\",\"date\":\"2025-03-14T18:42:00\",\"items\":[");
+        double total = 0.0;
+        for (int i = 0; i < items; i++) {
+            double unitPrice = Math.round((2 + random.nextDouble() * 40) * 100.0) / 100.0;
+            int quantity = 1 + random.nextInt(3);
+            double totalPrice = Math.round(unitPrice * quantity * 100.0) / 100.0;
+            total += totalPrice;
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"productName\":\"Produto Sintético ").append(i)
+                .append("\",\"category\":\"MERCEARIA\",\"subCategory\":\"Arroz\",\"quantity\":").append(quantity)
+                .append(",\"unit\":\"UN\",\"unitPrice\":").append(unitPrice)
+                .append(",\"totalPrice\":").append(totalPrice).append('}');
+        }
+        return json.append("],\"totalAmount\":").append(Math.round(total * 100.0) / 100.0).append('}').toString();
+    }
+}
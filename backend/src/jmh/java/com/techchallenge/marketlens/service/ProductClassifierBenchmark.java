@@ -0,0 +1,131 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.ShoppingCategory;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.io.ClassPathResource;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Custo por nome de produto da classificação, sem banco nem Spring:
+ * - classify: ProductClassifier (Aho-Corasick sobre o dicionário inteiro, normalizando na passada)
+ * - legacyWeeklyAndPrice: como o PlannerService fazia (TextNormalizer.fold + regex das palavras da feira
+ *   + cadeia de contains() do preço), que cobria só 11 palavras e 10 preços
+ * - naiveContainsLoop: o dicionário inteiro testado termo a termo com contains() sobre o nome normalizado
+ */
+@BenchmarkMode({Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ProductClassifierBenchmark {
+
+    private static final List<String> LEGACY_WEEKLY_KEYWORDS = List.of(
+        "Leite", "Pão", "Carne", "Frango", "Peixe", "Ovo", "Queijo", "Presunto", "Fruta", "Verdura", "Legume"
+    );
+    private static final Pattern LEGACY_WEEKLY_PATTERN = Pattern.compile(
+        LEGACY_WEEKLY_KEYWORDS.stream().map(TextNormalizer::fold).map(Pattern::quote).collect(Collectors.joining("|"))
+    );
+
+    private static final String[] PRODUCTS = {
+        "Leite Integral", "LEITE CONDENSADO MOÇA 395G", "Pão Francês", "Feijão Carioca Camil 1kg", "Arroz Tio João 5kg",
+        "Sabão em Pó Omo 1,6kg", "Detergente Ypê Neutro", "Creme Dental Colgate", "Refrigerante Coca-Cola 2L",
+        "Carne Moída Patinho", "Peito de Frango Congelado", "Banana Prata kg", "Café Pilão 500g", "Ovos Brancos Dúzia",
+        "Queijo Mussarela Fatiado", "Papel Higiênico Neve 12un", "Chocolate Lacta", "Biscoito Recheado", "Guardanapo",
+        "Vela Aromática", "Produto Sem Cadastro XPTO"
+    };
+
+    private ProductClassifier classifier;
+    private String[] names;
+    private String[] dictionaryTerms;
+    private int cursor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        classifier = new ProductClassifier(new ClassPathResource("classification/product-dictionary.csv"), 5.00,
+                new SimpleMeterRegistry());
+
+        // Nomes como vêm das notas: maiúsculas/minúsculas variadas e, às vezes, sem acento
+        Random random = new Random(42);
+        names = new String[1024];
+        for (int i = 0; i < names.length; i++) {
+            String name = PRODUCTS[random.nextInt(PRODUCTS.length)];
+            names[i] = switch (random.nextInt(3)) {
+                case 0 -> name.toUpperCase();
+                case 1 -> TextNormalizer.fold(name);
+                default -> name;
+            };
+        }
+
+        dictionaryTerms = new String(new ClassPathResource("classification/product-dictionary.csv").getContentAsByteArray(),
+                java.nio.charset.StandardCharsets.UTF_8)
+            .lines()
+            .filter(line -> !line.isBlank() && !line.startsWith("#"))
+            .map(line -> TextNormalizer.fold(line.split(";")[0]))
+            .toArray(String[]::new);
+    }
+
+    private String nextName() {
+        cursor = (cursor + 1) & (names.length - 1);
+        return names[cursor];
+    }
+
+    @Benchmark
+    public ProductClassifier.Classification classify() {
+        return classifier.classify(nextName());
+    }
+
+    @Benchmark
+    public double legacyWeeklyAndPrice() {
+        String name = nextName();
+        ShoppingCategory category = LEGACY_WEEKLY_PATTERN.matcher(TextNormalizer.fold(name)).find()
+            ? ShoppingCategory.SEMANAL_FRESCOS
+            : ShoppingCategory.MENSAL_BASE;
+        return legacyFallbackPrice(name.split(" ")[0]) + category.ordinal();
+    }
+
+    @Benchmark
+    public int naiveContainsLoop() {
+        String folded = TextNormalizer.fold(nextName());
+        int best = -1;
+        for (int i = 0; i < dictionaryTerms.length; i++) {
+            if (folded.contains(dictionaryTerms[i]) && (best < 0 || dictionaryTerms[i].length() > dictionaryTerms[best].length())) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    // Cópia do antigo PlannerService.getFallbackEstimatedPrice
+    private static double legacyFallbackPrice(String keyword) {
+        keyword = keyword.toUpperCase();
+        if (keyword.contains("ARROZ")) return 25.90;
+        if (keyword.contains("FEIJÃO")) return 7.50;
+        if (keyword.contains("ÓLEO")) return 6.50;
+        if (keyword.contains("AÇÚCAR")) return 4.50;
+        if (keyword.contains("CAFÉ")) return 18.90;
+        if (keyword.contains("CARNES")) return 35.00;
+        if (keyword.contains("OVOS")) return 16.00;
+        if (keyword.contains("LEITE")) return 5.50;
+        if (keyword.contains("HORTIFRUTI")) return 8.00;
+        if (keyword.contains("SABÃO")) return 14.50;
+        return 5.00;
+    }
+}
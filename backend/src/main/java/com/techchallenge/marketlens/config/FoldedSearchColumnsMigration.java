@@ -0,0 +1,162 @@
+package com.techchallenge.marketlens.config;
+
+import com.techchallenge.marketlens.util.TextNormalizer;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Migração V7 (em Java porque a normalização sem acento, TextNormalizer.fold, não existe no SQL do H2).
+ *
+ * As colunas *_norm da V2 eram UPPER(coluna), calculadas pelo banco, enquanto o resto da aplicação
+ * (planejador, catálogo, feedback) compara textos com o TextNormalizer, que também tira acentos:
+ * "Feijao" e "Feijão" eram o mesmo item na memória e linhas diferentes no banco. Aqui elas passam a ser
+ * colunas comuns, gravadas pela aplicação com TextNormalizer.fold, e são recalculadas para as linhas existentes.
+ *
+ * Ajustes do planejador que passam a ter a mesma chave (mesma família) são juntados no mais antigo (menor id):
+ * o fator dele passa a ser a soma dos fatores (cada ➕/➖ soma ou tira 1 da linha da grafia clicada, então a
+ * soma é o efeito de todos os cliques), ou a lixeira se o item foi para a lixeira em qualquer grafia. As outras
+ * linhas são apagadas e o índice da família + nome normalizado vira único.
+ */
+@Component
+public class FoldedSearchColumnsMigration implements JavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+    // Valor da lixeira (UpsertAdjustment.TRASH), copiado para a migração não mudar junto com o código
+    private static final double TRASH = -999.0;
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("7");
+    }
+
+    @Override
+    public String getDescription() {
+        return "fold accents in normalized search columns";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+
+        try (Statement statement = connection.createStatement()) {
+            for (String column : List.of("product_name_norm", "category_norm", "sub_category_norm")) {
+                statement.execute("ALTER TABLE product_item ALTER COLUMN " + column + " DROP EXPRESSION");
+            }
+            statement.execute("ALTER TABLE item_adjustments ALTER COLUMN item_name_norm DROP EXPRESSION");
+        }
+
+        // 1. Itens: as três colunas a partir do texto gravado
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id, product_name, category, sub_category FROM product_item");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE product_item SET product_name_norm = ?, category_norm = ?, sub_category_norm = ? WHERE id = ?")) {
+            int pending = 0;
+            while (rows.next()) {
+                update.setString(1, TextNormalizer.foldOrNull(rows.getString(2)));
+                update.setString(2, TextNormalizer.foldOrNull(rows.getString(3)));
+                update.setString(3, TextNormalizer.foldOrNull(rows.getString(4)));
+                update.setLong(4, rows.getLong(1));
+                update.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+
+        // 2. Ajustes: agrupados por família + chave, na ordem de criação (o primeiro de cada grupo fica)
+        Map<String, MergedAdjustment> merged = new LinkedHashMap<>();
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "SELECT id, household_id, item_name, adjustment_factor FROM item_adjustments ORDER BY id")) {
+            while (rows.next()) {
+                String key = TextNormalizer.fold(rows.getString(3));
+                merged.computeIfAbsent(rows.getLong(2) + "|" + key, k -> new MergedAdjustment(key))
+                        .add(rows.getLong(1), rows.getDouble(4));
+            }
+        }
+        List<Long> duplicates = new ArrayList<>();
+        try (PreparedStatement update = connection.prepareStatement(
+                "UPDATE item_adjustments SET item_name_norm = ?, adjustment_factor = ? WHERE id = ?")) {
+            int pending = 0;
+            for (MergedAdjustment adjustment : merged.values()) {
+                update.setString(1, adjustment.key);
+                update.setDouble(2, adjustment.factor());
+                update.setLong(3, adjustment.ids.get(0));
+                update.addBatch();
+                duplicates.addAll(adjustment.ids.subList(1, adjustment.ids.size()));
+                if (++pending == BATCH_SIZE) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+        if (!duplicates.isEmpty()) {
+            try (PreparedStatement delete = connection.prepareStatement("DELETE FROM item_adjustments WHERE id = ?")) {
+                for (Long id : duplicates) {
+                    delete.setLong(1, id);
+                    delete.addBatch();
+                }
+                delete.executeBatch();
+            }
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("DROP INDEX IF EXISTS idx_item_adjustments_household_item_norm");
+            statement.execute("CREATE UNIQUE INDEX idx_item_adjustments_household_item_norm ON item_adjustments (household_id, item_name_norm)");
+        }
+    }
+
+    // Linhas de uma família com a mesma chave: ids na ordem de criação e a soma dos fatores
+    private static final class MergedAdjustment {
+        private final String key;
+        private final List<Long> ids = new ArrayList<>();
+        private double sum;
+        private boolean trash;
+
+        private MergedAdjustment(String key) {
+            this.key = key;
+        }
+
+        private void add(long id, double factor) {
+            ids.add(id);
+            if (factor == TRASH) {
+                trash = true;
+            } else {
+                sum += factor;
+            }
+        }
+
+        private double factor() {
+            return trash ? TRASH : sum;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.techchallenge.marketlens.config;
+
+import com.techchallenge.marketlens.service.GeminiClient;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class GeminiClientConfig {
+
+    // Pool, timeouts, retentativas, circuit breaker e hedging das chamadas ao Gemini (ver GeminiClient).
+    // O Spring chama close() no desligamento: fecha as conexões do pool
+    @Bean
+    public GeminiClient geminiClient(@Value("${gemini.client.connect-timeout:5s}") Duration connectTimeout,
+                                     @Value("${gemini.client.response-timeout:60s}") Duration responseTimeout,
+                                     @Value("${gemini.client.max-connections:20}") int maxConnections,
+                                     @Value("${gemini.client.max-attempts:3}") int maxAttempts,
+                                     @Value("${gemini.client.initial-backoff:500ms}") Duration initialBackoff,
+                                     @Value("${gemini.client.max-backoff:8s}") Duration maxBackoff,
+                                     @Value("${gemini.client.circuit-breaker.failure-threshold:5}") int failureThreshold,
+                                     @Value("${gemini.client.circuit-breaker.open-duration:30s}") Duration openDuration,
+                                     @Value("${gemini.client.hedging.enabled:false}") boolean hedgingEnabled,
+                                     @Value("${gemini.client.hedging.percentile:0.95}") double hedgingPercentile,
+                                     @Value("${gemini.client.hedging.min-samples:20}") int hedgingMinSamples,
+                                     @Value("${gemini.client.hedging.min-delay:2s}") Duration hedgingMinDelay,
+                                     MeterRegistry meterRegistry) {
+        GeminiClient.Settings settings = new GeminiClient.Settings(
+            connectTimeout, responseTimeout, Math.max(1, maxConnections), Math.max(1, maxAttempts),
+            initialBackoff, maxBackoff, failureThreshold, openDuration,
+            hedgingEnabled, hedgingPercentile, hedgingMinSamples, hedgingMinDelay
+        );
+        return new GeminiClient(settings, meterRegistry);
+    }
+}
@@ -0,0 +1,39 @@
+package com.techchallenge.marketlens.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class IngestionConfig {
+
+    // Executor dedicado às chamadas ao Gemini, separado das threads do Tomcat:
+    // - no máximo "max-in-flight" análises simultâneas
+    // - até "queue-capacity" uploads esperando na fila; além disso o envio é rejeitado (429)
+    @Bean
+    public ThreadPoolExecutor ingestionExecutor(@Value("${ingestion.max-in-flight:4}") int maxInFlight,
+                                                @Value("${ingestion.queue-capacity:100}") int queueCapacity) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "ingestion-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            maxInFlight, maxInFlight,
+            60, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<>(queueCapacity),
+            threadFactory,
+            new ThreadPoolExecutor.AbortPolicy()
+        );
+        executor.allowCoreThreadTimeOut(true); // Sem uploads, não mantém threads paradas
+        return executor;
+    }
+}
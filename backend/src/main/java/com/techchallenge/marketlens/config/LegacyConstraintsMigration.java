@@ -0,0 +1,77 @@
+package com.techchallenge.marketlens.config;
+
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Migração V3 (em Java porque o nome da constraint não é conhecido).
+ *
+ * Antes do multi-família o item_name era único na tabela inteira, e o Hibernate (ddl-auto=update) criou
+ * essa constraint com um nome gerado (UK...). Ela continuou nos bancos antigos e impede duas famílias de
+ * ajustarem o mesmo item. Aqui ela é encontrada pelo INFORMATION_SCHEMA e removida; a unicidade que vale
+ * é a uk_item_adjustments_household_item (família + item).
+ *
+ * O Spring Boot registra no Flyway os beans JavaMigration, junto com os scripts de db/migration
+ * (JavaMigration direto em vez de BaseJavaMigration: o nome da classe não segue o padrão V3__...).
+ */
+@Component
+public class LegacyConstraintsMigration implements JavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(LegacyConstraintsMigration.class);
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("3");
+    }
+
+    @Override
+    public String getDescription() {
+        return "drop legacy item_name unique constraint";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        List<String> legacyConstraints = new ArrayList<>();
+        // Constraints UNIQUE da tabela cuja única coluna é ITEM_NAME
+        String sql = "SELECT tc.CONSTRAINT_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS tc " +
+                     "JOIN INFORMATION_SCHEMA.KEY_COLUMN_USAGE k " +
+                     "  ON k.CONSTRAINT_SCHEMA = tc.CONSTRAINT_SCHEMA AND k.CONSTRAINT_NAME = tc.CONSTRAINT_NAME " +
+                     "WHERE tc.TABLE_NAME = 'ITEM_ADJUSTMENTS' AND tc.CONSTRAINT_TYPE = 'UNIQUE' " +
+                     "GROUP BY tc.CONSTRAINT_NAME " +
+                     "HAVING COUNT(*) = 1 AND MAX(k.COLUMN_NAME) = 'ITEM_NAME'";
+        try (PreparedStatement query = context.getConnection().prepareStatement(sql);
+             ResultSet rows = query.executeQuery()) {
+            while (rows.next()) {
+                legacyConstraints.add(rows.getString(1));
+            }
+        }
+
+        try (Statement statement = context.getConnection().createStatement()) {
+            for (String constraint : legacyConstraints) {
+                statement.execute("ALTER TABLE item_adjustments DROP CONSTRAINT \"" + constraint + "\"");
+                log.info("Constraint antiga {} (item_name único) removida de item_adjustments", constraint);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.techchallenge.marketlens.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class PlannerConfig {
+
+    // Executor da geração de planos em lote. Cada plano faz consultas ao banco (bloqueantes),
+    // então o paralelismo é limitado para não disputar todas as conexões do pool com as requisições normais.
+    // A fila não tem limite: um lote enfileira uma tarefa por família e espera todas terminarem.
+    @Bean
+    public ThreadPoolExecutor plannerBatchExecutor(@Value("${planner.batch.parallelism:4}") int parallelism) {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "planner-batch-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            parallelism, parallelism,
+            60, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            threadFactory
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+}
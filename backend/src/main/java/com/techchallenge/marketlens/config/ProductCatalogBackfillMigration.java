@@ -0,0 +1,169 @@
+package com.techchallenge.marketlens.config;
+
+import com.techchallenge.marketlens.util.TextNormalizer;
+import org.flywaydb.core.api.MigrationVersion;
+import org.flywaydb.core.api.migration.Context;
+import org.flywaydb.core.api.migration.JavaMigration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Migração V6 (em Java porque a normalização sem acento, TextNormalizer.fold, não existe no SQL do H2).
+ *
+ * Monta o catálogo (tabelas da V5) a partir dos itens que já existem e preenche product_item.catalog_product_id,
+ * com a mesma regra do ProductCatalogService: o produto é a subcategoria normalizada, e cada nome de item
+ * vira um alias. Um nome que já apareceu com subcategorias diferentes vai para a mais frequente.
+ *
+ * A chave do produto é uma cópia da regra de hoje do ProductCatalogService.productKey: se a regra do serviço
+ * mudar, a V6 continua montando o catálogo como montou nos bancos que já passaram por ela.
+ */
+@Component
+public class ProductCatalogBackfillMigration implements JavaMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogBackfillMigration.class);
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public MigrationVersion getVersion() {
+        return MigrationVersion.fromVersion("6");
+    }
+
+    @Override
+    public String getDescription() {
+        return "backfill product catalog";
+    }
+
+    @Override
+    public Integer getChecksum() {
+        return null;
+    }
+
+    @Override
+    public boolean canExecuteInTransaction() {
+        return true;
+    }
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+
+        // 1. Grupos (nome, subcategoria) distintos, com a frequência: para cada nome, fica a subcategoria mais comum
+        Map<String, Candidate> bestByAlias = new HashMap<>();
+        Map<String, Candidate> productsByKey = new LinkedHashMap<>();
+        String groups = "SELECT product_name, sub_category, MAX(category), COUNT(*) FROM product_item " +
+                        "GROUP BY product_name, sub_category ORDER BY COUNT(*) DESC, product_name, sub_category";
+        try (Statement statement = connection.createStatement(); ResultSet rows = statement.executeQuery(groups)) {
+            while (rows.next()) {
+                Candidate candidate = new Candidate(rows.getString(1), rows.getString(2), rows.getString(3));
+                String key = productKey(candidate.productName, candidate.subCategory);
+                if (key.isEmpty()) {
+                    continue;
+                }
+                productsByKey.putIfAbsent(key, candidate); // o grupo mais frequente dá o nome de exibição
+                String aliasKey = TextNormalizer.fold(candidate.productName);
+                if (!aliasKey.isEmpty()) {
+                    bestByAlias.putIfAbsent(aliasKey, candidate);
+                }
+            }
+        }
+        if (productsByKey.isEmpty()) {
+            return;
+        }
+
+        // 2. Produtos do catálogo
+        Map<String, Long> productIdByKey = new HashMap<>();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO catalog_product (normalized_key, display_name, sub_category, category) VALUES (?, ?, ?, ?)")) {
+            for (Map.Entry<String, Candidate> entry : productsByKey.entrySet()) {
+                Candidate candidate = entry.getValue();
+                String subCategory = blankToNull(candidate.subCategory);
+                insert.setString(1, entry.getKey());
+                insert.setString(2, subCategory != null ? subCategory : candidate.productName.strip());
+                insert.setString(3, subCategory);
+                insert.setString(4, blankToNull(candidate.category));
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT normalized_key, id FROM catalog_product")) {
+            while (rows.next()) {
+                productIdByKey.put(rows.getString(1), rows.getLong(2));
+            }
+        }
+
+        // 3. Aliases (nome normalizado -> produto)
+        Map<String, Long> productIdByAlias = new HashMap<>();
+        try (PreparedStatement insert = connection.prepareStatement(
+                "INSERT INTO catalog_alias (alias_key, catalog_product_id) VALUES (?, ?)")) {
+            for (Map.Entry<String, Candidate> entry : bestByAlias.entrySet()) {
+                Candidate candidate = entry.getValue();
+                Long productId = productIdByKey.get(productKey(candidate.productName, candidate.subCategory));
+                productIdByAlias.put(entry.getKey(), productId);
+                insert.setString(1, entry.getKey());
+                insert.setLong(2, productId);
+                insert.addBatch();
+            }
+            insert.executeBatch();
+        }
+
+        // 4. Cada item aponta para o produto do seu alias (ou da sua subcategoria, se não tem nome)
+        long linked = 0;
+        try (Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery("SELECT id, product_name, sub_category FROM product_item");
+             PreparedStatement update = connection.prepareStatement("UPDATE product_item SET catalog_product_id = ? WHERE id = ?")) {
+            int pending = 0;
+            while (rows.next()) {
+                String productName = rows.getString(2);
+                String aliasKey = TextNormalizer.fold(productName);
+                Long productId = aliasKey.isEmpty()
+                        ? productIdByKey.get(productKey(productName, rows.getString(3)))
+                        : productIdByAlias.get(aliasKey);
+                if (productId == null) {
+                    continue;
+                }
+                update.setLong(1, productId);
+                update.setLong(2, rows.getLong(1));
+                update.addBatch();
+                linked++;
+                if (++pending == BATCH_SIZE) {
+                    update.executeBatch();
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                update.executeBatch();
+            }
+        }
+        log.info("Catálogo montado a partir do histórico: {} produtos, {} variantes, {} itens ligados",
+                productIdByKey.size(), productIdByAlias.size(), linked);
+    }
+
+    // Cópia congelada de ProductCatalogService.productKey: a subcategoria normalizada ou, sem ela, o próprio nome
+    private static String productKey(String productName, String subCategory) {
+        String key = TextNormalizer.fold(subCategory);
+        return key.isEmpty() ? TextNormalizer.fold(productName) : key;
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.strip();
+    }
+
+    private record Candidate(String productName, String subCategory, String category) {
+        Candidate {
+            productName = Objects.requireNonNullElse(productName, "");
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.techchallenge.marketlens.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+// Publica quantas queries cada endpoint fez por requisição (marketlens.http.queries, por método + rota).
+// Um salto nessa métrica depois de um deploy costuma ser um N+1 novo.
+public class QueryCountInterceptor implements HandlerInterceptor {
+
+    private final MeterRegistry meterRegistry;
+
+    public QueryCountInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+        QueryCountingInspector.start();
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        int queries = QueryCountingInspector.stop();
+
+        // Rota com placeholders (/api/receipts/{id}), para não criar uma série por id
+        Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        DistributionSummary.builder("marketlens.http.queries")
+                .description("Comandos SQL do Hibernate por requisição")
+                .tag("method", request.getMethod())
+                .tag("uri", route != null ? route.toString() : "UNKNOWN")
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+                .record(queries);
+    }
+}
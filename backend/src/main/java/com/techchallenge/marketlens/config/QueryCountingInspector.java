@@ -0,0 +1,35 @@
+package com.techchallenge.marketlens.config;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+/**
+ * Conta os comandos SQL que o Hibernate prepara na thread atual.
+ * Registrado em hibernate.session_factory.statement_inspector; a contagem só acontece entre start() e stop(),
+ * que o QueryCountInterceptor chama em volta de cada requisição HTTP.
+ *
+ * As estatísticas do Hibernate (generate_statistics) são globais da SessionFactory e não separam por requisição.
+ */
+public class QueryCountingInspector implements StatementInspector {
+
+    private static final ThreadLocal<int[]> COUNTER = new ThreadLocal<>();
+
+    public static void start() {
+        COUNTER.set(new int[1]);
+    }
+
+    // Devolve a contagem e para de contar nesta thread
+    public static int stop() {
+        int[] counter = COUNTER.get();
+        COUNTER.remove();
+        return counter != null ? counter[0] : 0;
+    }
+
+    @Override
+    public String inspect(String sql) {
+        int[] counter = COUNTER.get();
+        if (counter != null) {
+            counter[0]++;
+        }
+        return sql;
+    }
+}
@@ -0,0 +1,55 @@
+package com.techchallenge.marketlens.controller;
+
+import com.techchallenge.marketlens.domain.SpendingDimension;
+import com.techchallenge.marketlens.dto.RollupRebuildReportDTO;
+import com.techchallenge.marketlens.service.SpendingRollupService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.YearMonth;
+
+@RestController
+@RequestMapping("/api/analytics")
+@CrossOrigin(origins = "*")
+public class AnalyticsController {
+
+    private final SpendingRollupService rollupService;
+
+    public AnalyticsController(SpendingRollupService rollupService) {
+        this.rollupService = rollupService;
+    }
+
+    // Gasto mensal por dimensão, lido só dos agregados (nunca varre os itens).
+    // Ex: /api/analytics/spending?dimension=SUPERMARKET&from=2026-01&to=2026-06 (padrão: últimos 12 meses)
+    @GetMapping("/spending")
+    public ResponseEntity<?> getSpending(@RequestParam(defaultValue = "CATEGORY") SpendingDimension dimension,
+                                         @RequestParam(required = false) YearMonth from,
+                                         @RequestParam(required = false) YearMonth to,
+                                         @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        YearMonth end = to != null ? to : YearMonth.now();
+        YearMonth start = from != null ? from : end.minusMonths(11);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().body("Erro: 'from' depois de 'to'.");
+        }
+        return ResponseEntity.ok(rollupService.getSpending(householdId, dimension, start, end));
+    }
+
+    // Total gasto em cada mês
+    @GetMapping("/spending/monthly")
+    public ResponseEntity<?> getMonthlyTotals(@RequestParam(required = false) YearMonth from,
+                                              @RequestParam(required = false) YearMonth to,
+                                              @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        YearMonth end = to != null ? to : YearMonth.now();
+        YearMonth start = from != null ? from : end.minusMonths(11);
+        if (start.isAfter(end)) {
+            return ResponseEntity.badRequest().body("Erro: 'from' depois de 'to'.");
+        }
+        return ResponseEntity.ok(rollupService.getMonthlyTotals(householdId, start, end));
+    }
+
+    // Recalcula os agregados a partir das notas; rowsMismatched > 0 indica que estavam inconsistentes
+    @PostMapping("/rollups/rebuild")
+    public ResponseEntity<RollupRebuildReportDTO> rebuildRollups() {
+        return ResponseEntity.ok(rollupService.rebuild());
+    }
+}
@@ -0,0 +1,11 @@
+package com.techchallenge.marketlens.controller;
+
+// Cabeçalho que identifica a família (household) da requisição.
+// Sem ele vale a família 1, onde ficaram os dados de antes do multi-família (o frontend atual não envia)
+public final class HouseholdHeader {
+
+    public static final String NAME = "X-Household-Id";
+    public static final String DEFAULT = "1";
+
+    private HouseholdHeader() {}
+}
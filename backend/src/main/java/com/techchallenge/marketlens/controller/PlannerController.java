@@ -1,13 +1,18 @@
 package com.techchallenge.marketlens.controller;
 
-import com.techchallenge.marketlens.domain.ItemAdjustment;
+import com.techchallenge.marketlens.dto.ItemFeedbackDTO;
+import com.techchallenge.marketlens.dto.PlannerBatchResultDTO;
 import com.techchallenge.marketlens.dto.PlannerSummaryDTO;
-import com.techchallenge.marketlens.repository.ItemAdjustmentRepository;
+import com.techchallenge.marketlens.service.FeedbackService;
+import com.techchallenge.marketlens.service.PlanCache;
+import com.techchallenge.marketlens.service.PlannerBatchService;
 import com.techchallenge.marketlens.service.PlannerService;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
-import java.util.Optional;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/planner")
@@ -15,71 +20,85 @@ import java.util.Optional;
 public class PlannerController {
 
     private final PlannerService plannerService;
-    private final ItemAdjustmentRepository adjustmentRepository;
+    private final FeedbackService feedbackService;
+    private final PlanCache planCache;
+    private final PlannerBatchService batchService;
 
     // Injeção de dependências
-    public PlannerController(PlannerService plannerService, ItemAdjustmentRepository adjustmentRepository) {
+    public PlannerController(PlannerService plannerService, FeedbackService feedbackService,
+                             PlanCache planCache, PlannerBatchService batchService) {
         this.plannerService = plannerService;
-        this.adjustmentRepository = adjustmentRepository;
+        this.feedbackService = feedbackService;
+        this.planCache = planCache;
+        this.batchService = batchService;
     }
 
     // ==========================================
     // ENDPOINT 1: GERAR A LISTA (O React chama este)
     // ==========================================
     @GetMapping("/generate")
-    public ResponseEntity<PlannerSummaryDTO> generatePlan() {
-        PlannerSummaryDTO plan = plannerService.generateMonthlyPlan();
-        return ResponseEntity.ok(plan);
+    public ResponseEntity<PlannerSummaryDTO> generatePlan(@RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId,
+                                                          WebRequest webRequest) {
+        // Cliques de feedback ainda em memória (escrita adiada) entram antes de calcular o ETag
+        feedbackService.flush(householdId);
+
+        // Se o navegador já tem a versão atual (If-None-Match), responde 304 sem recalcular nada
+        if (webRequest.checkNotModified(planCache.currentEtag(householdId))) {
+            return null;
+        }
+
+        PlanCache.CachedPlan cached = planCache.getOrCompute(householdId, () -> plannerService.generateMonthlyPlan(householdId));
+        return ResponseEntity.ok()
+                .eTag(cached.etag())
+                .cacheControl(CacheControl.noCache()) // O navegador guarda, mas sempre revalida com o ETag
+                .body(cached.plan());
+    }
+
+    // ==========================================
+    // ENDPOINT 1b: PLANOS DE VÁRIAS FAMÍLIAS EM LOTE (PARALELO)
+    // ==========================================
+    // Ex: /api/planner/generate/batch (todas as famílias) ou /api/planner/generate/batch?householdIds=1,2,3
+    @GetMapping("/generate/batch")
+    public ResponseEntity<PlannerBatchResultDTO> generatePlans(@RequestParam(required = false) List<Long> householdIds) {
+        feedbackService.flushAll();
+        return ResponseEntity.ok(batchService.generatePlans(householdIds));
     }
 
 // ==========================================
     // ENDPOINT 2: SALVAR O FEEDBACK
     // ==========================================
+    // Incremento atômico no banco (MERGE): cliques rápidos ➕➕➕ não se perdem.
+    // 200 = gravado; 202 = aceito, vai para o banco no próximo flush (feedback.write-behind.enabled)
     @PostMapping("/feedback")
-    public ResponseEntity<Void> saveFeedback(@RequestParam String itemName, @RequestParam Double factor) {
-        
-        Optional<ItemAdjustment> existingAdjustment = adjustmentRepository.findByItemNameIgnoreCase(itemName);
-        ItemAdjustment adjustment;
-        
-        if (existingAdjustment.isPresent()) {
-            adjustment = existingAdjustment.get();
-            
-            // Fator 0.0 recebido do React significa Botão Lixeira
-            if (factor == 0.0) {
-                adjustment.setAdjustmentFactor(-999.0); // Usamos -999.0 como uma Flag de Exclusão
-            } 
-            // Fator > 1.0 recebido do React significa Botão ➕
-            else if (factor > 1.0) {
-                double currentDelta = adjustment.getAdjustmentFactor();
-                if (currentDelta == -999.0) currentDelta = 0.0; // Recupera da lixeira se ele se arrepender
-                adjustment.setAdjustmentFactor(currentDelta + 1.0); // Adiciona +1 item
-            } 
-            // Fator < 1.0 recebido do React significa Botão ➖
-            else if (factor < 1.0) {
-                double currentDelta = adjustment.getAdjustmentFactor();
-                adjustment.setAdjustmentFactor(currentDelta - 1.0); // Remove -1 item
-            }
-            
-        } else {
-            // Se é o primeiro clique da família neste item
-            double initialDelta = 0.0;
-            if (factor == 0.0) initialDelta = -999.0;
-            else if (factor > 1.0) initialDelta = 1.0;
-            else if (factor < 1.0) initialDelta = -1.0;
-            
-            adjustment = new ItemAdjustment(itemName, initialDelta);
+    public ResponseEntity<Void> saveFeedback(@RequestParam String itemName, @RequestParam Double factor,
+                                             @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        boolean written = feedbackService.record(householdId, itemName, factor);
+        return written ? ResponseEntity.ok().build() : ResponseEntity.accepted().build();
+    }
+
+    // ==========================================
+    // ENDPOINT 2b: VÁRIOS FEEDBACKS DE UMA VEZ
+    // ==========================================
+    // Corpo: [{"itemName": "Arroz", "factor": 2.0}, {"itemName": "Arroz", "factor": 2.0}, {"itemName": "Sabonete", "factor": 0.0}]
+    // Os cliques no mesmo item são somados e gravados com 1 MERGE por item, tudo numa transação
+    @PostMapping("/feedback/batch")
+    public ResponseEntity<?> saveFeedbackBatch(@RequestBody List<ItemFeedbackDTO> feedback,
+                                               @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        try {
+            boolean written = feedbackService.recordBatch(householdId, feedback);
+            return written ? ResponseEntity.ok().build() : ResponseEntity.accepted().build();
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro: " + e.getMessage());
         }
-        
-        adjustmentRepository.save(adjustment);
-        return ResponseEntity.ok().build();
     }
 
     // ==========================================
     // ENDPOINT 3: SALVAR O PERFIL DA FAMÍLIA
     // ==========================================
     @PostMapping("/profile")
-    public ResponseEntity<Void> updateProfile(@RequestBody com.techchallenge.marketlens.dto.FamilyProfileDTO profileDTO) {
-        plannerService.saveProfile(profileDTO);
+    public ResponseEntity<Void> updateProfile(@RequestBody com.techchallenge.marketlens.dto.FamilyProfileDTO profileDTO,
+                                              @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        plannerService.saveProfile(householdId, profileDTO);
         return ResponseEntity.ok().build();
     }
 }
\ No newline at end of file
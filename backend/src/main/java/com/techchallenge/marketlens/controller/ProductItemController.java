@@ -1,13 +1,19 @@
 package com.techchallenge.marketlens.controller;
 
 import com.techchallenge.marketlens.domain.ProductItem;
-import com.techchallenge.marketlens.domain.Receipt;
-import com.techchallenge.marketlens.repository.ProductItemRepository;
-import com.techchallenge.marketlens.repository.ReceiptRepository;
+import com.techchallenge.marketlens.repository.projection.PricePoint;
+import com.techchallenge.marketlens.service.PriceSeriesService;
+import com.techchallenge.marketlens.service.PriceStatisticsService;
+import com.techchallenge.marketlens.service.ProductCatalogService;
+import com.techchallenge.marketlens.service.ProductSearchIndex;
+import com.techchallenge.marketlens.service.ReceiptService;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
 import java.time.LocalDateTime; // <--- Importante para o DTO
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
@@ -16,118 +22,110 @@ import java.util.stream.Collectors;
 @CrossOrigin(origins = "*")
 public class ProductItemController {
 
-    private final ProductItemRepository itemRepository;
-    private final ReceiptRepository receiptRepository;
-
-    public ProductItemController(ProductItemRepository itemRepository, ReceiptRepository receiptRepository) {
-        this.itemRepository = itemRepository;
-        this.receiptRepository = receiptRepository;
+    private final ReceiptService receiptService;
+    private final ProductSearchIndex searchIndex;
+    private final PriceSeriesService priceSeriesService;
+    private final PriceStatisticsService priceStatistics;
+    private final ProductCatalogService catalogService;
+
+    public ProductItemController(ReceiptService receiptService, ProductSearchIndex searchIndex,
+                                 PriceSeriesService priceSeriesService, PriceStatisticsService priceStatistics,
+                                 ProductCatalogService catalogService) {
+        this.receiptService = receiptService;
+        this.searchIndex = searchIndex;
+        this.priceSeriesService = priceSeriesService;
+        this.priceStatistics = priceStatistics;
+        this.catalogService = catalogService;
     }
 
     // 1. Atualizar um Item (PUT)
     @PutMapping("/{id}")
-    public ResponseEntity<ProductItem> updateItem(@PathVariable Long id, @RequestBody ProductItem updatedData) {
-        return itemRepository.findById(id).map(item -> {
-            item.setProductName(updatedData.getProductName());
-            item.setCategory(updatedData.getCategory());
-            item.setSubCategory(updatedData.getSubCategory());
-            item.setQuantity(updatedData.getQuantity());
-            item.setUnit(updatedData.getUnit());
-            item.setUnitPrice(updatedData.getUnitPrice());
-            item.setTotalPrice(updatedData.getUnitPrice() * updatedData.getQuantity());
-
-            ProductItem savedItem = itemRepository.save(item);
-
-            // Recalcula o total da nota fiscal Pai
-            Receipt receipt = item.getReceipt();
-            double newTotal = receipt.getItems().stream()
-                    .mapToDouble(ProductItem::getTotalPrice)
-                    .sum();
-            receipt.setTotalAmount(newTotal);
-            receiptRepository.save(receipt);
-
-            return ResponseEntity.ok(savedItem);
-        }).orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> updateItem(@PathVariable Long id, @RequestBody ProductItem updatedData,
+                                        @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        try {
+            return receiptService.updateItem(id, householdId, updatedData)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (OptimisticLockingFailureException e) {
+            // Outra edição da mesma nota terminou antes: o total não é sobrescrito
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Erro: a nota fiscal foi alterada ao mesmo tempo. Tente novamente.");
+        }
     }
 
-    // 2. Busca de SUGESTÕES (Retorna apenas nomes strings)
+    // 2. Busca de SUGESTÕES (Retorna apenas nomes strings, dos mais comprados para os menos comprados)
     @GetMapping("/search")
-    public List<String> searchProductNames(@RequestParam String name) {
-        // Usa o método searchAny que criamos no Repository
-        // Se der erro aqui, certifique-se que criou o searchAny no ProductItemRepository
-        List<ProductItem> items = itemRepository.searchAny(name); 
-        
-        return items.stream()
-                .map(ProductItem::getProductName)
-                .distinct() // Remove duplicatas
-                .sorted()   // Ordena A-Z
+    public List<String> searchProductNames(@RequestParam String name,
+                                           @RequestParam(defaultValue = "20") int limit,
+                                           @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        // Usa o índice em memória (trigramas) em vez do LIKE '%...%' no banco
+        return searchIndex.search(householdId, name, ProductSearchIndex.TermType.PRODUTO, limit).stream()
+                .map(ProductSearchIndex.SearchHit::name)
                 .collect(Collectors.toList());
     }
 
     // 3. Busca de HISTÓRICO EXATO (Para o Gráfico)
     @GetMapping("/history")
-    public List<PriceHistoryDTO> getProductHistory(@RequestParam String exactName) {
-        List<ProductItem> items = itemRepository.findByProductNameContainingIgnoreCase(exactName);
-        
-        return items.stream()
-                .map(item -> new PriceHistoryDTO(
-                        item.getId(),
-                        item.getProductName(),
-                        item.getUnitPrice(),
-                        item.getReceipt().getDate(),
-                        item.getReceipt().getSupermarketName()
-                ))
-                .sorted((a, b) -> a.date().compareTo(b.date())) // Ordena por data
+    public List<PriceHistoryDTO> getProductHistory(@RequestParam String exactName,
+                                                   @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        // Projeção já ordenada por data no banco (antes: entidades + 1 query por nota fiscal + sort em memória)
+        return priceSeriesService.rawByProductName(householdId, exactName).stream()
+                .map(this::toHistoryDTO)
                 .collect(Collectors.toList());
     }
 
     // 4. Busca histórico POR CATEGORIA (Ex: Histórico de "Leite" independente da marca)
     @GetMapping("/category-history")
-    public List<PriceHistoryDTO> getCategoryHistory(@RequestParam String categoryName) {
-        // Busca tudo que tem essa subcategoria (Ex: "Feijão", "Arroz", "Leite")
-        // Precisamos criar esse método no Repository logo abaixo
-        List<ProductItem> items = itemRepository.findBySubCategoryIgnoreCase(categoryName);
-        
-        return items.stream()
-                .map(item -> new PriceHistoryDTO(
-                        item.getId(),
-                        item.getProductName(), // Mantemos o nome original para saber qual marca era no tooltip
-                        item.getUnitPrice(),
-                        item.getReceipt().getDate(),
-                        item.getReceipt().getSupermarketName()
-                ))
-                .sorted((a, b) -> a.date().compareTo(b.date()))
+    public List<PriceHistoryDTO> getCategoryHistory(@RequestParam String categoryName,
+                                                    @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        // Mantemos o nome original de cada item para saber qual marca era no tooltip
+        return priceSeriesService.rawBySubCategory(householdId, categoryName).stream()
+                .map(this::toHistoryDTO)
                 .collect(Collectors.toList());
     }
 
-    // 5. Melhoria na Busca: Retorna Sugestões MISTAS (Produtos E Categorias)
-    @GetMapping("/search-smart")
-    public List<SearchResultDTO> searchSmart(@RequestParam String name) {
-        List<ProductItem> items = itemRepository.searchAny(name);
+    // 4.1 Série de preços resumida (mín/média/máx por dia, semana ou mês), opcionalmente por mercado.
+    // Ex: /api/items/price-series?subCategory=Leite&resolution=WEEKLY&bySupermarket=true
+    @GetMapping("/price-series")
+    public ResponseEntity<?> getPriceSeries(@RequestParam(required = false) String subCategory,
+                                            @RequestParam(required = false) String productName,
+                                            @RequestParam(defaultValue = "WEEKLY") PriceSeriesService.Resolution resolution,
+                                            @RequestParam(defaultValue = "false") boolean bySupermarket,
+                                            @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        if (subCategory != null && !subCategory.isBlank()) {
+            return ResponseEntity.ok(priceSeriesService.seriesBySubCategory(householdId, subCategory, resolution, bySupermarket));
+        }
+        if (productName != null && !productName.isBlank()) {
+            return ResponseEntity.ok(priceSeriesService.seriesByProductName(householdId, productName, resolution, bySupermarket));
+        }
+        return ResponseEntity.badRequest().body("Erro: informe subCategory ou productName.");
+    }
 
-        // Extrai nomes de produtos únicos
-        List<SearchResultDTO> products = items.stream()
-                .map(i -> new SearchResultDTO(i.getProductName(), "PRODUTO"))
-                .distinct()
-                .collect(Collectors.toList());
+    // 4.2 Estatísticas de preço do produto (média, mediana, percentis, média/mediana recentes), no total e por mercado.
+    // Ex: /api/items/price-stats?subCategory=Leite (também aceita o nome de uma variante: "Leite Integral Italac 1L")
+    @GetMapping("/price-stats")
+    public ResponseEntity<?> getPriceStats(@RequestParam String subCategory,
+                                           @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        return priceStatistics.statistics(householdId, catalogService.findProductId(subCategory))
+                .<ResponseEntity<?>>map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 
-        // Extrai subcategorias únicas (Ex: "Leite", "Arroz")
-        List<SearchResultDTO> categories = items.stream()
-                .map(i -> new SearchResultDTO(i.getSubCategory(), "CATEGORIA"))
-                .filter(dto -> dto.name() != null && !dto.name().isEmpty()) // Remove nulos
-                .distinct()
-                .collect(Collectors.toList());
+    private PriceHistoryDTO toHistoryDTO(PricePoint point) {
+        return new PriceHistoryDTO(point.getId(), point.getProductName(), point.getPrice(),
+                point.getDate(), point.getSupermarket());
+    }
 
-        // Junta tudo (Categorias primeiro, depois produtos)
-        categories.addAll(products);
-        
-        // Filtra para garantir que o termo buscado está no nome (limpeza final)
-        String termo = name.toLowerCase();
-        return categories.stream()
-                .filter(i -> i.name().toLowerCase().contains(termo))
-                .sorted((a, b) -> a.type().compareTo(b.type())) // Categoria vem antes de Produto alfabeticamente
-                .limit(10) // Limita a 10 resultados para não poluir
-                .collect(Collectors.toList());
+    // 5. Melhoria na Busca: Retorna Sugestões MISTAS (Produtos E Categorias)
+    @GetMapping("/search-smart")
+    public List<SearchResultDTO> searchSmart(@RequestParam String name,
+                                             @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        // Categorias primeiro, depois produtos, cada grupo ordenado pela frequência de compra
+        List<SearchResultDTO> results = new ArrayList<>();
+        for (ProductSearchIndex.TermType type : List.of(ProductSearchIndex.TermType.CATEGORIA, ProductSearchIndex.TermType.PRODUTO)) {
+            searchIndex.search(householdId, name, type, 10 - results.size())
+                    .forEach(hit -> results.add(new SearchResultDTO(hit.name(), hit.type().name())));
+        }
+        return results; // No máximo 10 resultados para não poluir
     }
 
     // DTO auxiliar para o Search Smart
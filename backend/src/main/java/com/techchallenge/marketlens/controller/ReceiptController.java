@@ -1,90 +1,217 @@
 package com.techchallenge.marketlens.controller;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
 import com.techchallenge.marketlens.domain.Receipt;
-import com.techchallenge.marketlens.repository.ReceiptRepository;
-import com.techchallenge.marketlens.service.AIService;
+import com.techchallenge.marketlens.dto.IngestionBatchDTO;
+import com.techchallenge.marketlens.dto.IngestionJobDTO;
+import com.techchallenge.marketlens.dto.ReceiptImportReportDTO;
+import com.techchallenge.marketlens.dto.ReceiptItemsPatchDTO;
+import com.techchallenge.marketlens.service.ExtractionCacheService;
+import com.techchallenge.marketlens.service.IngestionJobService;
+import com.techchallenge.marketlens.service.IngestionQueueFullException;
+import com.techchallenge.marketlens.service.PurchaseExportService;
+import com.techchallenge.marketlens.service.ReceiptImportService;
+import com.techchallenge.marketlens.service.ReceiptService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
-import java.util.HashMap;
 
 @RestController
 @RequestMapping("/api/receipts")
 @CrossOrigin(origins = "*") // Importante: Permite que o React acesse sem bloqueio
 public class ReceiptController {
 
-    private final AIService aiService;
-    private final ReceiptRepository repository;
-    private final ObjectMapper objectMapper;
-    
+    private static final Logger log = LoggerFactory.getLogger(ReceiptController.class);
 
-    public ReceiptController(AIService aiService, ReceiptRepository repository) {
-        this.aiService = aiService;
-        this.repository = repository;
-        
-        // Configura o Jackson para entender datas (LocalDateTime)
-        this.objectMapper = new ObjectMapper();
-        this.objectMapper.registerModule(new JavaTimeModule());
+    private final IngestionJobService ingestionJobService;
+    private final ExtractionCacheService extractionCache;
+    private final ReceiptService receiptService;
+    private final ReceiptImportService importService;
+    private final PurchaseExportService exportService;
+
+    public ReceiptController(IngestionJobService ingestionJobService,
+                             ExtractionCacheService extractionCache, ReceiptService receiptService,
+                             ReceiptImportService importService, PurchaseExportService exportService) {
+        this.receiptService = receiptService;
+        this.importService = importService;
+        this.exportService = exportService;
+        this.ingestionJobService = ingestionJobService;
+        this.extractionCache = extractionCache;
     }
 
+    // Upload assíncrono: devolve 202 + id do job na hora, sem segurar a thread durante a chamada ao Gemini.
+    // O React acompanha o processamento em GET /api/receipts/jobs/{jobId}
     @PostMapping("/upload")
-    public ResponseEntity<?> uploadReceipt(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<?> uploadReceipt(@RequestParam("file") MultipartFile file,
+                                           @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
         try {
-            // 1. Envia imagem para a IA e recebe JSON (String)
-            System.out.println("Recebendo imagem... enviando para o Gemini.");
-            String jsonResult = aiService.analyzeReceiptImage(file.getBytes());
-            System.out.println("Resposta da IA: " + jsonResult);
-
-            // 2. Converte o JSON da IA para a Entidade Receipt
-            Receipt receipt = objectMapper.readValue(jsonResult, Receipt.class);
-
-            // 3. Vincula os itens à nota fiscal (Consistência do Banco de Dados)
-            // O JSON cria a nota fiscal e os Itens, mas não diz aos itens "quem é o pai deles".
-            if (receipt.getItems() != null) {
-                receipt.getItems().forEach(item -> item.setReceipt(receipt));
-            }
+            log.debug("Recebendo imagem da família {}... colocando na fila do Gemini.", householdId);
+            IngestionJobDTO job = ingestionJobService.submit(file, householdId);
 
-            // 4. Salva no Banco (Salva a nota e os itens em cascata)
-            Receipt savedReceipt = repository.save(receipt);
-
-            // 5. Retorna sucesso
-            return ResponseEntity.ok(savedReceipt);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/receipts/jobs/" + job.getJobId()))
+                    .body(job);
 
+        } catch (IngestionQueueFullException e) {
+            // Pico de uploads: pede para o cliente tentar de novo em vez de acumular threads
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .header(HttpHeaders.RETRY_AFTER, "10")
+                    .body("Erro: " + e.getMessage());
         } catch (Exception e) {
-            e.printStackTrace(); // Imprime o erro no console para debugarmos
+            log.error("Falha ao receber a imagem da família {}", householdId, e);
             return ResponseEntity.internalServerError().body("Erro: " + e.getMessage());
         }
     }
+
+    // Várias fotos da mesma compra (campo "files" repetido). Como o upload simples, devolve 202 na hora com
+    // um job por foto (acompanhar cada um em /api/receipts/jobs/{jobId}): umas podem falhar sem perder as outras.
+    // Ex: curl -F files=@nota1.jpg -F files=@nota2.jpg /api/receipts/upload/batch
+    @PostMapping("/upload/batch")
+    public ResponseEntity<?> uploadReceiptBatch(@RequestParam("files") List<MultipartFile> files,
+                                                @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        try {
+            log.debug("Recebendo lote de {} imagens da família {}... colocando na fila do Gemini.", files.size(), householdId);
+            IngestionBatchDTO batch = ingestionJobService.submitBatch(files, householdId);
+            if (batch.isQueueFull()) {
+                return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                        .header(HttpHeaders.RETRY_AFTER, "10")
+                        .body(batch);
+            }
+            return ResponseEntity.accepted().body(batch);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro: " + e.getMessage());
+        }
+    }
+
+    // Importação do histórico: corpo NDJSON (uma nota por linha, no formato da extração), lido em streaming.
+    // Ex: curl -X POST -H "Content-Type: application/x-ndjson" --data-binary @notas.ndjson /api/receipts/import
+    @PostMapping(value = "/import", consumes = {"application/x-ndjson", "application/json", "text/plain"})
+    public ResponseEntity<ReceiptImportReportDTO> importReceipts(InputStream body,
+                                                                 @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) throws IOException {
+        return ResponseEntity.ok(importService.importNdjson(body, householdId));
+    }
+
+    // Exportação do histórico (notas + itens) em streaming, com memória constante para qualquer tamanho.
+    // format=csv (uma linha por item) ou ndjson (uma nota por linha, reimportável em /import); from/to opcionais e
+    // inclusivos; gzip=true comprime a resposta (Content-Encoding: gzip).
+    // Ex: curl -o compras.csv.gz "/api/receipts/export?format=csv&from=2025-01-01&to=2025-12-31&gzip=true"
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportReceipts(@RequestParam(defaultValue = "csv") String format,
+                                            @RequestParam(required = false) LocalDate from,
+                                            @RequestParam(required = false) LocalDate to,
+                                            @RequestParam(defaultValue = "false") boolean gzip,
+                                            @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        PurchaseExportService.Format exportFormat;
+        try {
+            exportFormat = PurchaseExportService.Format.valueOf(format.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Formato inválido (use csv ou ndjson): " + format);
+        }
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "'from' depois de 'to'.");
+        }
+
+        // O corpo é escrito fora da thread da requisição, linha a linha, conforme o cursor avança
+        StreamingResponseBody body = output -> exportService.export(householdId, from, to, exportFormat, gzip, output);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(exportFormat.contentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION,
+                        "attachment; filename=\"compras." + exportFormat.extension() + (gzip ? ".gz" : "") + "\"");
+        if (gzip) {
+            response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        return response.body(body);
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<IngestionJobDTO> getIngestionJob(@PathVariable String jobId,
+                                                           @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        return ingestionJobService.findJob(jobId, householdId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+
+    @GetMapping("/extraction-cache/stats")
+    public ExtractionCacheService.CacheStats getExtractionCacheStats() {
+        return extractionCache.getStats();
+    }
+
+    // Listagem paginada e leve (sem itens). Ex: /api/receipts/page?limit=20&from=2026-01-01&to=2026-01-31
+    // A próxima página vem de ?cursor=<nextCursor da resposta anterior>
+    @GetMapping("/page")
+    public ResponseEntity<?> listReceipts(@RequestParam(required = false) LocalDate from,
+                                          @RequestParam(required = false) LocalDate to,
+                                          @RequestParam(required = false) String cursor,
+                                          @RequestParam(defaultValue = "20") int limit,
+                                          @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        try {
+            return ResponseEntity.ok(receiptService.listReceipts(householdId, from, to, cursor, limit));
+        } catch (IllegalArgumentException | java.time.format.DateTimeParseException e) {
+            return ResponseEntity.badRequest().body("Erro: " + e.getMessage());
+        }
+    }
+
+    // Detalhe de uma nota fiscal, já com os itens (1 query)
+    @GetMapping("/{id}")
+    public ResponseEntity<Receipt> getReceipt(@PathVariable Long id,
+                                              @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        return receiptService.findReceiptWithItems(id, householdId)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
         
     @GetMapping
-    public ResponseEntity<?> getAllReceipts() {
-        return ResponseEntity.ok(repository.findAll());
+    public ResponseEntity<?> getAllReceipts(@RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        return ResponseEntity.ok(receiptService.findAllReceipts(householdId));
+    }
+
+    // Edição em lote dos itens de uma nota (1 requisição e 1 transação para corrigir a nota inteira)
+    // Corpo: {"version": 3, "items": [{"id": 10, "quantity": 2.0}, {"id": 11, "unitPrice": 4.59}]}
+    @PatchMapping("/{id}/items")
+    public ResponseEntity<?> patchItems(@PathVariable Long id, @RequestBody ReceiptItemsPatchDTO patch,
+                                        @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        try {
+            return receiptService.patchItems(id, householdId, patch)
+                    .<ResponseEntity<?>>map(ResponseEntity::ok)
+                    .orElse(ResponseEntity.notFound().build());
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Erro: " + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body("Erro: " + e.getMessage());
+        }
     }
 
     @DeleteMapping("/{id}")
-    public ResponseEntity<Void> deleteReceipt(@PathVariable Long id) {
-        if (!repository.existsById(id)) {
+    public ResponseEntity<Void> deleteReceipt(@PathVariable Long id,
+                                              @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        if (!receiptService.deleteReceipt(id, householdId)) {
             return ResponseEntity.notFound().build();
         }
         
-        repository.deleteById(id);
         return ResponseEntity.noContent().build(); // Retorna 204 (Sucesso sem conteúdo)
     }
 
     @PutMapping("/{id}/header")
-    public ResponseEntity<?> updateReceiptHeader(@PathVariable Long id, @RequestBody Map<String, String> updates) {
-        return repository.findById(id).map(receipt -> {
-            if (updates.containsKey("supermarketName")) {
-                receipt.setSupermarketName(updates.get("supermarketName"));
-            }
-            if (updates.containsKey("date")) {
-                receipt.setDate(java.time.LocalDate.parse(updates.get("date")).atStartOfDay());
-            }
-            repository.save(receipt);
-            return ResponseEntity.ok().build();
-        }).orElse(ResponseEntity.notFound().build());
+    public ResponseEntity<?> updateReceiptHeader(@PathVariable Long id, @RequestBody Map<String, String> updates,
+                                                 @RequestHeader(value = HouseholdHeader.NAME, defaultValue = HouseholdHeader.DEFAULT) Long householdId) {
+        if (!receiptService.updateHeader(id, householdId, updates)) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok().build();
     }
 }
@@ -0,0 +1,38 @@
+package com.techchallenge.marketlens.domain;
+
+import jakarta.persistence.*;
+
+@Entity
+// Variante de nome (marca, tamanho...) de um produto do catálogo. Tabela criada na migração V5
+@Table(name = "catalog_alias",
+       uniqueConstraints = @UniqueConstraint(name = "uk_catalog_alias_key", columnNames = "alias_key"))
+public class CatalogAlias {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Nome do item normalizado (TextNormalizer.fold), ex: "leite integral italac 1l"
+    @Column(nullable = false)
+    private String aliasKey;
+
+    @Column(name = "catalog_product_id", nullable = false)
+    private Long catalogProductId;
+
+    public CatalogAlias() {}
+
+    public CatalogAlias(String aliasKey, Long catalogProductId) {
+        this.aliasKey = aliasKey;
+        this.catalogProductId = catalogProductId;
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getAliasKey() { return aliasKey; }
+    public void setAliasKey(String aliasKey) { this.aliasKey = aliasKey; }
+
+    public Long getCatalogProductId() { return catalogProductId; }
+    public void setCatalogProductId(Long catalogProductId) { this.catalogProductId = catalogProductId; }
+}
@@ -0,0 +1,51 @@
+package com.techchallenge.marketlens.domain;
+
+import jakarta.persistence.*;
+
+@Entity
+// Produto canônico (ex: "Leite"), ao qual apontam os itens de todas as marcas/tamanhos. Tabela criada na migração V5
+@Table(name = "catalog_product",
+       uniqueConstraints = @UniqueConstraint(name = "uk_catalog_product_key", columnNames = "normalized_key"))
+public class CatalogProduct {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // Nome genérico normalizado (TextNormalizer.fold), ex: "feijao"
+    @Column(nullable = false)
+    private String normalizedKey;
+
+    // Como o nome aparece para o usuário, ex: "Feijão"
+    @Column(nullable = false)
+    private String displayName;
+
+    private String subCategory; // Ex: "Feijão"
+
+    private String category;    // Ex: "MERCEARIA" (Categoria Macro)
+
+    public CatalogProduct() {}
+
+    public CatalogProduct(String normalizedKey, String displayName, String subCategory, String category) {
+        this.normalizedKey = normalizedKey;
+        this.displayName = displayName;
+        this.subCategory = subCategory;
+        this.category = category;
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getNormalizedKey() { return normalizedKey; }
+    public void setNormalizedKey(String normalizedKey) { this.normalizedKey = normalizedKey; }
+
+    public String getDisplayName() { return displayName; }
+    public void setDisplayName(String displayName) { this.displayName = displayName; }
+
+    public String getSubCategory() { return subCategory; }
+    public void setSubCategory(String subCategory) { this.subCategory = subCategory; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+}
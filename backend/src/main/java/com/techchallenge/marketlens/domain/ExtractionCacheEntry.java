@@ -0,0 +1,31 @@
+package com.techchallenge.marketlens.domain;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// Resultado já extraído pelo Gemini para uma imagem, endereçado pelo conteúdo (hash da imagem + versão do prompt/modelo)
+@Entity
+@Table(name = "extraction_cache")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ExtractionCacheEntry {
+
+    @Id
+    @Column(length = 100)
+    private String cacheKey; // Ex: "<sha256 da imagem>:<versão do extrator>"
+
+    @Lob
+    @Column(nullable = false)
+    private String extractedJson; // JSON da nota fiscal, já limpo (mesmo retorno do AIService)
+
+    private Integer sizeBytes; // Tamanho do JSON, usado no limite total do cache
+
+    private LocalDateTime createdAt;
+
+    private LocalDateTime lastAccessedAt; // Usado para despejar os menos usados recentemente (LRU)
+}
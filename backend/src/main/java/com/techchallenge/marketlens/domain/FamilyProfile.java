@@ -4,13 +4,17 @@ import jakarta.persistence.*;
 import java.math.BigDecimal;
 
 @Entity
-@Table(name = "family_profiles")
+@Table(name = "family_profiles", indexes = @Index(name = "idx_family_profiles_household", columnList = "household_id"))
 public class FamilyProfile {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Família (household) a que o perfil pertence. Perfis antigos ficam na família 1
+    @Column(name = "household_id", nullable = false, columnDefinition = "bigint default 1 not null")
+    private Long householdId;
+
     @Column(nullable = false)
     private Integer adultsCount;
 
@@ -33,6 +37,9 @@ public class FamilyProfile {
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getHouseholdId() { return householdId; }
+    public void setHouseholdId(Long householdId) { this.householdId = householdId; }
+
     public Integer getAdultsCount() { return adultsCount; }
     public void setAdultsCount(Integer adultsCount) { this.adultsCount = adultsCount; }
 
@@ -0,0 +1,8 @@
+package com.techchallenge.marketlens.domain;
+
+public enum IngestionJobStatus {
+    QUEUED,   // Aguardando uma vaga no executor de ingestão
+    RUNNING,  // Imagem sendo analisada pelo Gemini
+    DONE,     // Nota fiscal salva no banco (receiptId preenchido)
+    FAILED    // Erro na IA ou ao salvar (mensagem em "error")
+}
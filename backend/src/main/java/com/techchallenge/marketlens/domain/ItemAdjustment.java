@@ -1,37 +1,60 @@
 package com.techchallenge.marketlens.domain;
 
+import com.techchallenge.marketlens.util.TextNormalizer;
 import jakarta.persistence.*;
 
 @Entity
-@Table(name = "item_adjustments")
+// Cada família tem os seus ajustes: o nome do item é único dentro da família (índice começa pela família)
+@Table(name = "item_adjustments",
+       uniqueConstraints = @UniqueConstraint(name = "uk_item_adjustments_household_item", columnNames = {"household_id", "item_name"}))
 public class ItemAdjustment {
 
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
 
+    // Ajustes antigos, de antes do multi-família, ficam na família 1
+    @Column(name = "household_id", nullable = false, columnDefinition = "bigint default 1 not null")
+    private Long householdId;
+
     // O nome do produto (ex: "Arroz", "Shampoo")
-    @Column(nullable = false, unique = true) 
+    @Column(nullable = false)
     private String itemName;
 
+    // TextNormalizer.fold(item_name) (migração V7): busca por nome sem acento nem maiúsculas, com índice único por família
+    @Column(nullable = false)
+    private String itemNameNorm;
+
     // O multiplicador: 1.0 (Padrão), 1.2 (Faltou), 0.8 (Sobrou), 0.0 (Excluído)
     @Column(nullable = false)
     private Double adjustmentFactor;
 
     public ItemAdjustment() {}
 
-    public ItemAdjustment(String itemName, Double adjustmentFactor) {
+    public ItemAdjustment(Long householdId, String itemName, Double adjustmentFactor) {
+        this.householdId = householdId;
         this.itemName = itemName;
         this.adjustmentFactor = adjustmentFactor;
     }
 
+    @PrePersist
+    @PreUpdate
+    void normalize() {
+        itemNameNorm = TextNormalizer.fold(itemName);
+    }
+
     // Getters e Setters
     public Long getId() { return id; }
     public void setId(Long id) { this.id = id; }
 
+    public Long getHouseholdId() { return householdId; }
+    public void setHouseholdId(Long householdId) { this.householdId = householdId; }
+
     public String getItemName() { return itemName; }
     public void setItemName(String itemName) { this.itemName = itemName; }
 
+    public String getItemNameNorm() { return itemNameNorm; }
+
     public Double getAdjustmentFactor() { return adjustmentFactor; }
     public void setAdjustmentFactor(Double adjustmentFactor) { this.adjustmentFactor = adjustmentFactor; }
 }
\ No newline at end of file
@@ -1,6 +1,8 @@
 package com.techchallenge.marketlens.domain;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.techchallenge.marketlens.util.TextNormalizer;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -12,8 +14,10 @@ import lombok.NoArgsConstructor;
 @AllArgsConstructor
 public class ProductItem {
 
+    // Mesma estratégia da Receipt: ids em blocos de 50 para permitir INSERT em lote
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "product_item_seq")
+    @SequenceGenerator(name = "product_item_seq", sequenceName = "product_item_seq", allocationSize = 50)
     private Long id;
 
     private String productName; // Ex: "Leite Integral Italac"
@@ -30,9 +34,35 @@ public class ProductItem {
     
     private Double totalPrice;  // Ex: 9.18
 
+    // Nome/categoria/subcategoria normalizados (TextNormalizer.fold: sem acento nem maiúsculas) e indexados
+    // (migrações V2 e V7). As buscas comparam com eles em vez de UPPER(coluna), que impedia o uso de índice.
+    // Preenchidos a cada gravação (normalize); o texto da busca passa pela mesma normalização
+    @JsonIgnore
+    private String productNameNorm;
+
+    @JsonIgnore
+    private String categoryNorm;
+
+    @JsonIgnore
+    private String subCategoryNorm;
+
+    // Produto do catálogo canônico (migração V5), resolvido na ingestão pelo ProductCatalogService.
+    // Histórico e preços agrupam por este id; no JSON é só leitura (o cliente não escolhe o produto)
+    @Column(name = "catalog_product_id")
+    @JsonProperty(access = JsonProperty.Access.READ_ONLY)
+    private Long catalogProductId;
+
     // Relacionamento: Vários itens pertencem a UMA nota fiscal (ManyToOne)
     @ManyToOne
     @JoinColumn(name = "receipt_id") // Cria a coluna de chave estrangeira
     @JsonIgnore // Importante: Evita loop infinito ao transformar em JSON
     private Receipt receipt;
-}
\ No newline at end of file
+
+    @PrePersist
+    @PreUpdate
+    void normalize() {
+        productNameNorm = TextNormalizer.foldOrNull(productName);
+        categoryNorm = TextNormalizer.foldOrNull(category);
+        subCategoryNorm = TextNormalizer.foldOrNull(subCategory);
+    }
+}
@@ -13,18 +13,33 @@ import java.util.List;
 @Data // O Lombok cria Getters, Setters e ToString automaticamente
 @NoArgsConstructor // Cria construtor vazio (obrigatório para JPA)
 @AllArgsConstructor // Cria construtor com todos os argumentos
+// Listagens sempre filtram pela família e ordenam por data: índice começando pela família
+@Table(indexes = @Index(name = "idx_receipt_household_date", columnList = "household_id, date, id"))
 public class Receipt {
 
+    // Sequence com alocação em blocos de 50 (pooled): o Hibernate não precisa ir ao banco a cada id
+    // e consegue agrupar os INSERTs em lote (com IDENTITY cada linha era uma ida ao banco)
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "receipt_seq")
+    @SequenceGenerator(name = "receipt_seq", sequenceName = "receipt_seq", allocationSize = 50)
     private Long id;
 
+    // Família (household) dona da nota. Notas antigas, de antes do multi-família, ficam na família 1
+    @Column(name = "household_id", nullable = false, columnDefinition = "bigint default 1 not null")
+    private Long householdId;
+
     private String supermarketName; // Ex: "Carrefour"
     
     private LocalDateTime date; // Data da compra
     
     private Double totalAmount; // Valor total da notinha
 
+    // Controle de concorrência otimista: cada alteração incrementa a versão.
+    // Duas edições simultâneas na mesma nota não sobrescrevem o total uma da outra (a segunda recebe 409).
+    @Version
+    @Column(nullable = false, columnDefinition = "bigint default 0 not null")
+    private Long version;
+
     // Relacionamento: Uma nota fiscal tem VÁRIOS itens (OneToMany)
     // cascade = CascadeType.ALL: Se eu salvar a nota fiscal, salva os itens automaticamente.
     // orphanRemoval = true: Se eu deletar a nota fiscal, deleta os itens.
@@ -0,0 +1,8 @@
+package com.techchallenge.marketlens.domain;
+
+// Dimensões dos agregados de gasto mensal (tabela spending_rollup)
+public enum SpendingDimension {
+    CATEGORY,     // Macro-categoria do item (MERCEARIA, LATICINIOS...)
+    SUPERMARKET,  // Mercado da nota fiscal
+    SUB_CATEGORY  // Tipo de produto (Arroz, Leite...)
+}
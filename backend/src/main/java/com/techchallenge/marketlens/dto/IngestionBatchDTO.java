@@ -0,0 +1,39 @@
+package com.techchallenge.marketlens.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resultado de um upload em lote (POST /api/receipts/upload/batch)
+public class IngestionBatchDTO {
+
+    private int fileCount;
+    private int succeeded;       // Notas já salvas (status DONE)
+    private int failed;          // Fotos com erro (status FAILED), inclusive as que não couberam na fila
+    private int pending;         // Na fila ou em processamento: consultar em /api/receipts/jobs/{jobId}
+    private boolean queueFull;   // Nenhuma foto coube na fila de processamento
+    private List<FileResult> files = new ArrayList<>(); // Na mesma ordem do envio
+
+    // Nome do arquivo enviado e o job correspondente (jobId null = a imagem enviada não pôde ser gravada)
+    public record FileResult(String fileName, IngestionJobDTO job) {}
+
+    public IngestionBatchDTO() {}
+
+    // Getters e Setters
+    public int getFileCount() { return fileCount; }
+    public void setFileCount(int fileCount) { this.fileCount = fileCount; }
+
+    public int getSucceeded() { return succeeded; }
+    public void setSucceeded(int succeeded) { this.succeeded = succeeded; }
+
+    public int getFailed() { return failed; }
+    public void setFailed(int failed) { this.failed = failed; }
+
+    public int getPending() { return pending; }
+    public void setPending(int pending) { this.pending = pending; }
+
+    public boolean isQueueFull() { return queueFull; }
+    public void setQueueFull(boolean queueFull) { this.queueFull = queueFull; }
+
+    public List<FileResult> getFiles() { return files; }
+    public void setFiles(List<FileResult> files) { this.files = files; }
+}
@@ -0,0 +1,54 @@
+package com.techchallenge.marketlens.dto;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.techchallenge.marketlens.domain.IngestionJobStatus;
+
+import java.time.LocalDateTime;
+
+public class IngestionJobDTO {
+
+    private String jobId;
+    private IngestionJobStatus status;
+    private Long receiptId;      // Preenchido quando status = DONE
+    private String error;        // Preenchido quando status = FAILED
+    private Long imageBytesOriginal; // Tamanho da foto recebida (os dois campos ficam null se a extração veio do cache)
+    private Long imageBytesSent;     // Tamanho enviado ao Gemini depois do pré-processamento
+    private LocalDateTime submittedAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    @JsonIgnore
+    private Long householdId;        // Família que enviou: só ela consulta o job
+
+    public IngestionJobDTO() {}
+
+    // Getters e Setters
+    public String getJobId() { return jobId; }
+    public void setJobId(String jobId) { this.jobId = jobId; }
+
+    public IngestionJobStatus getStatus() { return status; }
+    public void setStatus(IngestionJobStatus status) { this.status = status; }
+
+    public Long getHouseholdId() { return householdId; }
+    public void setHouseholdId(Long householdId) { this.householdId = householdId; }
+
+    public Long getReceiptId() { return receiptId; }
+    public void setReceiptId(Long receiptId) { this.receiptId = receiptId; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    public Long getImageBytesOriginal() { return imageBytesOriginal; }
+    public void setImageBytesOriginal(Long imageBytesOriginal) { this.imageBytesOriginal = imageBytesOriginal; }
+
+    public Long getImageBytesSent() { return imageBytesSent; }
+    public void setImageBytesSent(Long imageBytesSent) { this.imageBytesSent = imageBytesSent; }
+
+    public LocalDateTime getSubmittedAt() { return submittedAt; }
+    public void setSubmittedAt(LocalDateTime submittedAt) { this.submittedAt = submittedAt; }
+
+    public LocalDateTime getStartedAt() { return startedAt; }
+    public void setStartedAt(LocalDateTime startedAt) { this.startedAt = startedAt; }
+
+    public LocalDateTime getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(LocalDateTime finishedAt) { this.finishedAt = finishedAt; }
+}
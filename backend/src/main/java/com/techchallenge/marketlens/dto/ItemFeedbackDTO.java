@@ -0,0 +1,23 @@
+package com.techchallenge.marketlens.dto;
+
+// Um clique de feedback no planejador, com o mesmo "factor" do POST /feedback:
+// 0.0 = Lixeira, > 1.0 = ➕ (um item a mais), < 1.0 = ➖ (um item a menos)
+public class ItemFeedbackDTO {
+
+    private String itemName;
+    private Double factor;
+
+    public ItemFeedbackDTO() {}
+
+    public ItemFeedbackDTO(String itemName, Double factor) {
+        this.itemName = itemName;
+        this.factor = factor;
+    }
+
+    // Getters e Setters
+    public String getItemName() { return itemName; }
+    public void setItemName(String itemName) { this.itemName = itemName; }
+
+    public Double getFactor() { return factor; }
+    public void setFactor(Double factor) { this.factor = factor; }
+}
@@ -0,0 +1,37 @@
+package com.techchallenge.marketlens.dto;
+
+// Alteração parcial de um item: campos nulos ficam como estão
+public class ItemPatchDTO {
+
+    private Long id;
+    private String productName;
+    private String category;
+    private String subCategory;
+    private Double quantity;
+    private String unit;
+    private Double unitPrice;
+
+    public ItemPatchDTO() {}
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getProductName() { return productName; }
+    public void setProductName(String productName) { this.productName = productName; }
+
+    public String getCategory() { return category; }
+    public void setCategory(String category) { this.category = category; }
+
+    public String getSubCategory() { return subCategory; }
+    public void setSubCategory(String subCategory) { this.subCategory = subCategory; }
+
+    public Double getQuantity() { return quantity; }
+    public void setQuantity(Double quantity) { this.quantity = quantity; }
+
+    public String getUnit() { return unit; }
+    public void setUnit(String unit) { this.unit = unit; }
+
+    public Double getUnitPrice() { return unitPrice; }
+    public void setUnitPrice(Double unitPrice) { this.unitPrice = unitPrice; }
+}
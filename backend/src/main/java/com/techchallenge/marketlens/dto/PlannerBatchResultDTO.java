@@ -0,0 +1,32 @@
+package com.techchallenge.marketlens.dto;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Resultado da geração de planos em lote (GET /api/planner/generate/batch)
+public class PlannerBatchResultDTO {
+
+    private int householdCount;
+    private long wallTimeMs;        // Tempo total do lote (as famílias são processadas em paralelo)
+    private long priceSnapshotMs;   // Parte do tempo gasta montando o retrato de preços compartilhado
+    private Map<Long, PlannerSummaryDTO> plans = new LinkedHashMap<>();
+    private Map<Long, String> errors = new LinkedHashMap<>(); // Famílias cujo plano falhou -> motivo
+
+    public PlannerBatchResultDTO() {}
+
+    // Getters e Setters
+    public int getHouseholdCount() { return householdCount; }
+    public void setHouseholdCount(int householdCount) { this.householdCount = householdCount; }
+
+    public long getWallTimeMs() { return wallTimeMs; }
+    public void setWallTimeMs(long wallTimeMs) { this.wallTimeMs = wallTimeMs; }
+
+    public long getPriceSnapshotMs() { return priceSnapshotMs; }
+    public void setPriceSnapshotMs(long priceSnapshotMs) { this.priceSnapshotMs = priceSnapshotMs; }
+
+    public Map<Long, PlannerSummaryDTO> getPlans() { return plans; }
+    public void setPlans(Map<Long, PlannerSummaryDTO> plans) { this.plans = plans; }
+
+    public Map<Long, String> getErrors() { return errors; }
+    public void setErrors(Map<Long, String> errors) { this.errors = errors; }
+}
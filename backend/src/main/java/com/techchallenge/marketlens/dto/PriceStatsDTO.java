@@ -0,0 +1,48 @@
+package com.techchallenge.marketlens.dto;
+
+import java.util.List;
+
+// Estatísticas de preço de um produto do catálogo (ou de um mercado, dentro de bySupermarket).
+// "recent*" pesam os preços pela data (ver PriceStatisticsService); mediana e percentis têm erro de até 1%
+public class PriceStatsDTO {
+
+    private String supermarket;
+    private long count;
+    private Double average;
+    private Double recentAverage;
+    private Double median;
+    private Double recentMedian;
+    private Double p10;
+    private Double p90;
+    private List<PriceStatsDTO> bySupermarket;
+
+    public PriceStatsDTO() {}
+
+    // Getters e Setters
+    public String getSupermarket() { return supermarket; }
+    public void setSupermarket(String supermarket) { this.supermarket = supermarket; }
+
+    public long getCount() { return count; }
+    public void setCount(long count) { this.count = count; }
+
+    public Double getAverage() { return average; }
+    public void setAverage(Double average) { this.average = average; }
+
+    public Double getRecentAverage() { return recentAverage; }
+    public void setRecentAverage(Double recentAverage) { this.recentAverage = recentAverage; }
+
+    public Double getMedian() { return median; }
+    public void setMedian(Double median) { this.median = median; }
+
+    public Double getRecentMedian() { return recentMedian; }
+    public void setRecentMedian(Double recentMedian) { this.recentMedian = recentMedian; }
+
+    public Double getP10() { return p10; }
+    public void setP10(Double p10) { this.p10 = p10; }
+
+    public Double getP90() { return p90; }
+    public void setP90(Double p90) { this.p90 = p90; }
+
+    public List<PriceStatsDTO> getBySupermarket() { return bySupermarket; }
+    public void setBySupermarket(List<PriceStatsDTO> bySupermarket) { this.bySupermarket = bySupermarket; }
+}
@@ -0,0 +1,47 @@
+package com.techchallenge.marketlens.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Resultado de uma importação em lote (POST /api/receipts/import)
+public class ReceiptImportReportDTO {
+
+    private long linesRead;
+    private long receiptsImported;
+    private long itemsImported;
+    private long receiptsFailed;
+    private long elapsedMs;
+    private double rowsPerSecond;          // Linhas inseridas (notas + itens) por segundo
+    private List<LineError> errors = new ArrayList<>(); // Limitado; ver errorsTruncated
+    private boolean errorsTruncated;
+
+    // Linha do arquivo NDJSON (começando em 1) e o motivo da falha
+    public record LineError(long line, String message) {}
+
+    public ReceiptImportReportDTO() {}
+
+    // Getters e Setters
+    public long getLinesRead() { return linesRead; }
+    public void setLinesRead(long linesRead) { this.linesRead = linesRead; }
+
+    public long getReceiptsImported() { return receiptsImported; }
+    public void setReceiptsImported(long receiptsImported) { this.receiptsImported = receiptsImported; }
+
+    public long getItemsImported() { return itemsImported; }
+    public void setItemsImported(long itemsImported) { this.itemsImported = itemsImported; }
+
+    public long getReceiptsFailed() { return receiptsFailed; }
+    public void setReceiptsFailed(long receiptsFailed) { this.receiptsFailed = receiptsFailed; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+
+    public double getRowsPerSecond() { return rowsPerSecond; }
+    public void setRowsPerSecond(double rowsPerSecond) { this.rowsPerSecond = rowsPerSecond; }
+
+    public List<LineError> getErrors() { return errors; }
+    public void setErrors(List<LineError> errors) { this.errors = errors; }
+
+    public boolean isErrorsTruncated() { return errorsTruncated; }
+    public void setErrorsTruncated(boolean errorsTruncated) { this.errorsTruncated = errorsTruncated; }
+}
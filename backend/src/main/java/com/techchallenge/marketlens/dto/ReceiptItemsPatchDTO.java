@@ -0,0 +1,19 @@
+package com.techchallenge.marketlens.dto;
+
+import java.util.List;
+
+// Várias edições de itens de UMA nota fiscal, aplicadas numa única transação
+public class ReceiptItemsPatchDTO {
+
+    private Long version; // Versão da nota que o cliente tinha em mãos (opcional). Se mudou, responde 409
+    private List<ItemPatchDTO> items;
+
+    public ReceiptItemsPatchDTO() {}
+
+    // Getters e Setters
+    public Long getVersion() { return version; }
+    public void setVersion(Long version) { this.version = version; }
+
+    public List<ItemPatchDTO> getItems() { return items; }
+    public void setItems(List<ItemPatchDTO> items) { this.items = items; }
+}
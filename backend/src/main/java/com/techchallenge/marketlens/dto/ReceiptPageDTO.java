@@ -0,0 +1,28 @@
+package com.techchallenge.marketlens.dto;
+
+import java.util.List;
+
+public class ReceiptPageDTO {
+
+    private List<ReceiptSummaryDTO> items;
+    private String nextCursor; // Enviar em ?cursor= para buscar a próxima página (null na última)
+    private boolean hasMore;
+
+    public ReceiptPageDTO() {}
+
+    public ReceiptPageDTO(List<ReceiptSummaryDTO> items, String nextCursor, boolean hasMore) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    // Getters e Setters
+    public List<ReceiptSummaryDTO> getItems() { return items; }
+    public void setItems(List<ReceiptSummaryDTO> items) { this.items = items; }
+
+    public String getNextCursor() { return nextCursor; }
+    public void setNextCursor(String nextCursor) { this.nextCursor = nextCursor; }
+
+    public boolean isHasMore() { return hasMore; }
+    public void setHasMore(boolean hasMore) { this.hasMore = hasMore; }
+}
@@ -0,0 +1,39 @@
+package com.techchallenge.marketlens.dto;
+
+import java.time.LocalDateTime;
+
+// Linha da listagem de notas fiscais: só o cabeçalho + quantidade de itens (sem carregar os itens)
+public class ReceiptSummaryDTO {
+
+    private Long id;
+    private String supermarketName;
+    private LocalDateTime date;
+    private Double totalAmount;
+    private Integer itemCount;
+
+    public ReceiptSummaryDTO() {}
+
+    public ReceiptSummaryDTO(Long id, String supermarketName, LocalDateTime date, Double totalAmount, Integer itemCount) {
+        this.id = id;
+        this.supermarketName = supermarketName;
+        this.date = date;
+        this.totalAmount = totalAmount;
+        this.itemCount = itemCount;
+    }
+
+    // Getters e Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getSupermarketName() { return supermarketName; }
+    public void setSupermarketName(String supermarketName) { this.supermarketName = supermarketName; }
+
+    public LocalDateTime getDate() { return date; }
+    public void setDate(LocalDateTime date) { this.date = date; }
+
+    public Double getTotalAmount() { return totalAmount; }
+    public void setTotalAmount(Double totalAmount) { this.totalAmount = totalAmount; }
+
+    public Integer getItemCount() { return itemCount; }
+    public void setItemCount(Integer itemCount) { this.itemCount = itemCount; }
+}
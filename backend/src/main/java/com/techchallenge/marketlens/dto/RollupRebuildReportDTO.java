@@ -0,0 +1,25 @@
+package com.techchallenge.marketlens.dto;
+
+// Resultado da reconstrução dos agregados de gasto (POST /api/analytics/rollups/rebuild)
+public class RollupRebuildReportDTO {
+
+    private long rowsBefore;      // Linhas mantidas incrementalmente até aqui
+    private long rowsAfter;       // Linhas recalculadas do zero a partir das notas
+    private long rowsMismatched;  // Chaves com valor/quantidade diferente, faltando ou sobrando (0 = estavam consistentes)
+    private long elapsedMs;
+
+    public RollupRebuildReportDTO() {}
+
+    // Getters e Setters
+    public long getRowsBefore() { return rowsBefore; }
+    public void setRowsBefore(long rowsBefore) { this.rowsBefore = rowsBefore; }
+
+    public long getRowsAfter() { return rowsAfter; }
+    public void setRowsAfter(long rowsAfter) { this.rowsAfter = rowsAfter; }
+
+    public long getRowsMismatched() { return rowsMismatched; }
+    public void setRowsMismatched(long rowsMismatched) { this.rowsMismatched = rowsMismatched; }
+
+    public long getElapsedMs() { return elapsedMs; }
+    public void setElapsedMs(long elapsedMs) { this.elapsedMs = elapsedMs; }
+}
@@ -0,0 +1,35 @@
+package com.techchallenge.marketlens.dto;
+
+import java.math.BigDecimal;
+import java.time.YearMonth;
+
+// Gasto de um mês em um valor da dimensão (ex: 2026-03 / LATICINIOS / 412.50 em 37 itens)
+public class SpendingSummaryDTO {
+
+    private YearMonth month;
+    private String key;
+    private BigDecimal totalSpent;
+    private long itemCount;
+
+    public SpendingSummaryDTO() {}
+
+    public SpendingSummaryDTO(YearMonth month, String key, BigDecimal totalSpent, long itemCount) {
+        this.month = month;
+        this.key = key;
+        this.totalSpent = totalSpent;
+        this.itemCount = itemCount;
+    }
+
+    // Getters e Setters
+    public YearMonth getMonth() { return month; }
+    public void setMonth(YearMonth month) { this.month = month; }
+
+    public String getKey() { return key; }
+    public void setKey(String key) { this.key = key; }
+
+    public BigDecimal getTotalSpent() { return totalSpent; }
+    public void setTotalSpent(BigDecimal totalSpent) { this.totalSpent = totalSpent; }
+
+    public long getItemCount() { return itemCount; }
+    public void setItemCount(long itemCount) { this.itemCount = itemCount; }
+}
@@ -0,0 +1,62 @@
+package com.techchallenge.marketlens.event;
+
+import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.domain.Receipt;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Publicado sempre que uma nota fiscal é salva, editada ou excluída.
+ *
+ * Carrega a "foto" dos itens antes ({@code removed}) e depois ({@code added}) da mudança,
+ * para que índices e agregados em memória se atualizem de forma incremental
+ * (tira o que saiu, soma o que entrou) sem reler o histórico do banco.
+ */
+public record ReceiptChangedEvent(
+        Long receiptId,
+        List<ItemSnapshot> removed,
+        List<ItemSnapshot> added
+) {
+
+    public static ReceiptChangedEvent created(Receipt receipt) {
+        return new ReceiptChangedEvent(receipt.getId(), List.of(), snapshot(receipt));
+    }
+
+    public static ReceiptChangedEvent deleted(Long receiptId, List<ItemSnapshot> before) {
+        return new ReceiptChangedEvent(receiptId, before, List.of());
+    }
+
+    public static ReceiptChangedEvent updated(Long receiptId, List<ItemSnapshot> before, List<ItemSnapshot> after) {
+        return new ReceiptChangedEvent(receiptId, before, after);
+    }
+
+    public static List<ItemSnapshot> snapshot(Receipt receipt) {
+        if (receipt.getItems() == null) {
+            return List.of();
+        }
+        return receipt.getItems().stream().map(item -> ItemSnapshot.of(receipt, item)).toList();
+    }
+
+    // Cópia imutável dos campos de um item (e da nota) no momento do evento
+    public record ItemSnapshot(
+            Long itemId,
+            Long receiptId,
+            Long householdId,
+            String productName,
+            String category,
+            String subCategory,
+            Long catalogProductId,
+            Double quantity,
+            Double unitPrice,
+            Double totalPrice,
+            LocalDateTime date,
+            String supermarketName
+    ) {
+        public static ItemSnapshot of(Receipt receipt, ProductItem item) {
+            return new ItemSnapshot(item.getId(), receipt.getId(), receipt.getHouseholdId(), item.getProductName(), item.getCategory(),
+                    item.getSubCategory(), item.getCatalogProductId(), item.getQuantity(), item.getUnitPrice(), item.getTotalPrice(),
+                    receipt.getDate(), receipt.getSupermarketName());
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.domain.CatalogAlias;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CatalogAliasRepository extends JpaRepository<CatalogAlias, Long> {
+
+    // Chave única (uk_catalog_alias_key)
+    Optional<CatalogAlias> findByAliasKey(String aliasKey);
+}
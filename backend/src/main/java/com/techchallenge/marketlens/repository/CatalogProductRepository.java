@@ -0,0 +1,14 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.domain.CatalogProduct;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface CatalogProductRepository extends JpaRepository<CatalogProduct, Long> {
+
+    // Chave única (uk_catalog_product_key)
+    Optional<CatalogProduct> findByNormalizedKey(String normalizedKey);
+}
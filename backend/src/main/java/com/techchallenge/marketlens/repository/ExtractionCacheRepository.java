@@ -0,0 +1,29 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.domain.ExtractionCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ExtractionCacheRepository extends JpaRepository<ExtractionCacheEntry, String> {
+
+    // Soma do tamanho de todas as entradas (carregada uma vez na inicialização)
+    @Query("SELECT COALESCE(SUM(e.sizeBytes), 0) FROM ExtractionCacheEntry e")
+    long sumSizeBytes();
+
+    // Candidatas ao despejo: as acessadas há mais tempo primeiro
+    List<ExtractionCacheEntry> findTop20ByOrderByLastAccessedAtAsc();
+
+    // Marca o acesso sem carregar/regravar o JSON inteiro
+    @Transactional
+    @Modifying
+    @Query("UPDATE ExtractionCacheEntry e SET e.lastAccessedAt = :accessedAt WHERE e.cacheKey = :cacheKey")
+    void touch(@Param("cacheKey") String cacheKey, @Param("accessedAt") LocalDateTime accessedAt);
+}
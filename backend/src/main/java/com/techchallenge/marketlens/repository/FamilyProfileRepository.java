@@ -2,10 +2,17 @@ package com.techchallenge.marketlens.repository;
 
 import com.techchallenge.marketlens.domain.FamilyProfile;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface FamilyProfileRepository extends JpaRepository<FamilyProfile, Long> {
-    // Como assumimos 1 perfil por enquanto no MVP, podemos buscar o primeiro que existir
-    FamilyProfile findFirstByOrderByIdAsc();
+    // 1 perfil por família: se houver mais de um (bancos antigos), vale o primeiro
+    FamilyProfile findFirstByHouseholdIdOrderByIdAsc(Long householdId);
+
+    // Famílias cadastradas (usado na geração de planos em lote)
+    @Query("SELECT DISTINCT p.householdId FROM FamilyProfile p ORDER BY p.householdId")
+    List<Long> findAllHouseholdIds();
 }
\ No newline at end of file
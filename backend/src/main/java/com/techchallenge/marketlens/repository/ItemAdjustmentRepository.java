@@ -1,13 +1,19 @@
 package com.techchallenge.marketlens.repository;
 
 import com.techchallenge.marketlens.domain.ItemAdjustment;
+import org.springframework.data.domain.Sort;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface ItemAdjustmentRepository extends JpaRepository<ItemAdjustment, Long> {
-    // Busca o ajuste específico de um item (ex: saber se o "Shampoo" tem fator 0)
-    Optional<ItemAdjustment> findByItemNameIgnoreCase(String itemName);
+    // Busca o ajuste específico de um item da família (ex: saber se o "Shampoo" tem fator 0).
+    // Compara com a coluna normalizada (índice household_id, item_name_norm): passe TextNormalizer.fold(nome)
+    Optional<ItemAdjustment> findByHouseholdIdAndItemNameNorm(Long householdId, String itemNameNorm);
+
+    // Todos os ajustes de uma família (o planejador carrega de uma vez)
+    List<ItemAdjustment> findByHouseholdId(Long householdId, Sort sort);
 }
\ No newline at end of file
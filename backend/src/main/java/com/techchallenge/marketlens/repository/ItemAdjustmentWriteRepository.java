@@ -0,0 +1,60 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.util.TextNormalizer;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Escrita dos ajustes do planejador (feedback ➕/➖/lixeira) via JDBC, com MERGE: o banco aplica a mudança
+ * sobre o valor atual da linha (ex: adjustment_factor = adjustment_factor + 1) ou cria a linha, num único
+ * comando. Não há leitura antes da escrita, então cliques simultâneos no mesmo item não se sobrescrevem.
+ *
+ * A linha é encontrada como na leitura (família + nome normalizado com TextNormalizer.fold, índice único
+ * idx_item_adjustments_household_item_norm), e a chave é gravada junto na criação.
+ */
+@Repository
+public class ItemAdjustmentWriteRepository {
+
+    private static final String MERGE_SQL =
+        "MERGE INTO item_adjustments t " +
+        "USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(255)), CAST(? AS VARCHAR(255)), CAST(? AS FLOAT(53)), " +
+        "               CAST(? AS FLOAT(53)), CAST(? AS FLOAT(53)), CAST(? AS FLOAT(53)))) " +
+        "      AS s (household_id, item_name, item_name_norm, set_value, delta, trash_value, initial_value) " +
+        "ON t.household_id = s.household_id AND t.item_name_norm = s.item_name_norm " +
+        "WHEN MATCHED THEN UPDATE SET adjustment_factor = CASE " +
+        "     WHEN t.adjustment_factor = " + UpsertAdjustment.TRASH + " THEN s.trash_value " +
+        "     WHEN s.set_value IS NOT NULL THEN s.set_value " +
+        "     ELSE t.adjustment_factor + s.delta END " +
+        "WHEN NOT MATCHED THEN INSERT (household_id, item_name, item_name_norm, adjustment_factor) " +
+        "     VALUES (s.household_id, s.item_name, s.item_name_norm, s.initial_value)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ItemAdjustmentWriteRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /**
+     * Mudança a aplicar no fator de um item, qualquer que seja o valor atual:
+     * - item na lixeira (TRASH): passa a valer trashValue
+     * - senão: passa a valer setValue (se houver) ou o valor atual + delta
+     * - item sem ajuste ainda: é criado com initialValue
+     */
+    public record UpsertAdjustment(Long householdId, String itemName, Double setValue, double delta,
+                                   double trashValue, double initialValue) {
+        public static final double TRASH = -999.0;
+    }
+
+    // Um MERGE por item, enviados em lote (na transação de quem chama)
+    public void upsert(List<UpsertAdjustment> adjustments) {
+        List<Object[]> rows = new ArrayList<>(adjustments.size());
+        for (UpsertAdjustment adjustment : adjustments) {
+            rows.add(new Object[] {adjustment.householdId(), adjustment.itemName(), TextNormalizer.fold(adjustment.itemName()),
+                    adjustment.setValue(), adjustment.delta(), adjustment.trashValue(), adjustment.initialValue()});
+        }
+        jdbcTemplate.batchUpdate(MERGE_SQL, rows);
+    }
+}
@@ -0,0 +1,47 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.event.ReceiptChangedEvent.ItemSnapshot;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.function.Consumer;
+
+/**
+ * Leitura de todos os itens, já com os campos da nota, no mesmo formato dos eventos (ItemSnapshot), para montar
+ * o retrato colunar (ProductItemColumnStore) na subida. Via JDBC e em streaming (fetch size), como o
+ * PriceObservationRepository: nenhuma entidade é montada e a lista inteira nunca fica em memória.
+ */
+@Repository
+public class ItemSnapshotRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SQL =
+        "SELECT p.id, r.id, r.household_id, p.product_name, p.category, p.sub_category, p.catalog_product_id, " +
+        "       p.quantity, p.unit_price, p.total_price, r.date, r.supermarket_name " +
+        "FROM product_item p JOIN receipt r ON r.id = p.receipt_id";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public ItemSnapshotRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    public void forEach(Consumer<ItemSnapshot> handler) {
+        jdbcTemplate.query(SQL, rs -> {
+            handler.accept(toSnapshot(rs));
+        });
+    }
+
+    private static ItemSnapshot toSnapshot(ResultSet rs) throws SQLException {
+        Timestamp date = rs.getTimestamp(11);
+        return new ItemSnapshot(rs.getLong(1), rs.getLong(2), rs.getLong(3), rs.getString(4), rs.getString(5),
+                rs.getString(6), rs.getObject(7, Long.class), rs.getObject(8, Double.class),
+                rs.getObject(9, Double.class), rs.getObject(10, Double.class),
+                date != null ? date.toLocalDateTime() : null, rs.getString(12));
+    }
+}
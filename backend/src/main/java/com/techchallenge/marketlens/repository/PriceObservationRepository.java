@@ -0,0 +1,42 @@
+package com.techchallenge.marketlens.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+
+/**
+ * Leitura de todos os preços com família, produto do catálogo, mercado e data, para montar as estatísticas de preço
+ * (PriceStatisticsService) na subida. Via JDBC e em streaming (fetch size): cada linha é entregue ao
+ * consumidor e descartada, sem carregar entidades nem a lista inteira em memória.
+ */
+@Repository
+public class PriceObservationRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SQL =
+        "SELECT r.household_id, p.catalog_product_id, r.supermarket_name, p.unit_price, r.date " +
+        "FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+        "WHERE p.catalog_product_id IS NOT NULL AND p.unit_price IS NOT NULL";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PriceObservationRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    @FunctionalInterface
+    public interface ObservationHandler {
+        void accept(long householdId, long catalogProductId, String supermarketName, double unitPrice, LocalDateTime date);
+    }
+
+    public void forEach(ObservationHandler handler) {
+        jdbcTemplate.query(SQL, rs -> {
+            Timestamp date = rs.getTimestamp(5);
+            handler.accept(rs.getLong(1), rs.getLong(2), rs.getString(3), rs.getDouble(4), date != null ? date.toLocalDateTime() : null);
+        });
+    }
+}
@@ -1,39 +1,30 @@
 package com.techchallenge.marketlens.repository;
 
 import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.repository.projection.TermFrequency;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
-import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.util.List;
-import java.time.LocalDateTime;
+import java.util.Optional;
 
 
 @Repository
 public interface ProductItemRepository extends JpaRepository<ProductItem, Long> {
     
-    // O Spring cria o SQL sozinho baseado no nome do método:
-    // "Busque por Nome do Produto, Contendo o texto X, Ignorando Maiúsculas"
-    List<ProductItem> findByProductNameContainingIgnoreCase(String name);
+    // Históricos, séries e agregações de preço não passam mais por aqui: são lidos do retrato colunar em memória
+    // (ProductItemColumnStore)
 
-    // Busca items onde o NOME, a CATEGORIA ou a SUBCATEGORIA contenham o texto (ignora maiúsculas)
-    @Query("SELECT p FROM ProductItem p WHERE " +
-           "LOWER(p.productName) LIKE LOWER(CONCAT('%', :text, '%')) OR " +
-           "LOWER(p.category) LIKE LOWER(CONCAT('%', :text, '%')) OR " +
-           "LOWER(p.subCategory) LIKE LOWER(CONCAT('%', :text, '%'))")
-    List<ProductItem> searchAny(@Param("text") String text);
+    // Item só se a nota dele for da família (edição pelo PUT /api/items/{id})
+    Optional<ProductItem> findByIdAndReceiptHouseholdId(Long id, Long householdId);
 
-    // Busca exata pela subcategoria 
-    List<ProductItem> findBySubCategoryIgnoreCase(String subCategory);
+    // Nomes e subcategorias distintos de cada família com a frequência de compra: base do índice de autocomplete
+    // (ProductSearchIndex)
+    @Query("SELECT r.householdId AS householdId, p.productName AS name, COUNT(p) AS frequency FROM ProductItem p JOIN p.receipt r " +
+           "WHERE p.productName IS NOT NULL GROUP BY r.householdId, p.productName")
+    List<TermFrequency> findProductNameFrequencies();
 
-    // Busca Nomes Únicos (DISTINCT) unindo o Item com a Nota Fiscal (JOIN p.receipt)
-    // Filtra pela data da nota fiscal e apenas pelas categorias essenciais que você quer.
-    @Query("SELECT DISTINCT p.productName FROM ProductItem p JOIN p.receipt r " +
-           "WHERE r.date >= :startDate " +
-           "AND UPPER(p.category) IN ('MERCEARIA', 'LIMPEZA', 'HIGIENE', 'LATICINIOS')")
-    List<String> findEssentialItemsSince(@Param("startDate") LocalDateTime startDate);
-
-    // Busca a média de preço do histórico baseado em uma palavra-chave
-    @Query("SELECT AVG(p.unitPrice) FROM ProductItem p WHERE UPPER(p.productName) LIKE UPPER(CONCAT('%', :keyword, '%'))")
-    Double findAverageHistoricalPrice(@org.springframework.data.repository.query.Param("keyword") String keyword);
-}
\ No newline at end of file
+    @Query("SELECT r.householdId AS householdId, p.subCategory AS name, COUNT(p) AS frequency FROM ProductItem p JOIN p.receipt r " +
+           "WHERE p.subCategory IS NOT NULL GROUP BY r.householdId, p.subCategory")
+    List<TermFrequency> findSubCategoryFrequencies();
+}
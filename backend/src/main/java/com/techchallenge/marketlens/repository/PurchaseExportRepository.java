@@ -0,0 +1,85 @@
+package com.techchallenge.marketlens.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Leitura do histórico de compras (notas + itens) para a exportação, via JDBC com cursor: as linhas chegam do
+ * banco em blocos de FETCH_SIZE e cada uma é entregue ao consumidor e descartada. A memória usada não depende
+ * do tamanho do histórico (o findAll() montava todas as entidades de uma vez).
+ *
+ * As linhas vêm ordenadas por data e nota (índice idx_receipt_household_date), com os itens de cada nota em
+ * sequência; nota sem itens vem numa linha só, com os campos do item nulos.
+ */
+@Repository
+public class PurchaseExportRepository {
+
+    private static final int FETCH_SIZE = 1000;
+
+    private static final String SELECT_SQL =
+        "SELECT r.id, r.date, r.supermarket_name, r.total_amount, " +
+        "       p.id, p.product_name, p.category, p.sub_category, p.quantity, p.unit, p.unit_price, p.total_price " +
+        "FROM receipt r LEFT JOIN product_item p ON p.receipt_id = r.id " +
+        "WHERE r.household_id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public PurchaseExportRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = new JdbcTemplate(jdbcTemplate.getDataSource());
+        this.jdbcTemplate.setFetchSize(FETCH_SIZE);
+    }
+
+    // Uma linha do histórico: campos da nota + campos do item (nulos se a nota não tem itens)
+    public record PurchaseRow(long receiptId, LocalDateTime date, String supermarketName, Double totalAmount,
+                              Long itemId, String productName, String category, String subCategory,
+                              Double quantity, String unit, Double unitPrice, Double totalPrice) {}
+
+    @FunctionalInterface
+    public interface PurchaseRowHandler {
+        void accept(PurchaseRow row) throws IOException;
+    }
+
+    // Datas opcionais: from inclusive, to exclusive
+    public void forEach(Long householdId, LocalDateTime from, LocalDateTime to, PurchaseRowHandler handler) {
+        StringBuilder sql = new StringBuilder(SELECT_SQL);
+        List<Object> args = new ArrayList<>();
+        args.add(householdId);
+        if (from != null) {
+            sql.append(" AND r.date >= ?");
+            args.add(Timestamp.valueOf(from));
+        }
+        if (to != null) {
+            sql.append(" AND r.date < ?");
+            args.add(Timestamp.valueOf(to));
+        }
+        sql.append(" ORDER BY r.date, r.id");
+
+        jdbcTemplate.query(sql.toString(), rs -> {
+            try {
+                handler.accept(toRow(rs));
+            } catch (IOException e) {
+                // Ex: o cliente desconectou no meio do download: para a leitura do cursor
+                throw new UncheckedIOException(e);
+            }
+        }, args.toArray());
+    }
+
+    private static PurchaseRow toRow(ResultSet rs) throws SQLException {
+        Timestamp date = rs.getTimestamp(2);
+        long itemId = rs.getLong(5);
+        boolean hasItem = !rs.wasNull();
+        return new PurchaseRow(rs.getLong(1), date != null ? date.toLocalDateTime() : null, rs.getString(3),
+                rs.getObject(4, Double.class),
+                hasItem ? itemId : null, rs.getString(6), rs.getString(7), rs.getString(8),
+                rs.getObject(9, Double.class), rs.getString(10), rs.getObject(11, Double.class), rs.getObject(12, Double.class));
+    }
+}
@@ -1,11 +1,42 @@
 package com.techchallenge.marketlens.repository;
 
 import com.techchallenge.marketlens.domain.Receipt;
+import com.techchallenge.marketlens.dto.ReceiptSummaryDTO;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface ReceiptRepository extends JpaRepository<Receipt, Long> {
     // Aqui herdamos métodos prontos: save(), findAll(), findById(), delete()...
     // Não precisa escrever SQL nenhum!
-}
\ No newline at end of file
+
+    // Página da listagem por "keyset": continua logo DEPOIS da última nota vista (data, id),
+    // em vez de OFFSET (que fica mais lento a cada página). SIZE() conta os itens sem carregá-los.
+    @Query("SELECT new com.techchallenge.marketlens.dto.ReceiptSummaryDTO(r.id, r.supermarketName, r.date, r.totalAmount, SIZE(r.items)) " +
+           "FROM Receipt r " +
+           "WHERE r.householdId = :householdId AND r.date >= :from AND r.date < :to " +
+           "AND (r.date < :cursorDate OR (r.date = :cursorDate AND r.id < :cursorId)) " +
+           "ORDER BY r.date DESC, r.id DESC")
+    List<ReceiptSummaryDTO> findSummariesBefore(@Param("householdId") Long householdId,
+                                                @Param("from") LocalDateTime from,
+                                                @Param("to") LocalDateTime to,
+                                                @Param("cursorDate") LocalDateTime cursorDate,
+                                                @Param("cursorId") Long cursorId,
+                                                Limit limit);
+
+    // Detalhe da nota com os itens numa única query (JOIN FETCH em vez de carregar os itens depois).
+    // Sempre filtrado pela família: nota de outra família é tratada como inexistente
+    @Query("SELECT r FROM Receipt r LEFT JOIN FETCH r.items WHERE r.id = :id AND r.householdId = :householdId")
+    Optional<Receipt> findWithItemsByIdAndHouseholdId(@Param("id") Long id, @Param("householdId") Long householdId);
+
+    Optional<Receipt> findByIdAndHouseholdId(Long id, Long householdId);
+
+    List<Receipt> findAllByHouseholdId(Long householdId);
+}
@@ -0,0 +1,147 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.domain.SpendingDimension;
+import com.techchallenge.marketlens.dto.SpendingSummaryDTO;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Acesso à tabela spending_rollup (migração V4) via JDBC: os agregados são atualizados com MERGE
+ * (soma a diferença na linha existente ou cria a linha), o que o JPA não faz sem ler a linha antes.
+ * Roda na mesma transação/conexão do JPA quando chamado dentro de uma transação.
+ */
+@Repository
+public class SpendingRollupRepository {
+
+    // Mesmas regras do SpendingRollupService (chave em maiúsculas, valor arredondado em centavos por item)
+    private static final String SOURCE_SQL =
+        "SELECT household_id, dimension, month_start, dim_key, SUM(amount) AS total_spent, COUNT(*) AS item_count " +
+        "FROM (SELECT r.household_id, '%1$s' AS dimension, CAST(DATE_TRUNC('MONTH', r.date) AS DATE) AS month_start, " +
+        "             COALESCE(NULLIF(UPPER(TRIM(%2$s)), ''), 'NAO_INFORMADO') AS dim_key, " +
+        "             CAST(ROUND(COALESCE(p.total_price, p.unit_price * p.quantity, 0), 2) AS NUMERIC(14, 2)) AS amount " +
+        "      FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+        "      WHERE r.date IS NOT NULL) items " +
+        "GROUP BY household_id, dimension, month_start, dim_key";
+
+    private static final String MERGE_SQL =
+        "MERGE INTO spending_rollup t " +
+        "USING (VALUES (CAST(? AS BIGINT), CAST(? AS VARCHAR(20)), CAST(? AS DATE), CAST(? AS VARCHAR(255)), " +
+        "               CAST(? AS NUMERIC(14, 2)), CAST(? AS BIGINT))) " +
+        "      AS s (household_id, dimension, month_start, dim_key, total_spent, item_count) " +
+        "ON t.household_id = s.household_id AND t.dimension = s.dimension " +
+        "   AND t.month_start = s.month_start AND t.dim_key = s.dim_key " +
+        "WHEN MATCHED THEN UPDATE SET total_spent = t.total_spent + s.total_spent, item_count = t.item_count + s.item_count " +
+        "WHEN NOT MATCHED THEN INSERT (household_id, dimension, month_start, dim_key, total_spent, item_count) " +
+        "     VALUES (s.household_id, s.dimension, s.month_start, s.dim_key, s.total_spent, s.item_count)";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public SpendingRollupRepository(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // Linha da tabela: (família, dimensão, mês, valor da dimensão) -> (total, itens)
+    public record RollupKey(Long householdId, SpendingDimension dimension, LocalDate monthStart, String key) {}
+
+    public record RollupValue(BigDecimal totalSpent, long itemCount) {
+
+        public static final RollupValue ZERO = new RollupValue(BigDecimal.ZERO, 0);
+
+        public RollupValue plus(RollupValue other) {
+            return new RollupValue(totalSpent.add(other.totalSpent), itemCount + other.itemCount);
+        }
+
+        public boolean isZero() {
+            return itemCount == 0 && totalSpent.signum() == 0;
+        }
+    }
+
+    // Soma as diferenças nas linhas e apaga as que ficaram sem itens (ex: nota excluída)
+    public void applyDeltas(Map<RollupKey, RollupValue> deltas) {
+        List<Object[]> merges = new ArrayList<>(deltas.size());
+        List<Object[]> possiblyEmpty = new ArrayList<>();
+        deltas.forEach((key, delta) -> {
+            merges.add(new Object[] {key.householdId(), key.dimension().name(), Date.valueOf(key.monthStart()), key.key(),
+                    delta.totalSpent(), delta.itemCount()});
+            if (delta.itemCount() < 0) {
+                possiblyEmpty.add(new Object[] {key.householdId(), key.dimension().name(), Date.valueOf(key.monthStart()), key.key()});
+            }
+        });
+        jdbcTemplate.batchUpdate(MERGE_SQL, merges);
+        if (!possiblyEmpty.isEmpty()) {
+            jdbcTemplate.batchUpdate("DELETE FROM spending_rollup WHERE household_id = ? AND dimension = ? " +
+                    "AND month_start = ? AND dim_key = ? AND item_count <= 0", possiblyEmpty);
+        }
+    }
+
+    // Gastos da família numa dimensão, do mês "from" ao "to" (inclusive); maiores gastos primeiro dentro do mês
+    public List<SpendingSummaryDTO> findSpending(Long householdId, SpendingDimension dimension, YearMonth from, YearMonth to) {
+        return jdbcTemplate.query(
+            "SELECT month_start, dim_key, total_spent, item_count FROM spending_rollup " +
+            "WHERE household_id = ? AND dimension = ? AND month_start BETWEEN ? AND ? " +
+            "ORDER BY month_start, total_spent DESC, dim_key",
+            (rs, row) -> new SpendingSummaryDTO(YearMonth.from(rs.getDate("month_start").toLocalDate()), rs.getString("dim_key"),
+                    rs.getBigDecimal("total_spent"), rs.getLong("item_count")),
+            householdId, dimension.name(), Date.valueOf(from.atDay(1)), Date.valueOf(to.atDay(1)));
+    }
+
+    // Total por mês: cada item está em exatamente uma categoria, então a soma das categorias é o gasto do mês
+    public List<SpendingSummaryDTO> findMonthlyTotals(Long householdId, YearMonth from, YearMonth to) {
+        return jdbcTemplate.query(
+            "SELECT month_start, SUM(total_spent) AS total_spent, SUM(item_count) AS item_count FROM spending_rollup " +
+            "WHERE household_id = ? AND dimension = 'CATEGORY' AND month_start BETWEEN ? AND ? " +
+            "GROUP BY month_start ORDER BY month_start",
+            (rs, row) -> new SpendingSummaryDTO(YearMonth.from(rs.getDate("month_start").toLocalDate()), "TOTAL",
+                    rs.getBigDecimal("total_spent"), rs.getLong("item_count")),
+            householdId, Date.valueOf(from.atDay(1)), Date.valueOf(to.atDay(1)));
+    }
+
+    public Map<RollupKey, RollupValue> loadAll() {
+        Map<RollupKey, RollupValue> rows = new HashMap<>();
+        jdbcTemplate.query("SELECT household_id, dimension, month_start, dim_key, total_spent, item_count FROM spending_rollup",
+                rs -> { rows.put(readKey(rs), readValue(rs)); });
+        return rows;
+    }
+
+    // Recalcula tudo a partir das notas e itens (uma agregação por dimensão, feita no banco)
+    public Map<RollupKey, RollupValue> computeFromReceipts() {
+        Map<RollupKey, RollupValue> rows = new HashMap<>();
+        Map<SpendingDimension, String> columns = Map.of(
+            SpendingDimension.CATEGORY, "p.category",
+            SpendingDimension.SUPERMARKET, "r.supermarket_name",
+            SpendingDimension.SUB_CATEGORY, "p.sub_category");
+        columns.forEach((dimension, column) ->
+            jdbcTemplate.query(String.format(SOURCE_SQL, dimension.name(), column),
+                    rs -> { rows.put(readKey(rs), readValue(rs)); }));
+        return rows;
+    }
+
+    public void replaceAll(Map<RollupKey, RollupValue> rows) {
+        jdbcTemplate.update("DELETE FROM spending_rollup");
+        List<Object[]> inserts = new ArrayList<>(rows.size());
+        rows.forEach((key, value) -> inserts.add(new Object[] {key.householdId(), key.dimension().name(),
+                Date.valueOf(key.monthStart()), key.key(), value.totalSpent(), value.itemCount()}));
+        jdbcTemplate.batchUpdate("INSERT INTO spending_rollup (household_id, dimension, month_start, dim_key, total_spent, item_count) " +
+                "VALUES (?, ?, ?, ?, ?, ?)", inserts);
+    }
+
+    private static RollupKey readKey(ResultSet rs) throws SQLException {
+        return new RollupKey(rs.getLong("household_id"), SpendingDimension.valueOf(rs.getString("dimension")),
+                rs.getDate("month_start").toLocalDate(), rs.getString("dim_key"));
+    }
+
+    private static RollupValue readValue(ResultSet rs) throws SQLException {
+        return new RollupValue(rs.getBigDecimal("total_spent"), rs.getLong("item_count"));
+    }
+}
@@ -0,0 +1,19 @@
+package com.techchallenge.marketlens.repository.projection;
+
+import java.time.LocalDate;
+
+// Preços agregados por dia e mercado (mín/máx/soma/contagem): base para montar semanas e meses sem perder precisão
+public interface DailyPriceAggregate {
+
+    LocalDate getDay();
+
+    String getSupermarket();
+
+    Double getMinPrice();
+
+    Double getMaxPrice();
+
+    Double getPriceSum();
+
+    Long getPriceCount();
+}
@@ -0,0 +1,17 @@
+package com.techchallenge.marketlens.repository.projection;
+
+import java.time.LocalDateTime;
+
+// Um preço pago, já com a data e o mercado da nota (sem carregar as entidades ProductItem/Receipt)
+public interface PricePoint {
+
+    Long getId();
+
+    String getProductName();
+
+    Double getPrice();
+
+    LocalDateTime getDate();
+
+    String getSupermarket();
+}
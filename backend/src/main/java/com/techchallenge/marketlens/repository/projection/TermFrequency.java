@@ -0,0 +1,11 @@
+package com.techchallenge.marketlens.repository.projection;
+
+// Projeção "texto distinto + quantas vezes aparece" numa família (ex: nome de produto e quantas vezes ela comprou)
+public interface TermFrequency {
+
+    Long getHouseholdId();
+
+    String getName();
+
+    Long getFrequency();
+}
@@ -1,111 +1,207 @@
 package com.techchallenge.marketlens.service;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
-
+import org.springframework.util.StreamUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.util.Base64;
-import java.util.List;
-import java.util.Map;
 
 @Service
 public class AIService {
 
+    private static final Logger log = LoggerFactory.getLogger(AIService.class);
+
     @Value("${gemini.api.key}")
     private String apiKey;
     
     @Value("${gemini.api.url}")
     private String apiUrl;
 
-    private final RestClient restClient;
+    // Prompt enviado junto com a imagem (qualquer mudança aqui gera uma nova versão do extrator)
+    private static final String PROMPT = """
+        Analise esta imagem de cupom fiscal.
+        Extraia os dados em JSON estrito.
+        
+        Regras de Categorização:
+        1. 'category': Escolha uma das Macro-Categorias: [ACOGUE, PADARIA, LATICINIOS, HORTIFRUTI, LIMPEZA, BEBIDAS, MERCEARIA, HIGIENE, OUTROS].
+        2. 'subCategory': Seja ESPECÍFICO sobre o produto. 
+           - NÃO use termos genéricos como 'Roupas', 'Grãos' ou 'Bovinos'.
+           - USE o nome do produto: 'Sabão em Pó', 'Água Sanitária', 'Arroz', 'Feijão', 'Carne Bovina', 'Frango'.
+        
+        "REGRA CRÍTICA DE AGRUPAMENTO E PADRONIZAÇÃO: " +
+        "Você DEVE generalizar a subCategoriy para a sua forma mais básica e essencial. " +
+        "Remova absolutamente todas as marcas, pesos, tamanhos e variações de tipo. " +
+        "Siga estes exemplos de conversão obrigatoriamente: " +
+        "- 'Leite Integral Parmalat 1L' ou 'Leite Desnatado' -> Retorne apenas 'Leite' " +
+        "- 'Arroz Tio João 5kg' ou 'Arroz Parboilizado' -> Retorne apenas 'Arroz' " +
+        "- 'Macarrão Espaguete Renata' ou 'Macarrão Pena' -> Retorne apenas 'Macarrão' " +
+        "- 'Sabão em Pó Omo 2kg' -> Retorne apenas 'Sabão em Pó' " +
+        "- 'Refrigerante Coca-Cola 2L' -> Retorne apenas 'Refrigerante' " +
+        "- 'Pão de Forma Wickbold' -> Retorne apenas 'Pão' " +
+        "O objetivo é que produtos semelhantes tenham EXATAMENTE a mesma subCategory (subCategory) para facilitar o agrupamento no banco de dados.";
+
+
+        Retorne APENAS este JSON:
+        {
+            "supermarketName": "Nome",
+            "date": "2024-02-20T10:00:00",
+            "totalAmount": 0.00,
+            "items": [
+                {
+                    "productName": "Nome Completo",
+                    "category": "MACRO_CATEGORIA",
+                    "subCategory": "TIPO_ESPECIFICO",
+                    "quantity": 1.0,
+                    "unit": "UN",
+                    "unitPrice": 0.00,
+                    "totalPrice": 0.00
+                }
+            ]
+        }
+        """;
+
+    // Partes fixas do corpo da requisição, serializadas UMA vez:
+    // {"contents":[{"parts":[{"text":"<prompt>"},{"inline_data":{"mime_type":"<tipo>","data":"<base64>"}}]}]}
+    private static final byte[] BODY_PREFIX = utf8(
+        "{\"contents\":[{\"parts\":[{\"text\":" + toJsonString(PROMPT) + "},{\"inline_data\":{\"mime_type\":\"");
+    private static final byte[] BODY_DATA_FIELD = utf8("\",\"data\":\"");
+    private static final byte[] BODY_SUFFIX = utf8("\"}}]}]}");
+
+    private final GeminiClient geminiClient;
+    private final DataSize maxUploadSize;
+
+    // Métricas (expostas em /actuator/prometheus)
+    private final DistributionSummary requestSize;
+    private final DistributionSummary responseSize;
+    private final Counter envelopeParseFailures;
+
+    public AIService(GeminiClient geminiClient,
+                     @Value("${receipts.upload.max-size:10MB}") DataSize maxUploadSize,
+                     MeterRegistry meterRegistry) {
+        // Pool, timeouts, retentativas e circuit breaker ficam no GeminiClient
+        this.geminiClient = geminiClient;
+        this.maxUploadSize = maxUploadSize;
+
+        this.requestSize = DistributionSummary.builder("marketlens.gemini.request.size")
+            .description("Tamanho do corpo enviado ao Gemini (prompt + imagem em Base64)")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.responseSize = DistributionSummary.builder("marketlens.gemini.response.size")
+            .description("Tamanho da resposta do Gemini")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.envelopeParseFailures = Counter.builder("marketlens.extraction.parse.failures")
+            .description("Respostas da IA que não puderam ser convertidas")
+            .tag("stage", "envelope")
+            .register(meterRegistry);
+    }
 
-    public AIService() {
-        this.restClient = RestClient.create();
+    // Versão do extrator = hash do prompt + modelo (a URL contém o nome do modelo).
+    // Entra na chave do cache de extrações: trocar o prompt ou o modelo invalida os resultados antigos.
+    public String getExtractorVersion() {
+        byte[] digest = ExtractionCacheService.sha256()
+            .digest((PROMPT + "|" + apiUrl).getBytes(StandardCharsets.UTF_8));
+        return java.util.HexFormat.of().formatHex(digest, 0, 8);
     }
     
     
-    public String analyzeReceiptImage(byte[] imageBytes) {
-        String base64Image = Base64.getEncoder().encodeToString(imageBytes);
+    // mimeType = formato real da imagem (ver ReceiptImagePreprocessor), não o que o upload declarou
+    public String analyzeReceiptImage(Resource image, String mimeType) {
+        long imageSize = contentLength(image);
+        if (imageSize > maxUploadSize.toBytes()) {
+            throw new IllegalArgumentException("Imagem maior que o limite de " + maxUploadSize.toMegabytes() + " MB.");
+        }
 
-        String prompt = """
-            Analise esta imagem de cupom fiscal.
-            Extraia os dados em JSON estrito.
-            
-            Regras de Categorização:
-            1. 'category': Escolha uma das Macro-Categorias: [ACOGUE, PADARIA, LATICINIOS, HORTIFRUTI, LIMPEZA, BEBIDAS, MERCEARIA, HIGIENE, OUTROS].
-            2. 'subCategory': Seja ESPECÍFICO sobre o produto. 
-               - NÃO use termos genéricos como 'Roupas', 'Grãos' ou 'Bovinos'.
-               - USE o nome do produto: 'Sabão em Pó', 'Água Sanitária', 'Arroz', 'Feijão', 'Carne Bovina', 'Frango'.
-            
-            "REGRA CRÍTICA DE AGRUPAMENTO E PADRONIZAÇÃO: " +
-            "Você DEVE generalizar a subCategoriy para a sua forma mais básica e essencial. " +
-            "Remova absolutamente todas as marcas, pesos, tamanhos e variações de tipo. " +
-            "Siga estes exemplos de conversão obrigatoriamente: " +
-            "- 'Leite Integral Parmalat 1L' ou 'Leite Desnatado' -> Retorne apenas 'Leite' " +
-            "- 'Arroz Tio João 5kg' ou 'Arroz Parboilizado' -> Retorne apenas 'Arroz' " +
-            "- 'Macarrão Espaguete Renata' ou 'Macarrão Pena' -> Retorne apenas 'Macarrão' " +
-            "- 'Sabão em Pó Omo 2kg' -> Retorne apenas 'Sabão em Pó' " +
-            "- 'Refrigerante Coca-Cola 2L' -> Retorne apenas 'Refrigerante' " +
-            "- 'Pão de Forma Wickbold' -> Retorne apenas 'Pão' " +
-            "O objetivo é que produtos semelhantes tenham EXATAMENTE a mesma subCategory (subCategory) para facilitar o agrupamento no banco de dados.";
-
-
-            Retorne APENAS este JSON:
-            {
-                "supermarketName": "Nome",
-                "date": "2024-02-20T10:00:00",
-                "totalAmount": 0.00,
-                "items": [
-                    {
-                        "productName": "Nome Completo",
-                        "category": "MACRO_CATEGORIA",
-                        "subCategory": "TIPO_ESPECIFICO",
-                        "quantity": 1.0,
-                        "unit": "UN",
-                        "unitPrice": 0.00,
-                        "totalPrice": 0.00
-                    }
-                ]
-            }
-            """;
-            
-        var requestBody = Map.of(
-            "contents", List.of(
-                Map.of("parts", List.of(
-                    Map.of("text", prompt),
-                    Map.of("inline_data", Map.of(
-                        "mime_type", "image/jpeg",
-                        "data", base64Image
-                    ))
-                ))
-            )
-        );
+        // O corpo JSON é escrito direto no socket: prefixo pré-serializado + imagem em Base64 lida aos poucos + sufixo.
+        // Assim não existe no heap nem o byte[] da foto, nem a String Base64, nem o Map que o Jackson serializava.
+        byte[] mimeTypeBytes = mimeType.getBytes(StandardCharsets.UTF_8);
+        long bodyLength = BODY_PREFIX.length + mimeTypeBytes.length + BODY_DATA_FIELD.length
+                + base64Length(imageSize) + BODY_SUFFIX.length;
 
+        requestSize.record(bodyLength);
+
+        String response;
         try {
-            System.out.println("--- ENVIANDO REQUISICAO PARA O GEMINI ---");
-            String response = restClient.post()
-                .uri(apiUrl + "?key=" + apiKey)
-                .header("Content-Type", "application/json")
-                .body(requestBody)
-                .retrieve()
-                .body(String.class);
-
-            // O ESPIÃO: Imprime a resposta bruta no console
-            System.out.println("--- RESPOSTA BRUTA DO GEMINI ---");
-            System.out.println(response);
-            System.out.println("--------------------------------");
+            log.debug("Enviando requisição para o Gemini ({} bytes)", bodyLength);
+            // O corpo pode ser escrito mais de uma vez (retentativa/hedge): cada escrita reabre a imagem
+            response = geminiClient.postJson(URI.create(apiUrl + "?key=" + apiKey), bodyLength,
+                    outputStream -> writeRequestBody(outputStream, mimeTypeBytes, image));
+        } catch (GeminiUnavailableException e) {
+            System.err.println("ERRO NA CHAMADA HTTP: " + e.getMessage());
+            throw e;
+        } catch (RestClientResponseException e) {
+            // Erros 4xx (chave inválida, requisição recusada...) não são repetidos
+            System.err.println("ERRO NA CHAMADA HTTP: " + e.getMessage());
+            throw new RuntimeException("Erro ao chamar a IA: " + e.getMessage());
+        }
 
+        responseSize.record(response != null ? response.getBytes(StandardCharsets.UTF_8).length : 0);
+
+        // Resposta bruta só em debug (logging.level.com.techchallenge.marketlens.service.AIService=DEBUG):
+        // ela traz a nota inteira do usuário. No dia a dia, tamanhos e latência ficam nas métricas
+        log.debug("Resposta bruta do Gemini: {}", response);
+
+        try {
             return extractJsonFromResponse(response);
-        } catch (Exception e) {
-            // Se der erro 400/404/500, o RestClient joga Exception aqui
-            System.err.println("ERRO NA CHAMADA HTTP: " + e.getMessage());
+        } catch (RuntimeException e) {
             throw new RuntimeException("Erro ao chamar a IA: " + e.getMessage());
         }
     }
 
+    private void writeRequestBody(OutputStream outputStream, byte[] mimeType, Resource image) throws IOException {
+        outputStream.write(BODY_PREFIX);
+        outputStream.write(mimeType);
+        outputStream.write(BODY_DATA_FIELD);
+
+        // nonClosing: fechar o encoder escreve o padding final do Base64 sem fechar a conexão
+        try (InputStream imageStream = image.getInputStream();
+             OutputStream base64 = Base64.getEncoder().wrap(StreamUtils.nonClosing(outputStream))) {
+            imageStream.transferTo(base64);
+        }
+
+        outputStream.write(BODY_SUFFIX);
+    }
+
+    private static long contentLength(Resource image) {
+        try {
+            return image.contentLength();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível ler a imagem enviada", e);
+        }
+    }
+
+    private static long base64Length(long size) {
+        return 4 * ((size + 2) / 3);
+    }
+
+    private static byte[] utf8(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String toJsonString(String text) {
+        try {
+            return new ObjectMapper().writeValueAsString(text);
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
 
-    private String extractJsonFromResponse(String geminiResponse) {
+    String extractJsonFromResponse(String geminiResponse) {
         try {
             ObjectMapper mapper = new ObjectMapper();
             var rootNode = mapper.readTree(geminiResponse);
@@ -139,6 +235,7 @@ public class AIService {
                        .trim();
 
         } catch (Exception e) {
+            envelopeParseFailures.increment();
             throw new RuntimeException("Erro ao extrair JSON: " + e.getMessage(), e);
         }
     }
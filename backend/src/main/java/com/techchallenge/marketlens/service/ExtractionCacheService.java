@@ -0,0 +1,183 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.ExtractionCacheEntry;
+import com.techchallenge.marketlens.repository.ExtractionCacheRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.InputStreamSource;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Cache persistente (no H2) dos JSONs extraídos pelo Gemini, endereçado pelo conteúdo da imagem.
+ *
+ * - Chave: SHA-256 dos bytes da imagem + versão do extrator (prompt/modelo). Mudou o prompt, muda a chave.
+ * - Só guarda resposta que passou pela validação de quem chama (ex: JSON que vira uma nota fiscal).
+ *   Uma resposta truncada ou fora do formato ficaria presa na chave até mudar a versão do extrator.
+ * - Single-flight: uploads simultâneos da mesma imagem esperam a MESMA chamada à IA.
+ * - Despejo por tamanho: ao passar de "extraction-cache.max-bytes", remove as entradas usadas há mais tempo.
+ */
+@Service
+public class ExtractionCacheService {
+
+    private final ExtractionCacheRepository repository;
+    private final long maxBytes;
+
+    // Chamadas à IA em andamento, por chave (é aqui que os uploads repetidos se juntam)
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong totalBytes;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    public ExtractionCacheService(ExtractionCacheRepository repository,
+                                  @Value("${extraction-cache.max-bytes:52428800}") long maxBytes) {
+        this.repository = repository;
+        this.maxBytes = maxBytes;
+        this.totalBytes = new AtomicLong(repository.sumSizeBytes());
+    }
+
+    // validator: lança exceção se a resposta não serve (o erro vai para quem chamou e nada é guardado)
+    public String getOrCompute(String imageHash, String extractorVersion, Supplier<String> extractor, Consumer<String> validator) {
+        String cacheKey = imageHash + ":" + extractorVersion;
+
+        // 1. Já extraído antes? Responde direto do banco
+        Optional<String> cached = lookup(cacheKey);
+        if (cached.isPresent()) {
+            return cached.get();
+        }
+
+        // 2. Alguém já está extraindo essa mesma imagem? Espera o resultado dele
+        CompletableFuture<String> myCall = new CompletableFuture<>();
+        CompletableFuture<String> runningCall = inFlight.putIfAbsent(cacheKey, myCall);
+        if (runningCall != null) {
+            coalesced.incrementAndGet();
+            return await(runningCall);
+        }
+
+        // 3. Somos os responsáveis pela chamada à IA
+        try {
+            // Confere de novo: a chamada anterior pode ter terminado entre o passo 1 e o passo 2
+            String json = lookup(cacheKey).orElseGet(() -> {
+                misses.incrementAndGet();
+                String extracted = extractor.get();
+                validator.accept(extracted);
+                store(cacheKey, extracted);
+                return extracted;
+            });
+            myCall.complete(json);
+            return json;
+        } catch (RuntimeException e) {
+            myCall.completeExceptionally(e); // Quem estava esperando recebe o mesmo erro (e nada é cacheado)
+            throw e;
+        } finally {
+            inFlight.remove(cacheKey, myCall);
+        }
+    }
+
+    public CacheStats getStats() {
+        return new CacheStats(hits.get(), misses.get(), coalesced.get(), evictions.get(),
+                repository.count(), totalBytes.get(), maxBytes);
+    }
+
+    private Optional<String> lookup(String cacheKey) {
+        Optional<String> json = repository.findById(cacheKey).map(ExtractionCacheEntry::getExtractedJson);
+        if (json.isPresent()) {
+            hits.incrementAndGet();
+            repository.touch(cacheKey, LocalDateTime.now());
+        }
+        return json;
+    }
+
+    private void store(String cacheKey, String json) {
+        int size = json.getBytes(StandardCharsets.UTF_8).length;
+        if (size > maxBytes) {
+            return; // Maior que o cache inteiro: não vale a pena guardar
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        repository.save(new ExtractionCacheEntry(cacheKey, json, size, now, now));
+
+        if (totalBytes.addAndGet(size) > maxBytes) {
+            evictLeastRecentlyUsed();
+        }
+    }
+
+    // Remove as entradas acessadas há mais tempo até voltar para baixo do limite
+    private synchronized void evictLeastRecentlyUsed() {
+        while (totalBytes.get() > maxBytes) {
+            List<ExtractionCacheEntry> oldest = repository.findTop20ByOrderByLastAccessedAtAsc();
+            if (oldest.isEmpty()) {
+                totalBytes.set(0);
+                return;
+            }
+            for (ExtractionCacheEntry entry : oldest) {
+                if (totalBytes.get() <= maxBytes) {
+                    return;
+                }
+                repository.delete(entry);
+                totalBytes.addAndGet(-entry.getSizeBytes());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    private String await(CompletableFuture<String> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    // Hash calculado em streaming (buffer de 8 KB), sem carregar a imagem inteira no heap
+    public static String sha256Hex(InputStreamSource source) {
+        MessageDigest digest = sha256();
+        try (InputStream in = new DigestInputStream(source.getInputStream(), digest)) {
+            in.transferTo(OutputStream.nullOutputStream());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível ler a imagem para calcular o hash", e);
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponível na JVM", e);
+        }
+    }
+
+    public record CacheStats(
+            long hits,
+            long misses,
+            long coalesced,
+            long evictions,
+            long entries,
+            long sizeBytes,
+            long maxBytes
+    ) {}
+}
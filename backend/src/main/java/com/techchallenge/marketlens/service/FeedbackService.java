@@ -0,0 +1,255 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.dto.ItemFeedbackDTO;
+import com.techchallenge.marketlens.repository.ItemAdjustmentWriteRepository;
+import com.techchallenge.marketlens.repository.ItemAdjustmentWriteRepository.UpsertAdjustment;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Feedback do planejador (➕/➖/lixeira por item), gravado com MERGE atômico (ItemAdjustmentWriteRepository).
+ *
+ * Vários cliques no mesmo item são combinados (Adjustment.then) num único MERGE com o efeito da sequência
+ * inteira: "➕ ➕ ➖" vira "+1", "➕ lixeira ➕" vira "passa a valer 1". Isso vale para o lote (POST /feedback/batch)
+ * e para a escrita adiada (feedback.write-behind.enabled): os cliques ficam em memória e são gravados a cada
+ * flush-interval, um MERGE por item. A lista da família descarrega os cliques dela antes de ser gerada, então
+ * quem clicou sempre vê o resultado; cliques ainda não gravados se perdem se o processo morrer.
+ */
+@Service
+public class FeedbackService {
+
+    private static final Logger log = LoggerFactory.getLogger(FeedbackService.class);
+
+    static final double TRASH = UpsertAdjustment.TRASH;
+
+    // Dois primeiros cliques simultâneos num item novo: um dos INSERTs perde para a unique key e é refeito como UPDATE
+    // (o mesmo para uma espera de lock da linha que estoura o tempo)
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final ItemAdjustmentWriteRepository writeRepository;
+    private final PlanCache planCache;
+    private final TransactionTemplate transaction;
+    private final boolean writeBehind;
+    private final ScheduledExecutorService flusher;
+
+    // Cliques ainda não gravados: família -> nome normalizado (key, como o item_name_norm) -> efeito acumulado
+    // (acesso sincronizado em "this")
+    private final Map<Long, Map<String, Pending>> pending = new HashMap<>();
+    // Um flush por vez: os cliques de uma família são gravados na ordem (Lixeira e ➕ não comutam)
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    public FeedbackService(ItemAdjustmentWriteRepository writeRepository,
+                           PlanCache planCache,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${feedback.write-behind.enabled:false}") boolean writeBehind,
+                           @Value("${feedback.write-behind.flush-interval:500ms}") Duration flushInterval,
+                           MeterRegistry meterRegistry) {
+        this.writeRepository = writeRepository;
+        this.planCache = planCache;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.writeBehind = writeBehind;
+        if (writeBehind) {
+            this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "feedback-flush");
+                thread.setDaemon(true);
+                return thread;
+            });
+            long millis = flushInterval.toMillis();
+            flusher.scheduleWithFixedDelay(this::flushAll, millis, millis, TimeUnit.MILLISECONDS);
+        } else {
+            this.flusher = null;
+        }
+        Gauge.builder("marketlens.feedback.pending", this, FeedbackService::pendingCount)
+            .description("Itens com cliques de feedback ainda não gravados (escrita adiada)")
+            .register(meterRegistry);
+    }
+
+    // Um clique. Devolve false se ficou para o próximo flush (escrita adiada)
+    public boolean record(Long householdId, String itemName, double factor) {
+        return recordBatch(householdId, List.of(new ItemFeedbackDTO(itemName, factor)));
+    }
+
+    // Vários cliques da família, na ordem em que aconteceram. Devolve false se ficaram para o próximo flush
+    public boolean recordBatch(Long householdId, List<ItemFeedbackDTO> clicks) {
+        Map<String, Pending> combined = new LinkedHashMap<>();
+        for (ItemFeedbackDTO click : clicks) {
+            if (click.getItemName() == null || click.getItemName().isBlank() || click.getFactor() == null) {
+                throw new IllegalArgumentException("Cada feedback precisa de itemName e factor.");
+            }
+            combined.computeIfAbsent(key(click.getItemName()), k -> new Pending(click.getItemName()))
+                    .then(Adjustment.ofClick(click.getFactor()));
+        }
+        if (combined.isEmpty()) {
+            return true;
+        }
+
+        if (writeBehind) {
+            synchronized (this) {
+                Map<String, Pending> household = pending.computeIfAbsent(householdId, id -> new LinkedHashMap<>());
+                combined.forEach((key, click) -> household.merge(key, click, Pending::then));
+            }
+            return false;
+        }
+        write(householdId, combined.values());
+        return true;
+    }
+
+    // Grava os cliques pendentes da família (antes de gerar a lista dela)
+    public void flush(Long householdId) {
+        if (!writeBehind) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            Map<String, Pending> household;
+            synchronized (this) {
+                household = pending.remove(householdId);
+            }
+            if (household != null) {
+                writeOrRequeue(householdId, household);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (flusher != null) {
+            flusher.shutdown();
+            flushAll();
+        }
+    }
+
+    // Grava os cliques pendentes de todas as famílias (timer, lote de planos e desligamento)
+    public void flushAll() {
+        flushLock.lock();
+        try {
+            Map<Long, Map<String, Pending>> all;
+            synchronized (this) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                all = new HashMap<>(pending);
+                pending.clear();
+            }
+            all.forEach(this::writeOrRequeue);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private synchronized int pendingCount() {
+        return pending.values().stream().mapToInt(Map::size).sum();
+    }
+
+    // Se a gravação falhar, os cliques voltam para a fila ANTES dos que chegaram nesse meio tempo
+    private void writeOrRequeue(Long householdId, Map<String, Pending> household) {
+        try {
+            write(householdId, household.values());
+        } catch (RuntimeException e) {
+            log.warn("Falha ao gravar feedback da família {} (tentará de novo)", householdId, e);
+            synchronized (this) {
+                Map<String, Pending> current = pending.computeIfAbsent(householdId, id -> new LinkedHashMap<>());
+                household.forEach((key, older) -> current.merge(key, older, (newer, old) -> old.then(newer)));
+            }
+        }
+    }
+
+    private void write(Long householdId, Iterable<Pending> items) {
+        List<UpsertAdjustment> upserts = new ArrayList<>();
+        for (Pending item : items) {
+            Adjustment adjustment = item.adjustment;
+            upserts.add(new UpsertAdjustment(householdId, item.itemName, adjustment.setValue(), adjustment.delta(),
+                    adjustment.trashValue(), adjustment.apply(0.0)));
+        }
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transaction.executeWithoutResult(status -> writeRepository.upsert(upserts));
+                break;
+            } catch (DuplicateKeyException | ConcurrencyFailureException e) {
+                if (attempt == MAX_ATTEMPTS) {
+                    throw e;
+                }
+            }
+        }
+        planCache.invalidate(householdId);
+    }
+
+    // Mesma regra de comparação da leitura e do MERGE (item_name_norm)
+    private static String key(String itemName) {
+        return TextNormalizer.fold(itemName);
+    }
+
+    // Cliques acumulados de um item (nome como veio no primeiro clique)
+    private static final class Pending {
+        private final String itemName;
+        private Adjustment adjustment = Adjustment.NONE;
+
+        private Pending(String itemName) {
+            this.itemName = itemName;
+        }
+
+        private Pending then(Adjustment next) {
+            adjustment = adjustment.then(next);
+            return this;
+        }
+
+        private Pending then(Pending next) {
+            return then(next.adjustment);
+        }
+    }
+
+    /**
+     * Efeito de uma sequência de cliques sobre o fator atual f de um item:
+     * - f na lixeira (TRASH): vira trashValue
+     * - senão: vira setValue, se a sequência teve uma Lixeira, ou f + delta
+     */
+    record Adjustment(Double setValue, double delta, double trashValue) {
+
+        static final Adjustment NONE = new Adjustment(null, 0.0, TRASH);
+
+        // Regras do botão (as mesmas do antigo read-modify-write do controller):
+        // Lixeira marca TRASH; ➕ soma 1 (e tira da lixeira); ➖ tira 1 (item na lixeira continua lá)
+        static Adjustment ofClick(double factor) {
+            if (factor == 0.0) return new Adjustment(TRASH, 0.0, TRASH);
+            if (factor > 1.0) return new Adjustment(null, 1.0, 1.0);
+            if (factor < 1.0) return new Adjustment(null, -1.0, TRASH);
+            return NONE;
+        }
+
+        double apply(double current) {
+            if (current == TRASH) return trashValue;
+            return setValue != null ? setValue : current + delta;
+        }
+
+        // Esta sequência seguida de "next"
+        Adjustment then(Adjustment next) {
+            double trash = next.apply(trashValue);
+            if (setValue != null) return new Adjustment(next.apply(setValue), 0.0, trash);
+            if (next.setValue != null) return new Adjustment(next.setValue, 0.0, trash);
+            return new Adjustment(null, delta + next.delta, trash);
+        }
+    }
+}
@@ -0,0 +1,394 @@
+package com.techchallenge.marketlens.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.StreamingHttpOutputMessage;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.web.client.ResourceAccessException;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cliente HTTP do Gemini, separado do AIService (que só monta o corpo e interpreta a resposta).
+ *
+ * - Conexões keep-alive num pool com tamanho definido, timeouts explícitos de conexão e de resposta.
+ * - Retry com backoff exponencial + jitter em 429/5xx e falhas de rede (respeita o Retry-After).
+ * - Circuit breaker: depois de N chamadas seguidas falhando, recusa na hora por um tempo em vez de
+ *   deixar cada usuário esperar todos os timeouts. Depois desse tempo, uma chamada de teste decide se fecha.
+ * - Hedging (opcional): se a resposta demorar mais que o percentil configurado das latências recentes,
+ *   dispara uma segunda requisição igual e fica com a que responder primeiro. Custa chamadas extras
+ *   ao Gemini, por isso vem desligado.
+ *
+ * Configurado em GeminiClientConfig (gemini.client.* no application.properties).
+ */
+public class GeminiClient implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(GeminiClient.class);
+
+    public record Settings(
+            Duration connectTimeout,
+            Duration responseTimeout,
+            int maxConnections,
+            int maxAttempts,
+            Duration initialBackoff,
+            Duration maxBackoff,
+            int breakerFailureThreshold,
+            Duration breakerOpenDuration,
+            boolean hedgingEnabled,
+            double hedgingPercentile,
+            int hedgingMinSamples,
+            Duration hedgingMinDelay
+    ) {}
+
+    private final Settings settings;
+    private final CloseableHttpClient httpClient;
+    private final RestClient restClient;
+    private final CircuitBreaker breaker;
+    private final LatencyWindow latencies = new LatencyWindow(200);
+    private final ExecutorService hedgeExecutor;
+
+    private final MeterRegistry meterRegistry;
+    private final Counter retries;
+    private final Counter hedges;
+    private final Counter rejectedByBreaker;
+
+    public GeminiClient(Settings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.breaker = new CircuitBreaker(settings.breakerFailureThreshold(), settings.breakerOpenDuration());
+
+        this.httpClient = HttpClients.custom()
+            .setConnectionManager(PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(settings.maxConnections())
+                .setMaxConnPerRoute(settings.maxConnections()) // Um único host (a API do Gemini)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                    .setConnectTimeout(Timeout.of(settings.connectTimeout()))
+                    .setSocketTimeout(Timeout.of(settings.responseTimeout()))
+                    .setTimeToLive(TimeValue.ofMinutes(5))
+                    .build())
+                .build())
+            .setDefaultRequestConfig(RequestConfig.custom()
+                .setResponseTimeout(Timeout.of(settings.responseTimeout()))
+                .build())
+            .evictIdleConnections(TimeValue.ofSeconds(30))
+            .disableAutomaticRetries() // As retentativas são feitas aqui, com backoff
+            .build();
+        // A factory do Spring 6.1+ envia o corpo em streaming também com o Apache HttpClient
+        this.restClient = RestClient.builder()
+            .requestFactory(new HttpComponentsClientHttpRequestFactory(httpClient))
+            .build();
+
+        AtomicInteger counter = new AtomicInteger();
+        this.hedgeExecutor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "gemini-hedge-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        this.meterRegistry = meterRegistry;
+        this.retries = Counter.builder("marketlens.gemini.retries")
+            .description("Retentativas de chamadas ao Gemini (429/5xx/rede)")
+            .register(meterRegistry);
+        this.hedges = Counter.builder("marketlens.gemini.hedges")
+            .description("Requisições duplicadas disparadas por demora na resposta")
+            .register(meterRegistry);
+        this.rejectedByBreaker = Counter.builder("marketlens.gemini.circuit.rejected")
+            .description("Chamadas recusadas na hora com o circuit breaker aberto")
+            .register(meterRegistry);
+    }
+
+    /**
+     * POST JSON com o corpo escrito em streaming. O body pode ser escrito mais de uma vez (retry/hedge),
+     * então precisa conseguir reabrir a sua origem (ex.: a imagem em arquivo).
+     */
+    public String postJson(URI uri, long contentLength, StreamingHttpOutputMessage.Body body) {
+        if (!breaker.tryAcquire()) {
+            rejectedByBreaker.increment();
+            throw new GeminiUnavailableException("Serviço de IA temporariamente indisponível (muitas falhas seguidas). "
+                    + "Tente novamente em " + breaker.secondsUntilRetry() + "s.");
+        }
+
+        // O breaker é avisado em toda saída (inclusive exceções inesperadas e interrupção): senão a chamada de
+        // teste do meio-aberto nunca é liberada e o circuito fica recusando tudo até reiniciar o processo
+        boolean serviceUp = false;
+        try {
+            RuntimeException lastFailure = null;
+            for (int attempt = 1; attempt <= settings.maxAttempts(); attempt++) {
+                Duration wait;
+                try {
+                    String response = sendWithHedging(uri, contentLength, body, attempt);
+                    serviceUp = true;
+                    return response;
+                } catch (RestClientResponseException e) {
+                    if (!isRetryable(e.getStatusCode().value())) {
+                        // 4xx (chave inválida, imagem recusada...): o serviço está no ar, repetir não adianta
+                        serviceUp = true;
+                        throw e;
+                    }
+                    lastFailure = e;
+                    wait = retryAfter(e, attempt);
+                } catch (ResourceAccessException e) {
+                    // Timeout, conexão recusada/resetada
+                    lastFailure = e;
+                    wait = backoff(attempt);
+                }
+
+                if (attempt < settings.maxAttempts()) {
+                    retries.increment();
+                    log.warn("Gemini falhou (tentativa {}/{}): {}. Nova tentativa em {} ms.",
+                            attempt, settings.maxAttempts(), lastFailure.getMessage(), wait.toMillis());
+                    sleep(wait);
+                }
+            }
+
+            throw new GeminiUnavailableException("Serviço de IA indisponível após " + settings.maxAttempts()
+                    + " tentativas: " + lastFailure.getMessage(), lastFailure);
+        } finally {
+            if (serviceUp) {
+                breaker.onSuccess();
+            } else {
+                breaker.onFailure();
+            }
+        }
+    }
+
+    private String sendWithHedging(URI uri, long contentLength, StreamingHttpOutputMessage.Body body, int attempt) {
+        Duration hedgeAfter = hedgeDelay();
+        if (hedgeAfter == null) {
+            return send(uri, contentLength, body, attempt);
+        }
+
+        CompletableFuture<String> primary = CompletableFuture.supplyAsync(() -> send(uri, contentLength, body, attempt), hedgeExecutor);
+        try {
+            return primary.get(hedgeAfter.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException slow) {
+            hedges.increment();
+            CompletableFuture<String> backup = CompletableFuture.supplyAsync(() -> send(uri, contentLength, body, attempt), hedgeExecutor);
+            // A requisição que perder termina em segundo plano e a resposta é descartada
+            return firstSuccessful(primary, backup);
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeminiUnavailableException("Chamada ao serviço de IA interrompida", e);
+        }
+    }
+
+    private String send(URI uri, long contentLength, StreamingHttpOutputMessage.Body body, int attempt) {
+        long start = System.nanoTime();
+        try {
+            ResponseEntity<String> entity = restClient.post()
+                .uri(uri)
+                .contentType(MediaType.APPLICATION_JSON)
+                .contentLength(contentLength)
+                .body(body)
+                .retrieve()
+                .toEntity(String.class);
+            long elapsed = System.nanoTime() - start;
+            latencies.add(elapsed);
+            attemptTimer(attempt, "SUCCESS", String.valueOf(entity.getStatusCode().value())).record(elapsed, TimeUnit.NANOSECONDS);
+            return entity.getBody();
+        } catch (RestClientResponseException e) {
+            String outcome = e.getStatusCode().is4xxClientError() ? "CLIENT_ERROR" : "SERVER_ERROR";
+            attemptTimer(attempt, outcome, String.valueOf(e.getStatusCode().value())).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        } catch (ResourceAccessException e) {
+            attemptTimer(attempt, "IO_ERROR", "NONE").record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    // A tag "attempt" (1..maxAttempts) separa a primeira chamada das retentativas; o hedge usa a da tentativa
+    private Timer attemptTimer(int attempt, String outcome, String status) {
+        return Timer.builder("marketlens.gemini.requests")
+            .description("Latência de cada requisição HTTP ao Gemini (inclui retentativas e hedges)")
+            .tag("attempt", String.valueOf(attempt))
+            .tag("outcome", outcome)
+            .tag("status", status)
+            .publishPercentileHistogram()
+            .register(meterRegistry);
+    }
+
+    // null = não fazer hedge (desligado ou ainda sem histórico suficiente)
+    private Duration hedgeDelay() {
+        if (!settings.hedgingEnabled() || latencies.size() < settings.hedgingMinSamples()) {
+            return null;
+        }
+        long percentileNanos = latencies.percentile(settings.hedgingPercentile());
+        Duration delay = Duration.ofNanos(percentileNanos);
+        return delay.compareTo(settings.hedgingMinDelay()) < 0 ? settings.hedgingMinDelay() : delay;
+    }
+
+    private static String firstSuccessful(CompletableFuture<String> first, CompletableFuture<String> second) {
+        CompletableFuture<String> winner = new CompletableFuture<>();
+        AtomicInteger failures = new AtomicInteger();
+        for (CompletableFuture<String> candidate : List.of(first, second)) {
+            candidate.whenComplete((response, error) -> {
+                if (error == null) {
+                    winner.complete(response);
+                } else if (failures.incrementAndGet() == 2) {
+                    winner.completeExceptionally(error);
+                }
+            });
+        }
+        try {
+            return winner.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        return cause instanceof RuntimeException runtime ? runtime : new GeminiUnavailableException(cause.getMessage(), cause);
+    }
+
+    private static boolean isRetryable(int status) {
+        return status == 429 || status >= 500;
+    }
+
+    // 429 com Retry-After: espera o que o servidor pediu (limitado ao backoff máximo)
+    private Duration retryAfter(RestClientResponseException e, int attempt) {
+        HttpHeaders headers = e.getResponseHeaders();
+        String retryAfter = headers != null ? headers.getFirst(HttpHeaders.RETRY_AFTER) : null;
+        if (retryAfter != null) {
+            try {
+                Duration requested = Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+                return requested.compareTo(settings.maxBackoff()) > 0 ? settings.maxBackoff() : requested;
+            } catch (NumberFormatException ignored) {
+                // Formato de data HTTP: usa o backoff normal
+            }
+        }
+        return backoff(attempt);
+    }
+
+    // Backoff exponencial com "full jitter": aleatório entre 0 e initial * 2^(tentativa-1), até o máximo.
+    // O jitter evita que vários jobs que falharam juntos tentem de novo no mesmo instante
+    private Duration backoff(int attempt) {
+        long ceiling = Math.min(settings.maxBackoff().toMillis(),
+                settings.initialBackoff().toMillis() << Math.min(attempt - 1, 20));
+        return Duration.ofMillis(ThreadLocalRandom.current().nextLong(ceiling + 1));
+    }
+
+    private static void sleep(Duration wait) {
+        try {
+            Thread.sleep(wait.toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GeminiUnavailableException("Chamada ao serviço de IA interrompida", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        hedgeExecutor.shutdownNow();
+        httpClient.close();
+    }
+
+    // Fechado -> (N falhas seguidas) -> aberto -> (após openDuration) meio-aberto: 1 chamada de teste
+    private static final class CircuitBreaker {
+
+        private final int failureThreshold;
+        private final long openNanos;
+
+        private int consecutiveFailures;
+        private long openedAt;
+        private boolean open;
+        private boolean trialInFlight;
+
+        CircuitBreaker(int failureThreshold, Duration openDuration) {
+            this.failureThreshold = Math.max(1, failureThreshold);
+            this.openNanos = openDuration.toNanos();
+        }
+
+        synchronized boolean tryAcquire() {
+            if (!open) {
+                return true;
+            }
+            if (System.nanoTime() - openedAt >= openNanos && !trialInFlight) {
+                trialInFlight = true; // Meio-aberto: só esta chamada passa até sabermos o resultado
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void onSuccess() {
+            consecutiveFailures = 0;
+            open = false;
+            trialInFlight = false;
+        }
+
+        synchronized void onFailure() {
+            consecutiveFailures++;
+            if (trialInFlight || consecutiveFailures >= failureThreshold) {
+                open = true;
+                openedAt = System.nanoTime();
+            }
+            trialInFlight = false;
+        }
+
+        synchronized long secondsUntilRetry() {
+            long remaining = openNanos - (System.nanoTime() - openedAt);
+            return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(remaining));
+        }
+    }
+
+    // Últimas latências com sucesso (janela circular), para o percentil do hedging
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        synchronized void add(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized long percentile(double percentile) {
+            if (size == 0) {
+                return 0;
+            }
+            long[] sorted = Arrays.copyOf(samples, size);
+            Arrays.sort(sorted);
+            int index = (int) Math.ceil(percentile * size) - 1;
+            return sorted[Math.max(0, Math.min(index, size - 1))];
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.techchallenge.marketlens.service;
+
+// Lançada quando o Gemini continua falhando depois das retentativas, ou quando o circuit breaker está aberto
+public class GeminiUnavailableException extends RuntimeException {
+
+    public GeminiUnavailableException(String message) {
+        super(message);
+    }
+
+    public GeminiUnavailableException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
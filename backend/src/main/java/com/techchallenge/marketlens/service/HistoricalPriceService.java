@@ -0,0 +1,20 @@
+package com.techchallenge.marketlens.service;
+
+import org.springframework.stereotype.Service;
+
+// Etapa de precificação em lote do planejador:
+// 1 agregação por nome no retrato colunar (sem ir ao banco) em vez de 1 varredura LIKE '%...%' por item da lista.
+// Produtos do catálogo são cotados pelo PriceStatisticsService.
+@Service
+public class HistoricalPriceService {
+
+    private final ProductItemColumnStore columnStore;
+
+    public HistoricalPriceService(ProductItemColumnStore columnStore) {
+        this.columnStore = columnStore;
+    }
+
+    public HistoricalPriceSnapshot loadSnapshot() {
+        return HistoricalPriceSnapshot.of(columnStore.query().groupBy(ProductItemColumnStore.Dimension.PRODUCT_NAME));
+    }
+}
@@ -0,0 +1,82 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.util.TextNormalizer;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Foto (snapshot) imutável dos preços históricos agregados por nome de produto.
+ *
+ * É montada com UMA agregação e depois responde qualquer palavra-chave em memória, com a mesma
+ * semântica do antigo {@code AVG(unitPrice) WHERE UPPER(productName) LIKE '%keyword%'}, mas sem acentos
+ * (TextNormalizer.fold, como a coluna product_name_norm).
+ */
+public final class HistoricalPriceSnapshot {
+
+    private final String[] productNames; // Já normalizados (TextNormalizer.fold)
+    private final double[] priceSums;
+    private final long[] priceCounts;
+
+    // Soma e contagem dos preços de um nome de produto (normalizado). Guardamos soma + contagem (e não a média)
+    // para poder juntar vários nomes numa média exata depois
+    public record ProductTotal(String productName, double priceSum, long priceCount) {}
+
+    // A partir da agregação do retrato colunar (nomes como foram gravados; a comparação é pelo nome normalizado)
+    public static HistoricalPriceSnapshot of(List<ProductItemColumnStore.Group> groups) {
+        List<ProductTotal> totals = new ArrayList<>(groups.size());
+        for (ProductItemColumnStore.Group group : groups) {
+            if (group.key() != null && group.priceCount() > 0) {
+                totals.add(new ProductTotal(TextNormalizer.fold(group.key()), group.priceSum(), group.priceCount()));
+            }
+        }
+        return new HistoricalPriceSnapshot(totals);
+    }
+
+    public HistoricalPriceSnapshot(List<ProductTotal> totals) {
+        int size = totals.size();
+        this.productNames = new String[size];
+        this.priceSums = new double[size];
+        this.priceCounts = new long[size];
+
+        for (int i = 0; i < size; i++) {
+            ProductTotal total = totals.get(i);
+            productNames[i] = total.productName();
+            priceSums[i] = total.priceSum();
+            priceCounts[i] = total.priceCount();
+        }
+    }
+
+    // Média de todos os preços cujo nome contém a palavra-chave (null se nunca foi comprado)
+    public Double averageFor(String keyword) {
+        String needle = TextNormalizer.fold(keyword);
+        double sum = 0.0;
+        long count = 0;
+
+        for (int i = 0; i < productNames.length; i++) {
+            if (productNames[i].contains(needle)) {
+                sum += priceSums[i];
+                count += priceCounts[i];
+            }
+        }
+        return count == 0 ? null : sum / count;
+    }
+
+    // Resolve várias palavras-chave de uma vez (palavras repetidas são calculadas só uma vez)
+    public Map<String, Double> averagesFor(Collection<String> keywords) {
+        Map<String, Double> averages = new HashMap<>();
+        for (String keyword : keywords) {
+            if (!averages.containsKey(keyword)) {
+                averages.put(keyword, averageFor(keyword));
+            }
+        }
+        return averages;
+    }
+
+    public int size() {
+        return productNames.length;
+    }
+}
@@ -0,0 +1,323 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.IngestionJobStatus;
+import com.techchallenge.marketlens.domain.Receipt;
+import com.techchallenge.marketlens.dto.IngestionBatchDTO;
+import com.techchallenge.marketlens.dto.IngestionJobDTO;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ingestão assíncrona de notas fiscais.
+ *
+ * O upload só registra o job e devolve o id na hora; a chamada ao Gemini (10-30s) roda no
+ * executor de ingestão e o frontend acompanha o andamento por polling em /api/receipts/jobs/{id}.
+ * Os jobs ficam só em memória: jobs finalizados são descartados após o tempo de retenção.
+ *
+ * No upload em lote (várias fotos da mesma compra) cada foto vira um job nesse mesmo executor, com no máximo
+ * "ingestion.batch.parallelism" fotos do lote em análise ao mesmo tempo. A resposta também sai na hora.
+ */
+@Service
+public class IngestionJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestionJobService.class);
+
+    private final AIService aiService;
+    private final ExtractionCacheService extractionCache;
+    private final ReceiptService receiptService;
+    private final ReceiptImagePreprocessor imagePreprocessor;
+    private final ThreadPoolExecutor executor;
+    private final Duration retention;
+    private final int batchMaxFiles;
+    private final int batchParallelism;
+
+    private final Map<String, IngestionJobDTO> jobs = new ConcurrentHashMap<>();
+
+    public IngestionJobService(AIService aiService,
+                               ExtractionCacheService extractionCache,
+                               ReceiptService receiptService,
+                               ReceiptImagePreprocessor imagePreprocessor,
+                               @Qualifier("ingestionExecutor") ThreadPoolExecutor executor,
+                               @Value("${ingestion.job-retention-minutes:60}") long retentionMinutes,
+                               @Value("${ingestion.batch.max-files:10}") int batchMaxFiles,
+                               @Value("${ingestion.batch.parallelism:2}") int batchParallelism) {
+        this.aiService = aiService;
+        this.extractionCache = extractionCache;
+        this.receiptService = receiptService;
+        this.imagePreprocessor = imagePreprocessor;
+        this.executor = executor;
+        this.retention = Duration.ofMinutes(retentionMinutes);
+        this.batchMaxFiles = Math.max(1, batchMaxFiles);
+        this.batchParallelism = Math.max(1, batchParallelism);
+    }
+
+    public IngestionJobDTO submit(MultipartFile file, Long householdId) throws IOException {
+        evictExpiredJobs();
+        return snapshot(enqueue(file, householdId));
+    }
+
+    /**
+     * Registra um job por foto e devolve na hora, sem esperar as análises (como o upload simples): o cliente
+     * acompanha cada foto em /api/receipts/jobs/{id}. Cada nota é salva assim que a sua análise termina; uma
+     * foto com erro não afeta as outras.
+     *
+     * No máximo "ingestion.batch.parallelism" fotos do lote ficam no executor ao mesmo tempo; as demais
+     * esperam aqui e entram conforme as anteriores terminam, para um lote grande não ocupar sozinho todas
+     * as vagas de "ingestion.max-in-flight".
+     */
+    public IngestionBatchDTO submitBatch(List<MultipartFile> files, Long householdId) {
+        if (files == null || files.isEmpty()) {
+            throw new IllegalArgumentException("Nenhuma imagem enviada.");
+        }
+        if (files.size() > batchMaxFiles) {
+            throw new IllegalArgumentException("Envie no máximo " + batchMaxFiles + " imagens por vez.");
+        }
+        evictExpiredJobs();
+
+        // O upload só vive durante a requisição: todas as fotos vão para arquivos temporários antes de responder
+        List<IngestionJobDTO> batchJobs = new ArrayList<>(files.size());
+        BatchRun run = new BatchRun(householdId);
+        for (MultipartFile file : files) {
+            try {
+                PendingJob pending = register(file, householdId);
+                batchJobs.add(pending.job());
+                run.waiting.add(pending);
+            } catch (IOException e) {
+                batchJobs.add(notSubmitted("Não foi possível gravar a imagem enviada: " + e.getMessage()));
+            }
+        }
+        for (int i = 0; i < batchParallelism; i++) {
+            run.launchNext();
+        }
+
+        IngestionBatchDTO batch = new IngestionBatchDTO();
+        for (int i = 0; i < files.size(); i++) {
+            IngestionJobDTO job = snapshot(batchJobs.get(i));
+            switch (job.getStatus()) {
+                case DONE -> batch.setSucceeded(batch.getSucceeded() + 1);
+                case FAILED -> batch.setFailed(batch.getFailed() + 1);
+                default -> batch.setPending(batch.getPending() + 1);
+            }
+            batch.getFiles().add(new IngestionBatchDTO.FileResult(files.get(i).getOriginalFilename(), job));
+        }
+        batch.setFileCount(files.size());
+        batch.setQueueFull(run.rejected.get() == files.size());
+        return batch;
+    }
+
+    // Fotos de um lote ainda fora do executor: cada job que termina coloca o próximo, mantendo no máximo
+    // batchParallelism em andamento
+    private final class BatchRun {
+
+        private final Long householdId;
+        private final Queue<PendingJob> waiting = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger rejected = new AtomicInteger();
+
+        private BatchRun(Long householdId) {
+            this.householdId = householdId;
+        }
+
+        void launchNext() {
+            PendingJob next;
+            while ((next = waiting.poll()) != null) {
+                try {
+                    start(next, householdId, this::launchNext);
+                    return;
+                } catch (IngestionQueueFullException e) {
+                    // Fila global cheia: esta foto falha e a vaga passa para a próxima (que provavelmente falha também)
+                    rejected.incrementAndGet();
+                    fail(next.job(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    // Foto que nem entrou na fila (erro ao gravar o upload): aparece no lote como FAILED
+    private static IngestionJobDTO notSubmitted(String error) {
+        IngestionJobDTO job = new IngestionJobDTO();
+        job.setStatus(IngestionJobStatus.FAILED);
+        job.setError(error);
+        job.setSubmittedAt(LocalDateTime.now());
+        job.setFinishedAt(job.getSubmittedAt());
+        return job;
+    }
+
+    // Job registrado (QUEUED) com a imagem já gravada, ainda fora do executor
+    private record PendingJob(IngestionJobDTO job, Path image) {}
+
+    private IngestionJobDTO enqueue(MultipartFile file, Long householdId) throws IOException {
+        PendingJob pending = register(file, householdId);
+        try {
+            start(pending, householdId, () -> {});
+        } catch (IngestionQueueFullException e) {
+            jobs.remove(pending.job().getJobId());
+            throw e;
+        }
+        return pending.job();
+    }
+
+    private PendingJob register(MultipartFile file, Long householdId) throws IOException {
+
+        // O upload só vive durante a requisição: movemos a parte (que o Tomcat já gravou em disco)
+        // para um arquivo temporário do job. A imagem nunca é carregada inteira no heap.
+        Path image = Files.createTempFile("marketlens-receipt-", ".upload");
+        try {
+            file.transferTo(image);
+        } catch (IOException | RuntimeException e) {
+            // Upload interrompido, disco cheio...: o job não existe, então o arquivo não seria apagado por ninguém
+            deleteQuietly(image);
+            throw e;
+        }
+
+        IngestionJobDTO job = new IngestionJobDTO();
+        job.setJobId(UUID.randomUUID().toString());
+        job.setStatus(IngestionJobStatus.QUEUED);
+        job.setSubmittedAt(LocalDateTime.now());
+        job.setHouseholdId(householdId);
+        jobs.put(job.getJobId(), job);
+        return new PendingJob(job, image);
+    }
+
+    // Coloca o job no executor; onFinish roda na thread de ingestão depois do job terminar (com sucesso ou não)
+    private void start(PendingJob pending, Long householdId, Runnable onFinish) {
+        try {
+            executor.execute(() -> {
+                try {
+                    run(pending.job(), pending.image(), householdId);
+                } finally {
+                    onFinish.run();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            deleteQuietly(pending.image());
+            throw new IngestionQueueFullException(
+                "Fila de processamento cheia (" + executor.getQueue().size() + " notas aguardando). Tente novamente em instantes.");
+        }
+    }
+
+    private void fail(IngestionJobDTO job, String error) {
+        update(job, j -> {
+            j.setError(error);
+            j.setStatus(IngestionJobStatus.FAILED);
+            j.setFinishedAt(LocalDateTime.now());
+        });
+    }
+
+    // Job de outra família é tratado como inexistente (o resultado traz o id da nota dela)
+    public Optional<IngestionJobDTO> findJob(String jobId, Long householdId) {
+        return Optional.ofNullable(jobs.get(jobId))
+                .filter(job -> Objects.equals(job.getHouseholdId(), householdId))
+                .map(this::snapshot);
+    }
+
+    private void run(IngestionJobDTO job, Path imagePath, Long householdId) {
+        update(job, j -> {
+            j.setStatus(IngestionJobStatus.RUNNING);
+            j.setStartedAt(LocalDateTime.now());
+        });
+
+        try {
+            // 1. Envia imagem para a IA e recebe JSON (String).
+            // Se a mesma foto já foi analisada (reenvio após erro/edição), o JSON vem do cache.
+            // A chave usa a foto ORIGINAL + versão do prompt + configuração do pré-processamento:
+            // num acerto de cache nem o pré-processamento precisa rodar
+            Resource image = new FileSystemResource(imagePath);
+            String jsonResult = extractionCache.getOrCompute(ExtractionCacheService.sha256Hex(image),
+                    aiService.getExtractorVersion() + "-" + imagePreprocessor.getVersion(),
+                    () -> analyze(job, imagePath), receiptService::checkExtractedReceipt);
+
+            // 2. Converte e salva a nota fiscal
+            Receipt savedReceipt = receiptService.saveExtractedReceipt(jsonResult, householdId);
+
+            update(job, j -> {
+                j.setReceiptId(savedReceipt.getId());
+                j.setStatus(IngestionJobStatus.DONE);
+                j.setFinishedAt(LocalDateTime.now());
+            });
+        } catch (Exception e) {
+            log.warn("Job {} da família {} falhou", job.getJobId(), householdId, e);
+            fail(job, e.getMessage());
+        } finally {
+            deleteQuietly(imagePath);
+        }
+    }
+
+    // Reduz a foto (ReceiptImagePreprocessor) e envia ao Gemini
+    private String analyze(IngestionJobDTO job, Path imagePath) {
+        try (ReceiptImagePreprocessor.PreparedImage prepared = imagePreprocessor.prepare(imagePath)) {
+            update(job, j -> {
+                j.setImageBytesOriginal(prepared.originalBytes());
+                j.setImageBytesSent(prepared.sentBytes());
+            });
+            return aiService.analyzeReceiptImage(new FileSystemResource(prepared.path()), prepared.mimeType());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Não foi possível ler a imagem enviada", e);
+        }
+    }
+
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Não foi possível apagar o arquivo temporário {}: {}", path, e.getMessage());
+        }
+    }
+
+    // As escritas acontecem na thread de ingestão e as leituras nas threads do Tomcat:
+    // sincronizamos no próprio job para o polling nunca ver um estado pela metade
+    private void update(IngestionJobDTO job, java.util.function.Consumer<IngestionJobDTO> change) {
+        synchronized (job) {
+            change.accept(job);
+        }
+    }
+
+    private IngestionJobDTO snapshot(IngestionJobDTO job) {
+        synchronized (job) {
+            IngestionJobDTO copy = new IngestionJobDTO();
+            copy.setJobId(job.getJobId());
+            copy.setStatus(job.getStatus());
+            copy.setReceiptId(job.getReceiptId());
+            copy.setError(job.getError());
+            copy.setImageBytesOriginal(job.getImageBytesOriginal());
+            copy.setImageBytesSent(job.getImageBytesSent());
+            copy.setSubmittedAt(job.getSubmittedAt());
+            copy.setStartedAt(job.getStartedAt());
+            copy.setFinishedAt(job.getFinishedAt());
+            return copy;
+        }
+    }
+
+    private void evictExpiredJobs() {
+        LocalDateTime limit = LocalDateTime.now().minus(retention);
+        jobs.values().removeIf(job -> {
+            synchronized (job) {
+                return job.getFinishedAt() != null && job.getFinishedAt().isBefore(limit);
+            }
+        });
+    }
+}
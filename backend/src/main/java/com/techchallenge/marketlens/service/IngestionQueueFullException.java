@@ -0,0 +1,9 @@
+package com.techchallenge.marketlens.service;
+
+// Lançada quando a fila de ingestão está cheia: o controller devolve 429 para o cliente tentar mais tarde
+public class IngestionQueueFullException extends RuntimeException {
+
+    public IngestionQueueFullException(String message) {
+        super(message);
+    }
+}
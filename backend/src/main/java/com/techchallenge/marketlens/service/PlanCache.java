@@ -0,0 +1,70 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.dto.PlannerSummaryDTO;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Cache da lista do planejador (uma por família), versionado pelos dados que a influenciam.
+ *
+ * Mudanças no perfil ou nos ajustes (feedback) incrementam a versão da família; mudanças nas notas fiscais
+ * incrementam uma versão global, já que os preços históricos vêm das notas de todas as famílias.
+ * Enquanto as versões (e o dia, já que a lista usa "últimos 60 dias") forem as mesmas, o plano não é
+ * recalculado e o ETag não muda: o React recebe um 304 sem nem montar a resposta.
+ */
+@Service
+public class PlanCache {
+
+    // Diferencia ETags de execuções diferentes: após um restart as versões voltam a 0 com outros dados
+    private final String instanceId = Long.toString(System.currentTimeMillis(), 36);
+    private final AtomicLong receiptsVersion = new AtomicLong();
+    private final Map<Long, AtomicLong> householdVersions = new ConcurrentHashMap<>();
+    private final Map<Long, CachedPlan> plans = new ConcurrentHashMap<>();
+
+    public record CachedPlan(String etag, PlannerSummaryDTO plan) {}
+
+    public CachedPlan getOrCompute(Long householdId, Supplier<PlannerSummaryDTO> generator) {
+        // O ETag é calculado ANTES do plano: se os dados mudarem no meio, o plano fica marcado com a versão
+        // antiga e o próximo pedido recalcula
+        String etag = currentEtag(householdId);
+
+        CachedPlan cached = plans.get(householdId);
+        if (cached != null && cached.etag().equals(etag)) {
+            return cached;
+        }
+
+        CachedPlan fresh = new CachedPlan(etag, generator.get());
+        plans.put(householdId, fresh);
+        return fresh;
+    }
+
+    // ETag dos dados atuais da família, sem precisar do plano calculado
+    public String currentEtag(Long householdId) {
+        return "\"plan-" + instanceId + "-" + householdId + "-" + receiptsVersion.get() + "-"
+                + householdVersion(householdId).get() + "-" + LocalDate.now() + "\"";
+    }
+
+    // Perfil ou ajustes da família mudaram
+    public void invalidate(Long householdId) {
+        householdVersion(householdId).incrementAndGet();
+    }
+
+    // Só depois do commit, igual ao índice de busca: antes disso o planejador ainda enxergaria os dados antigos
+    @TransactionalEventListener
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        receiptsVersion.incrementAndGet();
+        // Planos de versões antigas nunca mais serão servidos; libera a memória
+        plans.clear();
+    }
+
+    private AtomicLong householdVersion(Long householdId) {
+        return householdVersions.computeIfAbsent(householdId, id -> new AtomicLong());
+    }
+}
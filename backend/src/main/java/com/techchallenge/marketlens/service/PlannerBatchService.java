@@ -0,0 +1,70 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.dto.PlannerBatchResultDTO;
+import com.techchallenge.marketlens.dto.PlannerSummaryDTO;
+import com.techchallenge.marketlens.repository.FamilyProfileRepository;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+/**
+ * Gera os planos de várias famílias de uma vez, em paralelo.
+ * O retrato de preços históricos (a parte mais cara) é montado UMA vez e compartilhado por todas as famílias.
+ */
+@Service
+public class PlannerBatchService {
+
+    private final PlannerService plannerService;
+    private final HistoricalPriceService historicalPriceService;
+    private final FamilyProfileRepository profileRepository;
+    private final ThreadPoolExecutor executor;
+
+    public PlannerBatchService(PlannerService plannerService,
+                               HistoricalPriceService historicalPriceService,
+                               FamilyProfileRepository profileRepository,
+                               @Qualifier("plannerBatchExecutor") ThreadPoolExecutor executor) {
+        this.plannerService = plannerService;
+        this.historicalPriceService = historicalPriceService;
+        this.profileRepository = profileRepository;
+        this.executor = executor;
+    }
+
+    // householdIds vazio/nulo = todas as famílias com perfil cadastrado
+    public PlannerBatchResultDTO generatePlans(Collection<Long> householdIds) {
+        long start = System.nanoTime();
+        List<Long> households = householdIds == null || householdIds.isEmpty()
+                ? profileRepository.findAllHouseholdIds()
+                : householdIds.stream().distinct().sorted().toList();
+
+        HistoricalPriceSnapshot priceSnapshot = historicalPriceService.loadSnapshot();
+        long snapshotNanos = System.nanoTime() - start;
+
+        Map<Long, CompletableFuture<PlannerSummaryDTO>> futures = new LinkedHashMap<>();
+        for (Long householdId : households) {
+            futures.put(householdId, CompletableFuture.supplyAsync(
+                    () -> plannerService.generateMonthlyPlan(householdId, priceSnapshot), executor));
+        }
+
+        PlannerBatchResultDTO result = new PlannerBatchResultDTO();
+        for (Map.Entry<Long, CompletableFuture<PlannerSummaryDTO>> entry : futures.entrySet()) {
+            try {
+                result.getPlans().put(entry.getKey(), entry.getValue().join());
+            } catch (CompletionException e) {
+                // Uma família com problema não derruba o lote
+                result.getErrors().put(entry.getKey(), String.valueOf(e.getCause().getMessage()));
+            }
+        }
+
+        result.setHouseholdCount(households.size());
+        result.setPriceSnapshotMs(snapshotNanos / 1_000_000);
+        result.setWallTimeMs((System.nanoTime() - start) / 1_000_000);
+        return result;
+    }
+}
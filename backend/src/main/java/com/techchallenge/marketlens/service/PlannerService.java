@@ -7,34 +7,75 @@ import com.techchallenge.marketlens.dto.PlannerSummaryDTO;
 import com.techchallenge.marketlens.dto.ShoppingListItemDTO;
 import com.techchallenge.marketlens.repository.FamilyProfileRepository;
 import com.techchallenge.marketlens.repository.ItemAdjustmentRepository;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Optional;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 
 @Service
 public class PlannerService {
 
+    // Categorias cujos itens comprados nos últimos 60 dias entram na lista (as mesmas do antigo findEssentialItemsSince)
+    private static final List<String> ESSENTIAL_CATEGORIES = List.of("MERCEARIA", "LIMPEZA", "HIGIENE", "LATICINIOS");
+
     private final FamilyProfileRepository profileRepository;
     private final ItemAdjustmentRepository adjustmentRepository;
-    private final com.techchallenge.marketlens.repository.ProductItemRepository productItemRepository;
+    private final ProductItemColumnStore columnStore;
+    private final HistoricalPriceService historicalPriceService;
+    private final PlanCache planCache;
+    private final MeterRegistry meterRegistry;
+    private final ProductClassifier productClassifier;
+    private final ProductCatalogService catalogService;
+    private final PriceStatisticsService priceStatistics;
 
     // Injeção de dependência via construtor (Boa prática do Spring Boot)
     public PlannerService(FamilyProfileRepository profileRepository, 
                           ItemAdjustmentRepository adjustmentRepository,
-                          com.techchallenge.marketlens.repository.ProductItemRepository productItemRepository) {
+                          ProductItemColumnStore columnStore,
+                          HistoricalPriceService historicalPriceService,
+                          PlanCache planCache,
+                          MeterRegistry meterRegistry,
+                          ProductClassifier productClassifier,
+                          ProductCatalogService catalogService,
+                          PriceStatisticsService priceStatistics) {
         this.profileRepository = profileRepository;
         this.adjustmentRepository = adjustmentRepository;
-        this.productItemRepository = productItemRepository;
+        this.columnStore = columnStore;
+        this.historicalPriceService = historicalPriceService;
+        this.planCache = planCache;
+        this.meterRegistry = meterRegistry;
+        this.productClassifier = productClassifier;
+        this.catalogService = catalogService;
+        this.priceStatistics = priceStatistics;
+    }
+
+    public PlannerSummaryDTO generateMonthlyPlan(Long householdId) {
+        long start = System.nanoTime();
+        HistoricalPriceSnapshot priceSnapshot = historicalPriceService.loadSnapshot();
+        recordPhase("price_snapshot", start);
+        return generateMonthlyPlan(householdId, priceSnapshot);
     }
 
-    public PlannerSummaryDTO generateMonthlyPlan() {
+    // Variante usada na geração em lote: todas as famílias compartilham o mesmo retrato de preços
+    // (os preços históricos vêm das notas de todo mundo, então não dependem da família)
+    public PlannerSummaryDTO generateMonthlyPlan(Long householdId, HistoricalPriceSnapshot priceSnapshot) {
+        long start = System.nanoTime();
+        long phaseStart = start;
+
         // 1. Busca o perfil da família. 
         // (Se não houver nenhum no banco ainda, criamos um mock temporário para o MVP não quebrar)
-        FamilyProfile profile = profileRepository.findFirstByOrderByIdAsc();
+        FamilyProfile profile = profileRepository.findFirstByHouseholdIdOrderByIdAsc(householdId);
         if (profile == null) {
             profile = new FamilyProfile(2, 1, new BigDecimal("1500.00")); 
         }
@@ -54,62 +95,67 @@ public class PlannerService {
         summary.setWeeklyReserve(weeklyReserve);
         summary.setMonthlyEstimatedCost(baseMonthlyCost); // Na V2, isso virá da soma dos preços do histórico
 
-        // 4. Gera a lista e passa pelo filtro inteligente
+        // 4. Gera a lista base pelo tamanho da família
         List<ShoppingListItemDTO> draftList = generateBaseList(profile.getAdultsCount(), profile.getChildrenCount(), totalPeople);
-        List<ShoppingListItemDTO> finalAdjustedList = applyUserAdjustments(draftList);
+        phaseStart = recordPhase("base_list", phaseStart);
+
+        // 5. Carrega TODOS os ajustes do usuário de uma vez (1 query) num índice por nome normalizado
+        // e passa a lista pelo filtro inteligente
+        Map<String, ItemAdjustment> adjustmentIndex = loadAdjustmentIndex(householdId);
+        List<ShoppingListItemDTO> finalAdjustedList = applyUserAdjustments(draftList, adjustmentIndex);
+        phaseStart = recordPhase("adjustments", phaseStart);
+
+        // Conjunto com os nomes (normalizados) que já estão na lista: consulta O(1) em vez de re-varrer a lista
+        Set<String> namesInList = new HashSet<>();
+        for (ShoppingListItemDTO item : finalAdjustedList) {
+            namesInList.add(TextNormalizer.fold(item.getItemName()));
+        }
 
         // ==========================================
         // INJEÇÃO DE HISTÓRICO (ESSENCIAIS DOS ÚLTIMOS 60 DIAS)
         // ==========================================
-        java.time.LocalDateTime sessentaDiasAtras = java.time.LocalDateTime.now().minusDays(60);
-        List<String> lastMonthEssentials = productItemRepository.findEssentialItemsSince(sessentaDiasAtras);
+        // Nomes distintos das notas da família nas categorias essenciais, lidos do retrato colunar (sem ir ao banco)
+        java.time.LocalDate sessentaDiasAtras = java.time.LocalDate.now().minusDays(60);
+        List<String> lastMonthEssentials = columnStore.query()
+                .household(householdId)
+                .categories(ESSENTIAL_CATEGORIES)
+                .between(sessentaDiasAtras, null)
+                .distinctProductNames();
         
         for (String historyItemName : lastMonthEssentials) {
-            
+            String key = TextNormalizer.fold(historyItemName);
+
             // Trava 1: Já está na lista de Arroz/Feijão padrão?
-            boolean alreadyInList = finalAdjustedList.stream()
-                .anyMatch(item -> item.getItemName().equalsIgnoreCase(historyItemName));
+            boolean alreadyInList = namesInList.contains(key);
             
-            Optional<ItemAdjustment> adjustmentOpt = adjustmentRepository.findByItemNameIgnoreCase(historyItemName);
+            ItemAdjustment adjustment = adjustmentIndex.get(key);
             
             // Trava 2: O React manda fator 0.0 quando o usuário clica na Lixeira
-            boolean isDeleted = adjustmentOpt.isPresent() && adjustmentOpt.get().getAdjustmentFactor() <= 0.1;
+            boolean isDeleted = adjustment != null && adjustment.getAdjustmentFactor() <= 0.1;
             
             // Trava 3: O React manda fator > 1.0 (ex: 1.2) quando clica no "+"
-            boolean isPromoted = adjustmentOpt.isPresent() && adjustmentOpt.get().getAdjustmentFactor() > 0.5;
+            boolean isPromoted = adjustment != null && adjustment.getAdjustmentFactor() > 0.5;
 
             if (!alreadyInList && !isDeleted) {
                 if (isPromoted) {
-                    double qty = Math.max(1.0, Math.round(adjustmentOpt.get().getAdjustmentFactor()));
-                    
-                    // 👇 A MÁGICA ENTRA AQUI 👇
-                    // Lista rápida de palavras que pertencem à feira/padaria
-                    List<String> itensSemanais = java.util.Arrays.asList(
-                        "Leite", "Pão", "Carne", "Frango", "Peixe", "Ovo", "Queijo", "Presunto", "Fruta", "Verdura", "Legume"
-                    );
+                    double qty = Math.max(1.0, Math.round(adjustment.getAdjustmentFactor()));
                     
-                    // Verifica se o nome do item bate com algum da lista semanal
-                    boolean isSemanal = itensSemanais.stream()
-                        .anyMatch(palavra -> historyItemName.toLowerCase().contains(palavra.toLowerCase()));
-                        
-                    // Define a categoria correta com base na verificação
-                    ShoppingCategory categoriaDestino = isSemanal ? ShoppingCategory.SEMANAL_FRESCOS : ShoppingCategory.MENSAL_BASE;
-                    
-                    // Adiciona o item na categoria certa!
-                    finalAdjustedList.add(new ShoppingListItemDTO(historyItemName, qty, "un", categoriaDestino));
+                    // Adiciona o item na categoria certa (feira/padaria ou mensal)!
+                    finalAdjustedList.add(new ShoppingListItemDTO(historyItemName, qty, "un", classifyRecurringItem(key)));
                     
                 } else {
                     finalAdjustedList.add(new ShoppingListItemDTO(historyItemName, 1.0, "un", ShoppingCategory.SUGESTAO_HISTORICO));
                 }
+                namesInList.add(key);
             }    
         }
         
         // ==========================================
         // RESGATE DE ITENS ADICIONADOS MANUALMENTE (QUE NÃO ESTÃO NO HISTÓRICO)
         // ==========================================
-        List<ItemAdjustment> todosAjustes = adjustmentRepository.findAll();
-        
-        for (ItemAdjustment ajuste : todosAjustes) {
+        // Reaproveita o índice já carregado (antes era um segundo findAll())
+        for (Map.Entry<String, ItemAdjustment> entry : adjustmentIndex.entrySet()) {
+            ItemAdjustment ajuste = entry.getValue();
             String manualItemName = ajuste.getItemName();
             double fator = ajuste.getAdjustmentFactor();
             
@@ -117,57 +163,73 @@ public class PlannerService {
             if (fator <= 0.5) continue;
 
             // Verifica se o item JÁ FOI colocado na lista pela lógica anterior
-            boolean alreadyInList = finalAdjustedList.stream()
-                .anyMatch(item -> item.getItemName().equalsIgnoreCase(manualItemName));
-
-            if (!alreadyInList) {
-                // Aplica a mesma inteligência de separar MENSAL vs SEMANAL
-                List<String> itensSemanais = java.util.Arrays.asList(
-                    "Leite", "Pão", "Carne", "Frango", "Peixe", "Ovo", "Queijo", "Presunto", "Fruta", "Verdura", "Legume"
-                );
-                
-                boolean isSemanal = itensSemanais.stream()
-                    .anyMatch(palavra -> manualItemName.toLowerCase().contains(palavra.toLowerCase()));
-                    
-                ShoppingCategory categoriaDestino = isSemanal ? ShoppingCategory.SEMANAL_FRESCOS : ShoppingCategory.MENSAL_BASE;
-                
+            if (namesInList.add(entry.getKey())) {
                 // Define a quantidade (Mínimo 1)
                 double qty = Math.max(1.0, Math.round(fator));
                 
-                // Adiciona o item fujão na lista final!
-                finalAdjustedList.add(new ShoppingListItemDTO(manualItemName, qty, "un", categoriaDestino));
+                // Adiciona o item fujão na lista final, com a mesma separação MENSAL vs SEMANAL!
+                finalAdjustedList.add(new ShoppingListItemDTO(manualItemName, qty, "un", classifyRecurringItem(entry.getKey())));
             }
         }
+        phaseStart = recordPhase("history_merge", phaseStart);
     
         // ==========================================
         // PRECIFICAÇÃO HISTÓRICA OU ESTIMADA
         // ==========================================
+        // 1º pelo produto do catálogo ("Leite" -> mediana recente de todas as marcas de leite, já calculada em memória);
+        // se o item não é um produto do catálogo, usa a primeira palavra do item (Ex: de "Leite Integral" busca só "Leite")
+        // nos nomes das notas fiscais. Todas as palavras-chave são resolvidas em lote (1 query) em vez de 1 query por item.
+        List<String> keywords = finalAdjustedList.stream()
+            .map(item -> item.getItemName().split(" ")[0])
+            .toList();
+        Map<String, Double> avgPriceByKeyword = priceSnapshot.averagesFor(keywords);
+
         for (ShoppingListItemDTO item : finalAdjustedList) {
-            // Usa a primeira palavra do item (Ex: de "Leite Integral" busca só "Leite") para achar nas notas fiscais
-            String keyword = item.getItemName().split(" ")[0]; 
-            Double avgPrice = productItemRepository.findAverageHistoricalPrice(keyword);
+            Double avgPrice = priceStatistics.estimatePrice(catalogService.findProductId(item.getItemName()));
+            if (avgPrice == null || avgPrice == 0.0) {
+                avgPrice = avgPriceByKeyword.get(item.getItemName().split(" ")[0]);
+            }
             
-            // Se o usuário nunca comprou isso nas notas fiscais antigas, usamos um preço médio estimado do mercado (Fallback)
+            // Se o usuário nunca comprou isso nas notas fiscais antigas, usamos um preço médio estimado do mercado (Fallback),
+            // do dicionário do classificador (pelo nome inteiro: "Leite Condensado" não é cotado como "Leite")
             if (avgPrice == null || avgPrice == 0.0) {
-                avgPrice = getFallbackEstimatedPrice(keyword);
+                avgPrice = productClassifier.estimatedPrice(item.getItemName());
             }
             
             // Arredonda para 2 casas decimais (Ex: 4.59)
             item.setUnitPrice(Math.round(avgPrice * 100.0) / 100.0);
         }
+        recordPhase("pricing", phaseStart);
 
         summary.setItems(finalAdjustedList);
+        Timer.builder("marketlens.planner.generate")
+            .description("Tempo total de geração da lista (sem o retrato de preços)")
+            .publishPercentileHistogram()
+            .register(meterRegistry)
+            .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
         return summary;
     }
 
+    // Registra o tempo da etapa (marketlens.planner.phase) e devolve o início da próxima
+    private long recordPhase(String phase, long phaseStart) {
+        long now = System.nanoTime();
+        Timer.builder("marketlens.planner.phase")
+            .description("Tempo de cada etapa da geração da lista")
+            .tag("phase", phase)
+            .register(meterRegistry)
+            .record(now - phaseStart, TimeUnit.NANOSECONDS);
+        return now;
+    }
+
     // ==========================================
     // SALVAR PERFIL DA FAMÍLIA
     // ==========================================
-    public void saveProfile(com.techchallenge.marketlens.dto.FamilyProfileDTO dto) {
-        FamilyProfile profile = profileRepository.findFirstByOrderByIdAsc();
+    public void saveProfile(Long householdId, com.techchallenge.marketlens.dto.FamilyProfileDTO dto) {
+        FamilyProfile profile = profileRepository.findFirstByHouseholdIdOrderByIdAsc(householdId);
         
         if (profile == null) {
             profile = new FamilyProfile();
+            profile.setHouseholdId(householdId);
         }
         
         profile.setAdultsCount(dto.getAdultsCount());
@@ -175,6 +237,7 @@ public class PlannerService {
         profile.setMonthlyBudget(dto.getMonthlyBudget());
         
         profileRepository.save(profile);
+        planCache.invalidate(householdId);
     }
 
     // ==========================================
@@ -223,14 +286,31 @@ public class PlannerService {
         return list;
     }
 
-    private List<ShoppingListItemDTO> applyUserAdjustments(List<ShoppingListItemDTO> baseList) {
+    // Índice nome normalizado (sem acento/maiúsculas) -> ajuste. Em caso de nomes que colidem
+    // após a normalização (ex: "Feijão" e "feijao"), vale o ajuste mais antigo (menor id).
+    private Map<String, ItemAdjustment> loadAdjustmentIndex(Long householdId) {
+        List<ItemAdjustment> adjustments = adjustmentRepository.findByHouseholdId(householdId, Sort.by("id"));
+        Map<String, ItemAdjustment> index = new LinkedHashMap<>(adjustments.size() * 2);
+        for (ItemAdjustment adjustment : adjustments) {
+            index.putIfAbsent(TextNormalizer.fold(adjustment.getItemName()), adjustment);
+        }
+        return index;
+    }
+
+    // Categoria da lista pelo dicionário do classificador (feira/padaria -> SEMANAL_FRESCOS, limpeza -> MENSAL_LIMPEZA...);
+    // itens que o dicionário não conhece vão para MENSAL_BASE
+    private ShoppingCategory classifyRecurringItem(String normalizedName) {
+        return productClassifier.shoppingCategoryOf(normalizedName, ShoppingCategory.MENSAL_BASE);
+    }
+
+    private List<ShoppingListItemDTO> applyUserAdjustments(List<ShoppingListItemDTO> baseList, Map<String, ItemAdjustment> adjustmentIndex) {
         List<ShoppingListItemDTO> adjustedList = new ArrayList<>();
 
         for (ShoppingListItemDTO item : baseList) {
-            Optional<ItemAdjustment> adjustmentOpt = adjustmentRepository.findByItemNameIgnoreCase(item.getItemName());
+            ItemAdjustment adjustment = adjustmentIndex.get(TextNormalizer.fold(item.getItemName()));
 
-            if (adjustmentOpt.isPresent()) {
-                double delta = adjustmentOpt.get().getAdjustmentFactor();
+            if (adjustment != null) {
+                double delta = adjustment.getAdjustmentFactor();
                 
                 // Se a flag for -999, significa que foi pra lixeira. Ignoramos o item.
                 if (delta == -999.0) {
@@ -259,19 +339,4 @@ public class PlannerService {
         }
         return adjustedList;
     }
-
-    private Double getFallbackEstimatedPrice(String keyword) {
-        keyword = keyword.toUpperCase();
-        if (keyword.contains("ARROZ")) return 25.90;
-        if (keyword.contains("FEIJÃO")) return 7.50;
-        if (keyword.contains("ÓLEO")) return 6.50;
-        if (keyword.contains("AÇÚCAR")) return 4.50;
-        if (keyword.contains("CAFÉ")) return 18.90;
-        if (keyword.contains("CARNES")) return 35.00;
-        if (keyword.contains("OVOS")) return 16.00;
-        if (keyword.contains("LEITE")) return 5.50;
-        if (keyword.contains("HORTIFRUTI")) return 8.00;
-        if (keyword.contains("SABÃO")) return 14.50;
-        return 5.00; // Preço genérico de segurança
-    }
 }
\ No newline at end of file
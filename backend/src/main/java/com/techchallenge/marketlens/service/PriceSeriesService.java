@@ -0,0 +1,109 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.repository.projection.DailyPriceAggregate;
+import com.techchallenge.marketlens.repository.projection.PricePoint;
+import org.springframework.stereotype.Service;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Séries de preço para os gráficos de histórico.
+ *
+ * O retrato colunar (ProductItemColumnStore) já devolve os preços agregados por dia + mercado
+ * (mín/máx/soma/contagem), sem ir ao banco; aqui só juntamos esses dias em semanas ou meses.
+ * Um gráfico de "Leite" passa a ter dezenas de pontos em vez de milhares.
+ * Cada família só vê os preços das próprias notas.
+ */
+@Service
+public class PriceSeriesService {
+
+    public enum Resolution { DAILY, WEEKLY, MONTHLY }
+
+    private final ProductItemColumnStore columnStore;
+
+    public PriceSeriesService(ProductItemColumnStore columnStore) {
+        this.columnStore = columnStore;
+    }
+
+    // Pontos "crus" (1 por item comprado), já ordenados por data
+    public List<PricePoint> rawByProductName(Long householdId, String name) {
+        return columnStore.query().household(householdId).productNameContains(name).pricePoints();
+    }
+
+    // Todos os itens cuja subcategoria é exatamente esta (ignorando maiúsculas), de qualquer marca
+    public List<PricePoint> rawBySubCategory(Long householdId, String subCategory) {
+        return columnStore.query().household(householdId).subCategory(subCategory).pricePoints();
+    }
+
+    public List<PriceBucket> seriesByProductName(Long householdId, String name, Resolution resolution, boolean bySupermarket) {
+        return downsample(columnStore.query().household(householdId).productNameContains(name).dailyPrices(), resolution, bySupermarket);
+    }
+
+    public List<PriceBucket> seriesBySubCategory(Long householdId, String subCategory, Resolution resolution, boolean bySupermarket) {
+        return downsample(columnStore.query().household(householdId).subCategory(subCategory).dailyPrices(), resolution, bySupermarket);
+    }
+
+    // Junta os agregados diários (já ordenados por dia) em baldes do período pedido
+    private List<PriceBucket> downsample(List<DailyPriceAggregate> days, Resolution resolution, boolean bySupermarket) {
+        Map<BucketKey, Accumulator> buckets = new LinkedHashMap<>();
+
+        for (DailyPriceAggregate day : days) {
+            if (day.getDay() == null || day.getPriceCount() == null || day.getPriceCount() == 0) {
+                continue;
+            }
+            LocalDate periodStart = periodStart(day.getDay(), resolution);
+            String supermarket = bySupermarket ? day.getSupermarket() : null;
+
+            buckets.computeIfAbsent(new BucketKey(periodStart, supermarket), k -> new Accumulator()).add(day);
+        }
+
+        List<PriceBucket> result = new ArrayList<>(buckets.size());
+        buckets.forEach((key, acc) -> result.add(new PriceBucket(key.periodStart(), key.supermarket(),
+                round(acc.min), round(acc.sum / acc.count), round(acc.max), acc.count)));
+        return result;
+    }
+
+    private static LocalDate periodStart(LocalDate day, Resolution resolution) {
+        return switch (resolution) {
+            case DAILY -> day;
+            case WEEKLY -> day.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY)); // Semana começa na segunda
+            case MONTHLY -> day.withDayOfMonth(1);
+        };
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100.0) / 100.0;
+    }
+
+    private record BucketKey(LocalDate periodStart, String supermarket) {}
+
+    private static final class Accumulator {
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+        private double sum;
+        private long count;
+
+        private void add(DailyPriceAggregate day) {
+            min = Math.min(min, day.getMinPrice());
+            max = Math.max(max, day.getMaxPrice());
+            sum += day.getPriceSum();
+            count += day.getPriceCount();
+        }
+    }
+
+    // Um ponto do gráfico: período (dia/segunda-feira da semana/dia 1 do mês) + mín/média/máx
+    public record PriceBucket(
+            LocalDate periodStart,
+            String supermarket, // null quando a série junta todos os mercados
+            double minPrice,
+            double avgPrice,
+            double maxPrice,
+            long count
+    ) {}
+}
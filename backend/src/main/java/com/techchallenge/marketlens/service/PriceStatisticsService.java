@@ -0,0 +1,244 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.dto.PriceStatsDTO;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import com.techchallenge.marketlens.repository.PriceObservationRepository;
+import com.techchallenge.marketlens.util.PriceSketch;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Estatísticas de preço por produto do catálogo, mantidas em memória: no total (preço estimado do planejador)
+ * e por família + produto + mercado (/api/items/price-stats, em que cada família só vê as próprias notas).
+ *
+ * Para cada grupo guarda: soma/contagem (média simples), a média ponderada pela data (preços recentes valem
+ * mais) e um PriceSketch (mediana e percentis). O planejador lê a mediana recente de um produto sem varrer
+ * o histórico; a mediana não é puxada por um preço fora da curva e o peso por data acompanha a inflação.
+ *
+ * Peso por data com "decaimento para frente": peso = 2^((data - LANDMARK) / meia-vida). O peso de um preço
+ * depende só da data da nota, não de "agora", então a soma nunca precisa ser recalculada com o tempo, e um
+ * preço editado ou excluído sai subtraindo exatamente o peso com que entrou.
+ *
+ * Montado na subida (1 leitura em streaming) e atualizado incrementalmente pelo ReceiptChangedEvent.
+ */
+@Service
+public class PriceStatisticsService {
+
+    private static final Logger log = LoggerFactory.getLogger(PriceStatisticsService.class);
+
+    private static final LocalDateTime LANDMARK = LocalDateTime.of(2020, 1, 1, 0, 0);
+    // Limita o expoente (datas absurdas vindas da extração) para o peso não virar infinito
+    private static final double MAX_EXPONENT = 600.0;
+
+    private final PriceObservationRepository observationRepository;
+    private final double decayPerDay;
+
+    private final Map<Long, PriceStats> byProduct = new HashMap<>();
+    private final Map<HouseholdProduct, Map<String, PriceStats>> bySupermarket = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public PriceStatisticsService(PriceObservationRepository observationRepository,
+                                  @Value("${prices.stats.half-life-days:90}") double halfLifeDays,
+                                  MeterRegistry meterRegistry) {
+        if (halfLifeDays <= 0) {
+            throw new IllegalArgumentException("prices.stats.half-life-days deve ser maior que zero");
+        }
+        this.observationRepository = observationRepository;
+        this.decayPerDay = Math.log(2) / halfLifeDays;
+
+        Gauge.builder("marketlens.pricestats.products", this, PriceStatisticsService::size)
+            .description("Produtos do catálogo com estatísticas de preço em memória")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            byProduct.clear();
+            bySupermarket.clear();
+            observationRepository.forEach((householdId, productId, supermarket, price, date) ->
+                    supermarketStats(new HouseholdProduct(householdId, productId), supermarket).add(price, weight(date), 1));
+
+            // O total do produto é a junção (merge) dos mercados de todas as famílias, sem reler os preços
+            bySupermarket.forEach((group, markets) -> {
+                PriceStats total = byProduct.computeIfAbsent(group.productId(), id -> new PriceStats(null));
+                markets.values().forEach(total::merge);
+            });
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Estatísticas de preço montadas: {} produtos.", size());
+    }
+
+    // Só depois do commit, igual ao índice de busca
+    @TransactionalEventListener
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            event.removed().forEach(item -> apply(item, -1));
+            event.added().forEach(item -> apply(item, 1));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Preço para o planejador: a mediana ponderada pela data, de todas as famílias (só o valor sai daqui;
+    // null se o produto nunca foi comprado)
+    public Double estimatePrice(Long catalogProductId) {
+        if (catalogProductId == null) {
+            return null;
+        }
+        lock.readLock().lock();
+        try {
+            PriceStats stats = byProduct.get(catalogProductId);
+            return stats == null ? null : stats.sketch.weightedQuantile(0.5);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Estatísticas do produto nas notas da família, com o detalhe por mercado (dos mais comprados para os menos)
+    public Optional<PriceStatsDTO> statistics(Long householdId, Long catalogProductId) {
+        if (catalogProductId == null) {
+            return Optional.empty();
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, PriceStats> byMarket = bySupermarket.get(new HouseholdProduct(householdId, catalogProductId));
+            if (byMarket == null) {
+                return Optional.empty();
+            }
+            // Total da família: junção dos poucos mercados dela (a cópia não altera os grupos guardados)
+            PriceStats total = new PriceStats(null);
+            byMarket.values().forEach(total::merge);
+            PriceStatsDTO dto = total.toDTO();
+            List<PriceStats> markets = new ArrayList<>(byMarket.values());
+            markets.sort(Comparator.comparingLong((PriceStats stats) -> stats.count).reversed());
+            dto.setBySupermarket(markets.stream().map(PriceStats::toDTO).toList());
+            return Optional.of(dto);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byProduct.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void apply(ReceiptChangedEvent.ItemSnapshot item, int sign) {
+        if (item.catalogProductId() == null || item.unitPrice() == null) {
+            return;
+        }
+        double weight = weight(item.date());
+        byProduct.computeIfAbsent(item.catalogProductId(), id -> new PriceStats(null)).add(item.unitPrice(), weight, sign);
+        HouseholdProduct group = new HouseholdProduct(item.householdId(), item.catalogProductId());
+        supermarketStats(group, item.supermarketName()).add(item.unitPrice(), weight, sign);
+
+        // Grupos que ficaram vazios saem da memória
+        if (sign < 0) {
+            PriceStats total = byProduct.get(item.catalogProductId());
+            if (total.count <= 0) {
+                byProduct.remove(item.catalogProductId());
+            }
+            Map<String, PriceStats> markets = bySupermarket.get(group);
+            markets.values().removeIf(stats -> stats.count <= 0);
+            if (markets.isEmpty()) {
+                bySupermarket.remove(group);
+            }
+        }
+    }
+
+    private PriceStats supermarketStats(HouseholdProduct group, String supermarketName) {
+        String key = TextNormalizer.fold(supermarketName);
+        return bySupermarket.computeIfAbsent(group, g -> new HashMap<>())
+                .computeIfAbsent(key, k -> new PriceStats(supermarketName == null || supermarketName.isBlank() ? null : supermarketName.strip()));
+    }
+
+    // Peso do preço pela data da nota (nota sem data pesa como se fosse do LANDMARK)
+    private double weight(LocalDateTime date) {
+        if (date == null) {
+            return 1.0;
+        }
+        double days = Duration.between(LANDMARK, date).toSeconds() / 86400.0;
+        return Math.exp(Math.max(-MAX_EXPONENT, Math.min(MAX_EXPONENT, decayPerDay * days)));
+    }
+
+    private static Double round(Double value) {
+        return value == null ? null : Math.round(value * 100.0) / 100.0;
+    }
+
+    private record HouseholdProduct(Long householdId, Long productId) {}
+
+    // Estatísticas de um grupo (produto ou produto + mercado); acesso protegido pelo lock do serviço
+    private static final class PriceStats {
+        private final String supermarket; // Nome como apareceu na primeira nota (null no total do produto)
+        private final PriceSketch sketch = new PriceSketch();
+        private long count;
+        private double sum;
+        private double weightedSum;
+        private double weightSum;
+
+        private PriceStats(String supermarket) {
+            this.supermarket = supermarket;
+        }
+
+        private void add(double price, double weight, int sign) {
+            count += sign;
+            sketch.add(price, weight, sign);
+            if (count == 0) {
+                // Sem preços: zera de vez (sem sobras de arredondamento das subtrações)
+                sum = weightedSum = weightSum = 0.0;
+                return;
+            }
+            sum += sign * price;
+            weightedSum += sign * weight * price;
+            weightSum += sign * weight;
+        }
+
+        private void merge(PriceStats other) {
+            count += other.count;
+            sum += other.sum;
+            weightedSum += other.weightedSum;
+            weightSum += other.weightSum;
+            sketch.merge(other.sketch);
+        }
+
+        private PriceStatsDTO toDTO() {
+            PriceStatsDTO dto = new PriceStatsDTO();
+            dto.setSupermarket(supermarket);
+            dto.setCount(count);
+            dto.setAverage(count > 0 ? round(sum / count) : null);
+            dto.setRecentAverage(weightSum > 0 ? round(weightedSum / weightSum) : null);
+            dto.setMedian(round(sketch.quantile(0.5)));
+            dto.setRecentMedian(round(sketch.weightedQuantile(0.5)));
+            dto.setP10(round(sketch.quantile(0.1)));
+            dto.setP90(round(sketch.quantile(0.9)));
+            return dto;
+        }
+    }
+}
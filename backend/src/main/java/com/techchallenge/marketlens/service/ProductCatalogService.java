@@ -0,0 +1,158 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.CatalogAlias;
+import com.techchallenge.marketlens.domain.CatalogProduct;
+import com.techchallenge.marketlens.repository.CatalogAliasRepository;
+import com.techchallenge.marketlens.repository.CatalogProductRepository;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Liga cada item de nota a um produto do catálogo canônico (catalog_product), na ingestão.
+ *
+ * Regra: se o nome do item (normalizado) já é um alias conhecido, vale o produto do alias; senão o produto
+ * é o da subcategoria normalizada ("Leite", "LEITE " e "leité" são o mesmo), criado se ainda não existir,
+ * e o nome vira alias dele. Assim uma variante de marca/tamanho cai sempre no mesmo produto, mesmo que a
+ * IA devolva outra subcategoria numa nota seguinte.
+ *
+ * O catálogo inteiro (chave -> id e alias -> id) fica em memória: a resolução de um item não vai ao banco,
+ * a não ser para criar um produto/alias novo. A criação roda numa transação própria (REQUIRES_NEW), já
+ * confirmada quando o item é gravado; se a nota falhar, sobra só uma entrada de catálogo sem itens.
+ */
+@Service
+public class ProductCatalogService {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductCatalogService.class);
+
+    private final CatalogProductRepository productRepository;
+    private final CatalogAliasRepository aliasRepository;
+    private final TransactionTemplate newTransaction;
+
+    private final Map<String, Long> productIdByKey = new ConcurrentHashMap<>();
+    private final Map<String, Long> productIdByAlias = new ConcurrentHashMap<>();
+
+    public ProductCatalogService(CatalogProductRepository productRepository,
+                                 CatalogAliasRepository aliasRepository,
+                                 PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.productRepository = productRepository;
+        this.aliasRepository = aliasRepository;
+        this.newTransaction = new TransactionTemplate(transactionManager);
+        this.newTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+
+        Gauge.builder("marketlens.catalog.products", productIdByKey, Map::size)
+            .description("Produtos do catálogo em memória")
+            .register(meterRegistry);
+        Gauge.builder("marketlens.catalog.aliases", productIdByAlias, Map::size)
+            .description("Variantes (nomes de item) ligadas a produtos do catálogo")
+            .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void load() {
+        productRepository.findAll().forEach(product -> productIdByKey.put(product.getNormalizedKey(), product.getId()));
+        aliasRepository.findAll().forEach(alias -> productIdByAlias.put(alias.getAliasKey(), alias.getCatalogProductId()));
+        log.info("Catálogo de produtos carregado: {} produtos, {} variantes.", productIdByKey.size(), productIdByAlias.size());
+    }
+
+    // Chave do produto de um item: a subcategoria normalizada ou, sem ela, o próprio nome
+    // (a migração V6, que ligou os itens antigos, tem uma cópia própria desta regra)
+    public static String productKey(String productName, String subCategory) {
+        String key = TextNormalizer.fold(subCategory);
+        return key.isEmpty() ? TextNormalizer.fold(productName) : key;
+    }
+
+    // Produto do catálogo para um item novo (ingestão/importação). null se o item não tem nome nem subcategoria
+    public Long resolve(String productName, String subCategory, String category) {
+        String aliasKey = TextNormalizer.fold(productName);
+        Long id = aliasKey.isEmpty() ? null : productIdByAlias.get(aliasKey);
+        if (id == null) {
+            String key = productKey(productName, subCategory);
+            id = key.isEmpty() ? null : productIdByKey.get(key);
+            if (id == null || !aliasKey.isEmpty()) {
+                id = create(aliasKey, key, productName, subCategory, category, false);
+            }
+        }
+        return id;
+    }
+
+    // Edição manual de nome/subcategoria: o usuário corrigiu o agrupamento, então o nome passa a apontar
+    // para o produto da nova subcategoria (inclusive nas próximas notas)
+    public Long reassign(String productName, String subCategory, String category) {
+        String aliasKey = TextNormalizer.fold(productName);
+        String key = productKey(productName, subCategory);
+        Long id = key.isEmpty() ? null : productIdByKey.get(key);
+        if (id != null && (aliasKey.isEmpty() || id.equals(productIdByAlias.get(aliasKey)))) {
+            return id;
+        }
+        return create(aliasKey, key, productName, subCategory, category, true);
+    }
+
+    // Produto por um texto de busca: nome genérico (chave do catálogo) ou uma variante conhecida. null se não existe
+    public Long findProductId(String text) {
+        String key = TextNormalizer.fold(text);
+        if (key.isEmpty()) {
+            return null;
+        }
+        Long id = productIdByKey.get(key);
+        return id != null ? id : productIdByAlias.get(key);
+    }
+
+    public int size() {
+        return productIdByKey.size();
+    }
+
+    // Sincronizado: duas notas com o mesmo produto novo, ao mesmo tempo, não tentam criar a mesma chave
+    private synchronized Long create(String aliasKey, String key, String productName, String subCategory, String category,
+                                     boolean repointAlias) {
+        if (key.isEmpty()) {
+            return null;
+        }
+        Created created = newTransaction.execute(status -> {
+            CatalogAlias alias = aliasKey.isEmpty() ? null : aliasRepository.findByAliasKey(aliasKey).orElse(null);
+            if (alias != null && !repointAlias) {
+                return new Created(null, alias.getCatalogProductId()); // Outra instância/thread já criou o alias
+            }
+
+            CatalogProduct product = productRepository.findByNormalizedKey(key).orElseGet(() -> {
+                String displayName = subCategory != null && !subCategory.isBlank() ? subCategory.strip() : productName.strip();
+                return productRepository.save(new CatalogProduct(key, displayName, blankToNull(subCategory), blankToNull(category)));
+            });
+
+            if (alias == null && !aliasKey.isEmpty()) {
+                aliasRepository.save(new CatalogAlias(aliasKey, product.getId()));
+            } else if (alias != null && !alias.getCatalogProductId().equals(product.getId())) {
+                alias.setCatalogProductId(product.getId());
+                aliasRepository.save(alias);
+            }
+            return new Created(product.getId(), product.getId());
+        });
+
+        // Só depois do commit da transação própria
+        if (created.keyProductId() != null) {
+            productIdByKey.put(key, created.keyProductId());
+        }
+        if (!aliasKey.isEmpty()) {
+            productIdByAlias.put(aliasKey, created.itemProductId());
+        }
+        return created.itemProductId();
+    }
+
+    // Produto da chave (null se não foi consultado) e produto que o item deve usar
+    private record Created(Long keyProductId, Long itemProductId) {}
+
+    private static String blankToNull(String value) {
+        return value == null || value.isBlank() ? null : value.strip();
+    }
+}
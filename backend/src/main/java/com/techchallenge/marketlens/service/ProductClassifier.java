@@ -0,0 +1,106 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.ShoppingCategory;
+import com.techchallenge.marketlens.util.KeywordAutomaton;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Classifica nomes de produtos pelo dicionário configurável (classifier.dictionary): categoria da lista
+ * de compras (SEMANAL_FRESCOS, MENSAL_BASE...), macro categoria e subcategoria das notas, e preço estimado
+ * para quando não há histórico.
+ *
+ * O dicionário é lido e compilado num KeywordAutomaton uma vez, na subida; cada classificação é uma
+ * passada pelo nome, qualquer que seja o número de termos. Usado pelo planejador e pela ingestão de notas.
+ *
+ * Formato do arquivo (UTF-8, ';' como separador, '#' comenta a linha):
+ *   termo;categoria_lista;macro_categoria;subcategoria;preco_estimado
+ *   leite condensado;MENSAL_BASE;MERCEARIA;Leite Condensado;6.90
+ */
+@Service
+public class ProductClassifier {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductClassifier.class);
+
+    public record Classification(ShoppingCategory shoppingCategory, String category, String subCategory, double estimatedPrice) {}
+
+    private final KeywordAutomaton<Classification> automaton;
+    private final double defaultPrice;
+
+    public ProductClassifier(@Value("${classifier.dictionary:classpath:classification/product-dictionary.csv}") Resource dictionary,
+                             @Value("${classifier.default-price:5.00}") double defaultPrice,
+                             MeterRegistry meterRegistry) throws IOException {
+        this.automaton = KeywordAutomaton.build(readDictionary(dictionary));
+        this.defaultPrice = defaultPrice;
+        Gauge.builder("marketlens.classifier.terms", automaton, KeywordAutomaton::size)
+            .description("Termos do dicionário de classificação carregado")
+            .register(meterRegistry);
+        log.info("Classificador de produtos carregado: {} termos ({})", automaton.size(), dictionary.getDescription());
+    }
+
+    // Classificação do termo mais específico (mais longo) que aparece no nome; null se nenhum aparece
+    public Classification classify(String productName) {
+        return automaton.find(productName);
+    }
+
+    public ShoppingCategory shoppingCategoryOf(String productName, ShoppingCategory fallback) {
+        Classification classification = automaton.find(productName);
+        return classification != null ? classification.shoppingCategory() : fallback;
+    }
+
+    // Preço médio de mercado para itens sem histórico de compra
+    public double estimatedPrice(String productName) {
+        Classification classification = automaton.find(productName);
+        return classification != null ? classification.estimatedPrice() : defaultPrice;
+    }
+
+    private static Map<String, Classification> readDictionary(Resource dictionary) throws IOException {
+        Map<String, Classification> terms = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(dictionary.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                line = line.strip();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] columns = line.split(";", -1);
+                if (columns.length != 5) {
+                    throw invalidLine(dictionary, lineNumber, "esperadas 5 colunas, encontradas " + columns.length);
+                }
+                try {
+                    Classification classification = new Classification(
+                        ShoppingCategory.valueOf(columns[1].strip()),
+                        columns[2].strip(),
+                        columns[3].strip(),
+                        Double.parseDouble(columns[4].strip())
+                    );
+                    if (terms.put(columns[0].strip(), classification) != null) {
+                        throw invalidLine(dictionary, lineNumber, "termo repetido '" + columns[0].strip() + "'");
+                    }
+                } catch (IllegalArgumentException e) { // categoria desconhecida ou preço inválido
+                    throw invalidLine(dictionary, lineNumber, e.getMessage());
+                }
+            }
+        }
+        return terms;
+    }
+
+    private static IllegalStateException invalidLine(Resource dictionary, int lineNumber, String reason) {
+        return new IllegalStateException("Dicionário de classificação inválido (" + dictionary.getDescription()
+                + ", linha " + lineNumber + "): " + reason);
+    }
+}
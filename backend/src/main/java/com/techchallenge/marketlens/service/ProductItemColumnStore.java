@@ -0,0 +1,682 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent.ItemSnapshot;
+import com.techchallenge.marketlens.repository.ItemSnapshotRepository;
+import com.techchallenge.marketlens.repository.projection.DailyPriceAggregate;
+import com.techchallenge.marketlens.repository.projection.PricePoint;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import com.techchallenge.marketlens.util.ValueDictionary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+
+/**
+ * Retrato colunar em memória de todos os itens comprados, para as leituras analíticas (histórico de preços,
+ * séries dos gráficos, preços do planejador, essenciais da família) sem passar pelo Hibernate.
+ *
+ * Cada campo é um array primitivo (preço, quantidade, total, dia em "epoch day") e os textos repetidos
+ * (produto, categoria, subcategoria, mercado, família, produto do catálogo) viram códigos int de um
+ * ValueDictionary. Uma consulta testa os filtros nos dicionários uma vez (ex: quais nomes contêm "LEITE") e
+ * depois só compara ints, uma coluna por vez, sem montar ProductItem/Receipt nem Double.
+ *
+ * Montado na subida (1 leitura em streaming) e atualizado incrementalmente pelo ReceiptChangedEvent: itens
+ * novos entram no fim dos arrays, itens editados/excluídos são marcados como removidos e o espaço é
+ * recuperado (compactação) quando os removidos passam de 1/4 das linhas.
+ *
+ * Aplicar um evento é idempotente: um item que já está no retrato é substituído, nunca duplicado. Isso cobre a
+ * subida com requisições já chegando: um commit visto pela leitura da montagem e cujo evento só é aplicado depois
+ * dela (o evento espera o write lock) não entra duas vezes.
+ */
+@Service
+public class ProductItemColumnStore {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Nota sem data: fica de fora de filtros por data e das séries diárias (como o CAST(NULL AS DATE) no banco)
+    private static final int NO_DAY = Integer.MIN_VALUE;
+    private static final int ANY = -2; // Filtro de código desligado (ValueDictionary.NULL_CODE é -1)
+    private static final int BLOCK = 1024; // Linhas avaliadas por vez nas consultas (vetor de seleção)
+
+    public enum Dimension { PRODUCT_NAME, CATEGORY, SUB_CATEGORY, SUPERMARKET }
+
+    private final ItemSnapshotRepository snapshotRepository;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Timer rebuildTimer;
+
+    private final ValueDictionary<Long> households = new ValueDictionary<>();
+    private final ValueDictionary<String> productNames = new ValueDictionary<>();
+    private final ValueDictionary<String> categories = new ValueDictionary<>();
+    private final ValueDictionary<String> subCategories = new ValueDictionary<>();
+    private final ValueDictionary<Long> catalogProducts = new ValueDictionary<>();
+    private final ValueDictionary<String> supermarkets = new ValueDictionary<>();
+
+    private int size;          // Linhas ocupadas, incluindo as removidas
+    private int removedCount;
+    private long maxItemId = Long.MIN_VALUE; // Maior id já guardado: ids novos acima dele não precisam de busca
+    private final BitSet removed = new BitSet();
+
+    private long[] itemIds;
+    private int[] householdCodes;
+    private int[] productNameCodes;
+    private int[] categoryCodes;
+    private int[] subCategoryCodes;
+    private int[] catalogProductCodes;
+    private int[] supermarketCodes;
+    private int[] epochDays;
+    private int[] secondsOfDay;
+    private double[] quantities;  // NaN = sem valor
+    private double[] unitPrices;
+    private double[] totalPrices;
+
+    public ProductItemColumnStore(ItemSnapshotRepository snapshotRepository, MeterRegistry meterRegistry) {
+        this.snapshotRepository = snapshotRepository;
+        allocate(INITIAL_CAPACITY);
+        this.rebuildTimer = Timer.builder("marketlens.columnstore.rebuild")
+            .description("Tempo para montar o retrato colunar dos itens a partir do banco")
+            .register(meterRegistry);
+        Gauge.builder("marketlens.columnstore.items", this, ProductItemColumnStore::size)
+            .description("Itens no retrato colunar")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        long start = System.nanoTime();
+        lock.writeLock().lock();
+        try {
+            households.clear();
+            productNames.clear();
+            categories.clear();
+            subCategories.clear();
+            catalogProducts.clear();
+            supermarkets.clear();
+            size = 0;
+            removedCount = 0;
+            removed.clear();
+            maxItemId = Long.MIN_VALUE;
+            allocate(INITIAL_CAPACITY);
+            snapshotRepository.forEach(this::append);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        rebuildTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+    }
+
+    // Só depois do commit, igual ao índice de busca e às estatísticas de preço
+    @TransactionalEventListener
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            // Tira a versão antiga e também qualquer cópia de um item "novo" que já esteja aqui (visto pela montagem).
+            // Itens novos têm ids da sequence acima de todos os guardados: no caso normal não entram na busca
+            List<ItemSnapshot> replaced = new ArrayList<>(event.removed());
+            for (ItemSnapshot item : event.added()) {
+                if (item.itemId() != null && item.itemId() <= maxItemId) {
+                    replaced.add(item);
+                }
+            }
+            remove(replaced);
+            event.added().forEach(this::append);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size - removedCount;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public Query query() {
+        return new Query();
+    }
+
+    // ==========================================
+    // ESCRITA (sempre com o write lock)
+    // ==========================================
+
+    private void append(ItemSnapshot item) {
+        if (size == itemIds.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        itemIds[row] = item.itemId() != null ? item.itemId() : 0L;
+        maxItemId = Math.max(maxItemId, itemIds[row]);
+        householdCodes[row] = households.encode(item.householdId());
+        productNameCodes[row] = productNames.encode(item.productName());
+        categoryCodes[row] = categories.encode(item.category());
+        subCategoryCodes[row] = subCategories.encode(item.subCategory());
+        catalogProductCodes[row] = catalogProducts.encode(item.catalogProductId());
+        supermarketCodes[row] = supermarkets.encode(item.supermarketName());
+        LocalDateTime date = item.date();
+        epochDays[row] = date != null ? (int) date.toLocalDate().toEpochDay() : NO_DAY;
+        secondsOfDay[row] = date != null ? date.toLocalTime().toSecondOfDay() : 0;
+        quantities[row] = orNaN(item.quantity());
+        unitPrices[row] = orNaN(item.unitPrice());
+        totalPrices[row] = orNaN(item.totalPrice());
+    }
+
+    // Uma passada pelos ids (sem índice id -> linha, que custaria mais memória que as colunas)
+    private void remove(List<ItemSnapshot> items) {
+        long[] ids = items.stream().map(ItemSnapshot::itemId).filter(Objects::nonNull)
+                .mapToLong(Long::longValue).distinct().sorted().toArray();
+        int pending = ids.length;
+        for (int row = 0; row < size && pending > 0; row++) {
+            if (!removed.get(row) && Arrays.binarySearch(ids, itemIds[row]) >= 0) {
+                removed.set(row);
+                removedCount++;
+                pending--;
+            }
+        }
+        if (removedCount > INITIAL_CAPACITY && removedCount > size / 4) {
+            compact();
+        }
+    }
+
+    // Empurra as linhas vivas para o começo, na mesma ordem
+    private void compact() {
+        int live = 0;
+        for (int row = 0; row < size; row++) {
+            if (removed.get(row)) {
+                continue;
+            }
+            if (live != row) {
+                itemIds[live] = itemIds[row];
+                householdCodes[live] = householdCodes[row];
+                productNameCodes[live] = productNameCodes[row];
+                categoryCodes[live] = categoryCodes[row];
+                subCategoryCodes[live] = subCategoryCodes[row];
+                catalogProductCodes[live] = catalogProductCodes[row];
+                supermarketCodes[live] = supermarketCodes[row];
+                epochDays[live] = epochDays[row];
+                secondsOfDay[live] = secondsOfDay[row];
+                quantities[live] = quantities[row];
+                unitPrices[live] = unitPrices[row];
+                totalPrices[live] = totalPrices[row];
+            }
+            live++;
+        }
+        size = live;
+        removedCount = 0;
+        removed.clear();
+    }
+
+    private void allocate(int capacity) {
+        itemIds = new long[capacity];
+        householdCodes = new int[capacity];
+        productNameCodes = new int[capacity];
+        categoryCodes = new int[capacity];
+        subCategoryCodes = new int[capacity];
+        catalogProductCodes = new int[capacity];
+        supermarketCodes = new int[capacity];
+        epochDays = new int[capacity];
+        secondsOfDay = new int[capacity];
+        quantities = new double[capacity];
+        unitPrices = new double[capacity];
+        totalPrices = new double[capacity];
+    }
+
+    private void grow(int capacity) {
+        itemIds = Arrays.copyOf(itemIds, capacity);
+        householdCodes = Arrays.copyOf(householdCodes, capacity);
+        productNameCodes = Arrays.copyOf(productNameCodes, capacity);
+        categoryCodes = Arrays.copyOf(categoryCodes, capacity);
+        subCategoryCodes = Arrays.copyOf(subCategoryCodes, capacity);
+        catalogProductCodes = Arrays.copyOf(catalogProductCodes, capacity);
+        supermarketCodes = Arrays.copyOf(supermarketCodes, capacity);
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        secondsOfDay = Arrays.copyOf(secondsOfDay, capacity);
+        quantities = Arrays.copyOf(quantities, capacity);
+        unitPrices = Arrays.copyOf(unitPrices, capacity);
+        totalPrices = Arrays.copyOf(totalPrices, capacity);
+    }
+
+    private static double orNaN(Double value) {
+        return value != null ? value : Double.NaN;
+    }
+
+    private static Double orNull(double value) {
+        return Double.isNaN(value) ? null : value;
+    }
+
+    // ==========================================
+    // CONSULTAS
+    // ==========================================
+
+    /**
+     * Consulta sobre o retrato: filtros encadeados (todos opcionais, combinados com E) e uma operação final.
+     * Textos são comparados sem acentos nem maiúsculas (TextNormalizer.fold), como as colunas *_norm do banco.
+     * Ex: store.query().catalogProduct(3L).between(inicio, fim).dailyPrices()
+     */
+    public final class Query {
+
+        private Long householdId;
+        private boolean filterHousehold;
+        private Long catalogProductId;
+        private boolean filterCatalogProduct;
+        private String productNameContains;
+        private String subCategory;
+        private Set<String> categoryNames;
+        private LocalDate from;
+        private LocalDate to;
+
+        private Query() {}
+
+        public Query household(Long householdId) {
+            this.householdId = householdId;
+            this.filterHousehold = true;
+            return this;
+        }
+
+        public Query catalogProduct(Long catalogProductId) {
+            this.catalogProductId = catalogProductId;
+            this.filterCatalogProduct = true;
+            return this;
+        }
+
+        // Mesma regra do LIKE '%texto%' nas buscas por nome
+        public Query productNameContains(String text) {
+            this.productNameContains = TextNormalizer.fold(text);
+            return this;
+        }
+
+        public Query subCategory(String subCategory) {
+            this.subCategory = TextNormalizer.fold(subCategory);
+            return this;
+        }
+
+        public Query categories(Collection<String> names) {
+            this.categoryNames = new HashSet<>();
+            names.forEach(name -> categoryNames.add(TextNormalizer.fold(name)));
+            return this;
+        }
+
+        // Datas inclusivas; null deixa o lado aberto
+        public Query between(LocalDate from, LocalDate to) {
+            this.from = from;
+            this.to = to;
+            return this;
+        }
+
+        // Pontos "crus" (1 por item), ordenados por data como o ORDER BY r.date (sem data primeiro)
+        public List<PricePoint> pricePoints() {
+            lock.readLock().lock();
+            try {
+                Filter filter = compile();
+                int[] selection = new int[BLOCK];
+                List<PricePoint> points = new ArrayList<>();
+                for (int start = 0; start < size; start += BLOCK) {
+                    int count = filter.select(start, selection);
+                    for (int i = 0; i < count; i++) {
+                        int row = selection[i];
+                        points.add(new Point(itemIds[row], productNames.decode(productNameCodes[row]), orNull(unitPrices[row]),
+                                dateOf(row), supermarkets.decode(supermarketCodes[row])));
+                    }
+                }
+                points.sort(Comparator.comparing(PricePoint::getDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+                return points;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Preços agregados por dia + mercado (mín/máx/soma/contagem), ordenados por dia e mercado
+        public List<DailyPriceAggregate> dailyPrices() {
+            lock.readLock().lock();
+            try {
+                Filter filter = compile();
+                int[] selection = new int[BLOCK];
+                Map<Long, DayAccumulator> byDayAndMarket = new HashMap<>();
+                for (int start = 0; start < size; start += BLOCK) {
+                    int count = filter.select(start, selection);
+                    for (int i = 0; i < count; i++) {
+                        int row = selection[i];
+                        if (epochDays[row] != NO_DAY && !Double.isNaN(unitPrices[row])) {
+                            long key = ((long) epochDays[row] << 32) | (supermarketCodes[row] & 0xFFFFFFFFL);
+                            byDayAndMarket.computeIfAbsent(key, k -> new DayAccumulator()).add(unitPrices[row]);
+                        }
+                    }
+                }
+                List<DailyPriceAggregate> days = new ArrayList<>(byDayAndMarket.size());
+                byDayAndMarket.forEach((key, acc) -> days.add(new Day(LocalDate.ofEpochDay(key >> 32),
+                        supermarkets.decode((int) (long) key), acc.minPrice, acc.maxPrice, acc.priceSum, acc.priceCount)));
+                days.sort(Comparator.comparing(DailyPriceAggregate::getDay)
+                        .thenComparing(DailyPriceAggregate::getSupermarket, Comparator.nullsFirst(Comparator.naturalOrder())));
+                return days;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Agregados por dimensão (contagem, preços, quantidade e total gasto), na ordem em que os valores apareceram.
+        // Os acumuladores também são colunas, indexadas pelo código do dicionário: sem hash nem objeto por linha
+        public List<Group> groupBy(Dimension dimension) {
+            lock.readLock().lock();
+            try {
+                Filter filter = compile();
+                int[] codes = codesOf(dimension);
+                ValueDictionary<String> dictionary = dictionaryOf(dimension);
+                int slots = dictionary.size() + 1; // [0] = valor nulo
+                long[] itemCounts = new long[slots];
+                long[] priceCounts = new long[slots];
+                double[] priceSums = new double[slots];
+                double[] minPrices = new double[slots];
+                double[] maxPrices = new double[slots];
+                double[] quantitySums = new double[slots];
+                double[] totalsSpent = new double[slots];
+                Arrays.fill(minPrices, Double.MAX_VALUE);
+                Arrays.fill(maxPrices, -Double.MAX_VALUE);
+
+                int[] selection = new int[BLOCK];
+                for (int start = 0; start < size; start += BLOCK) {
+                    int count = filter.select(start, selection);
+                    for (int i = 0; i < count; i++) {
+                        int row = selection[i];
+                        int slot = codes[row] + 1;
+                        itemCounts[slot]++;
+                        double price = unitPrices[row];
+                        if (!Double.isNaN(price)) {
+                            priceCounts[slot]++;
+                            priceSums[slot] += price;
+                            if (price < minPrices[slot]) minPrices[slot] = price;
+                            if (price > maxPrices[slot]) maxPrices[slot] = price;
+                        }
+                        if (!Double.isNaN(quantities[row])) quantitySums[slot] += quantities[row];
+                        if (!Double.isNaN(totalPrices[row])) totalsSpent[slot] += totalPrices[row];
+                    }
+                }
+
+                List<Group> groups = new ArrayList<>();
+                for (int slot = 0; slot < slots; slot++) {
+                    if (itemCounts[slot] > 0) {
+                        boolean priced = priceCounts[slot] > 0;
+                        groups.add(new Group(dictionary.decode(slot - 1), itemCounts[slot], priceCounts[slot], priceSums[slot],
+                                priced ? minPrices[slot] : null, priced ? maxPrices[slot] : null,
+                                quantitySums[slot], totalsSpent[slot]));
+                    }
+                }
+                return groups;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Nomes de produto distintos, na ordem em que apareceram
+        public List<String> distinctProductNames() {
+            lock.readLock().lock();
+            try {
+                Filter filter = compile();
+                int[] selection = new int[BLOCK];
+                boolean[] seen = new boolean[productNames.size()];
+                List<String> names = new ArrayList<>();
+                for (int start = 0; start < size; start += BLOCK) {
+                    int count = filter.select(start, selection);
+                    for (int i = 0; i < count; i++) {
+                        int code = productNameCodes[selection[i]];
+                        if (code != ValueDictionary.NULL_CODE && !seen[code]) {
+                            seen[code] = true;
+                            names.add(productNames.decode(code));
+                        }
+                    }
+                }
+                return names;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        public long count() {
+            lock.readLock().lock();
+            try {
+                Filter filter = compile();
+                int[] selection = new int[BLOCK];
+                long total = 0;
+                for (int start = 0; start < size; start += BLOCK) {
+                    total += filter.select(start, selection);
+                }
+                return total;
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        // Traduz os filtros para códigos e máscaras dos dicionários (chamado já com o read lock)
+        private Filter compile() {
+            Filter filter = new Filter();
+            filter.household = filterHousehold ? households.find(householdId) : ANY;
+            filter.catalogProduct = filterCatalogProduct ? catalogProducts.find(catalogProductId) : ANY;
+            // Valor pedido que nunca apareceu: nenhuma linha casa (NULL_CODE só casa se o filtro foi por null)
+            filter.empty = (filterHousehold && householdId != null && filter.household == ValueDictionary.NULL_CODE)
+                    || (filterCatalogProduct && catalogProductId != null && filter.catalogProduct == ValueDictionary.NULL_CODE);
+            if (productNameContains != null) {
+                filter.productNameMask = mask(productNames, value -> TextNormalizer.fold(value).contains(productNameContains));
+            }
+            if (subCategory != null) {
+                filter.subCategoryMask = mask(subCategories, value -> TextNormalizer.fold(value).equals(subCategory));
+            }
+            if (categoryNames != null) {
+                filter.categoryMask = mask(categories, value -> categoryNames.contains(TextNormalizer.fold(value)));
+            }
+            filter.anyRemoved = removedCount > 0;
+            filter.fromDay = from != null ? (int) from.toEpochDay() : NO_DAY;
+            filter.toDay = to != null ? (int) to.toEpochDay() : Integer.MAX_VALUE;
+            return filter;
+        }
+    }
+
+    private static boolean[] mask(ValueDictionary<String> dictionary, Predicate<String> test) {
+        boolean[] mask = new boolean[dictionary.size()];
+        for (int code = 0; code < mask.length; code++) {
+            mask[code] = test.test(dictionary.decode(code));
+        }
+        return mask;
+    }
+
+    private int[] codesOf(Dimension dimension) {
+        return switch (dimension) {
+            case PRODUCT_NAME -> productNameCodes;
+            case CATEGORY -> categoryCodes;
+            case SUB_CATEGORY -> subCategoryCodes;
+            case SUPERMARKET -> supermarketCodes;
+        };
+    }
+
+    private ValueDictionary<String> dictionaryOf(Dimension dimension) {
+        return switch (dimension) {
+            case PRODUCT_NAME -> productNames;
+            case CATEGORY -> categories;
+            case SUB_CATEGORY -> subCategories;
+            case SUPERMARKET -> supermarkets;
+        };
+    }
+
+    private LocalDateTime dateOf(int row) {
+        if (epochDays[row] == NO_DAY) {
+            return null;
+        }
+        return LocalDateTime.of(LocalDate.ofEpochDay(epochDays[row]), LocalTime.ofSecondOfDay(secondsOfDay[row]));
+    }
+
+    // Filtros já traduzidos para códigos e máscaras dos dicionários
+    private final class Filter {
+        private int household;
+        private int catalogProduct;
+        private boolean empty;
+        private boolean anyRemoved;
+        private boolean[] productNameMask;
+        private boolean[] subCategoryMask;
+        private boolean[] categoryMask;
+        private int fromDay;
+        private int toDay;
+
+        // Linhas do bloco [start, start + BLOCK) que passam em todos os filtros, em ordem, gravadas em selection.
+        // Avalia uma coluna por vez: cada filtro é um laço curto sobre um array primitivo e só olha as linhas
+        // que passaram nos anteriores (vetor de seleção)
+        private int select(int start, int[] selection) {
+            if (empty) {
+                return 0;
+            }
+            int end = Math.min(size, start + BLOCK);
+            int count = 0;
+            for (int row = start; row < end; row++) {
+                selection[count++] = row;
+            }
+            if (anyRemoved) count = keepLive(selection, count);
+            if (household != ANY) count = keepEqual(selection, count, householdCodes, household);
+            if (catalogProduct != ANY) count = keepEqual(selection, count, catalogProductCodes, catalogProduct);
+            if (productNameMask != null) count = keepInMask(selection, count, productNameCodes, productNameMask);
+            if (subCategoryMask != null) count = keepInMask(selection, count, subCategoryCodes, subCategoryMask);
+            if (categoryMask != null) count = keepInMask(selection, count, categoryCodes, categoryMask);
+            if (fromDay != NO_DAY || toDay != Integer.MAX_VALUE) count = keepDays(selection, count, epochDays, fromDay, toDay);
+            return count;
+        }
+
+        private int keepLive(int[] selection, int count) {
+            int kept = 0;
+            for (int i = 0; i < count; i++) {
+                int row = selection[i];
+                if (!removed.get(row)) selection[kept++] = row;
+            }
+            return kept;
+        }
+    }
+
+    private static int keepEqual(int[] selection, int count, int[] column, int code) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            if (column[row] == code) selection[kept++] = row;
+        }
+        return kept;
+    }
+
+    private static int keepInMask(int[] selection, int count, int[] column, boolean[] mask) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            int code = column[row];
+            if (code != ValueDictionary.NULL_CODE && mask[code]) selection[kept++] = row;
+        }
+        return kept;
+    }
+
+    // Linhas sem data (NO_DAY) nunca passam num filtro por data
+    private static int keepDays(int[] selection, int count, int[] days, int fromDay, int toDay) {
+        int kept = 0;
+        for (int i = 0; i < count; i++) {
+            int row = selection[i];
+            int day = days[row];
+            if (day != NO_DAY && day >= fromDay && day <= toDay) selection[kept++] = row;
+        }
+        return kept;
+    }
+
+    // Mín/máx/soma/contagem dos preços de um dia + mercado
+    private static final class DayAccumulator {
+        private double minPrice = Double.MAX_VALUE;
+        private double maxPrice = -Double.MAX_VALUE;
+        private double priceSum;
+        private long priceCount;
+
+        private void add(double price) {
+            minPrice = Math.min(minPrice, price);
+            maxPrice = Math.max(maxPrice, price);
+            priceSum += price;
+            priceCount++;
+        }
+    }
+
+    // Um grupo do groupBy: valor da dimensão (null = itens sem o campo) e os agregados
+    public record Group(
+            String key,
+            long itemCount,
+            long priceCount,
+            double priceSum,
+            Double minPrice,
+            Double maxPrice,
+            double quantitySum,
+            double totalSpent
+    ) {
+        public Double averagePrice() {
+            return priceCount == 0 ? null : priceSum / priceCount;
+        }
+    }
+
+    // Mesmas projeções das consultas do ProductItemRepository, para os serviços trocarem uma fonte pela outra
+    // As mesmas projeções que as consultas do banco devolviam, para os consumidores não mudarem
+    private static final class Point implements PricePoint {
+
+        private final Long id;
+        private final String productName;
+        private final Double price;
+        private final LocalDateTime date;
+        private final String supermarket;
+
+        Point(Long id, String productName, Double price, LocalDateTime date, String supermarket) {
+            this.id = id;
+            this.productName = productName;
+            this.price = price;
+            this.date = date;
+            this.supermarket = supermarket;
+        }
+
+        @Override public Long getId() { return id; }
+        @Override public String getProductName() { return productName; }
+        @Override public Double getPrice() { return price; }
+        @Override public LocalDateTime getDate() { return date; }
+        @Override public String getSupermarket() { return supermarket; }
+    }
+
+    private static final class Day implements DailyPriceAggregate {
+
+        private final LocalDate day;
+        private final String supermarket;
+        private final Double minPrice;
+        private final Double maxPrice;
+        private final Double priceSum;
+        private final Long priceCount;
+
+        Day(LocalDate day, String supermarket, Double minPrice, Double maxPrice, Double priceSum, Long priceCount) {
+            this.day = day;
+            this.supermarket = supermarket;
+            this.minPrice = minPrice;
+            this.maxPrice = maxPrice;
+            this.priceSum = priceSum;
+            this.priceCount = priceCount;
+        }
+
+        @Override public LocalDate getDay() { return day; }
+        @Override public String getSupermarket() { return supermarket; }
+        @Override public Double getMinPrice() { return minPrice; }
+        @Override public Double getMaxPrice() { return maxPrice; }
+        @Override public Double getPriceSum() { return priceSum; }
+        @Override public Long getPriceCount() { return priceCount; }
+    }
+}
@@ -0,0 +1,247 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import com.techchallenge.marketlens.repository.ProductItemRepository;
+import com.techchallenge.marketlens.repository.projection.TermFrequency;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Índice em memória para o autocomplete de produtos e subcategorias.
+ *
+ * Cada termo distinto (nome de produto ou subcategoria, sem acento/maiúsculas) é quebrado em trigramas
+ * ("leite" -> "lei", "eit", "ite"). Uma busca só precisa cruzar as listas dos trigramas do texto digitado,
+ * em vez do LIKE '%texto%' em 3 colunas que varria a tabela inteira a cada tecla.
+ *
+ * É montado na inicialização (1 query agrupada) e atualizado incrementalmente pelo ReceiptChangedEvent.
+ * Cada família tem o seu índice (só encontra o que ela mesma comprou) e os resultados são ordenados pela
+ * frequência de compra dela.
+ */
+@Service
+public class ProductSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ProductSearchIndex.class);
+
+    private static final int GRAM = 3;
+
+    // Os nomes batem com o "type" que o frontend já usa no search-smart
+    public enum TermType { CATEGORIA, PRODUTO }
+
+    private final ProductItemRepository itemRepository;
+    private final Map<TermType, Timer> searchTimers = new EnumMap<>(TermType.class);
+
+    private final Map<Long, Index> byHousehold = new HashMap<>();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public ProductSearchIndex(ProductItemRepository itemRepository, MeterRegistry meterRegistry) {
+        this.itemRepository = itemRepository;
+        for (TermType type : TermType.values()) {
+            searchTimers.put(type, Timer.builder("marketlens.search")
+                .description("Latência das buscas no índice de autocomplete")
+                .tag("type", type.name())
+                .publishPercentileHistogram()
+                .register(meterRegistry));
+        }
+        Gauge.builder("marketlens.search.terms", this, ProductSearchIndex::size)
+            .description("Termos no índice de autocomplete (somando todas as famílias)")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<TermFrequency> products = itemRepository.findProductNameFrequencies();
+        List<TermFrequency> subCategories = itemRepository.findSubCategoryFrequencies();
+
+        lock.writeLock().lock();
+        try {
+            byHousehold.clear();
+            products.forEach(t -> add(t.getHouseholdId(), TermType.PRODUTO, t.getName(), t.getFrequency()));
+            subCategories.forEach(t -> add(t.getHouseholdId(), TermType.CATEGORIA, t.getName(), t.getFrequency()));
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("Índice de busca montado: {} termos.", size());
+    }
+
+    // Só depois do commit: se a transação falhar, o índice não fica com dados que não existem no banco
+    @TransactionalEventListener
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        lock.writeLock().lock();
+        try {
+            for (ReceiptChangedEvent.ItemSnapshot item : event.removed()) {
+                add(item.householdId(), TermType.PRODUTO, item.productName(), -1);
+                add(item.householdId(), TermType.CATEGORIA, item.subCategory(), -1);
+            }
+            for (ReceiptChangedEvent.ItemSnapshot item : event.added()) {
+                add(item.householdId(), TermType.PRODUTO, item.productName(), 1);
+                add(item.householdId(), TermType.CATEGORIA, item.subCategory(), 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // Top-k termos da família que contêm o texto buscado, dos mais comprados para os menos comprados
+    public List<SearchHit> search(Long householdId, String text, TermType type, int limit) {
+        return searchTimers.get(type).record(() -> doSearch(householdId, text, type, limit));
+    }
+
+    private List<SearchHit> doSearch(Long householdId, String text, TermType type, int limit) {
+        String query = TextNormalizer.fold(text);
+        if (query.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Index index = byHousehold.get(householdId);
+            if (index == null) {
+                return List.of();
+            }
+            List<SearchHit> hits = new ArrayList<>();
+            for (Term term : index.candidates(query)) {
+                if (term.type == type && term.key.contains(query)) {
+                    hits.add(new SearchHit(term.displayName, term.type, term.frequency));
+                }
+            }
+            hits.sort(Comparator.comparingLong(SearchHit::frequency).reversed().thenComparing(SearchHit::name));
+            return hits.size() > limit ? List.copyOf(hits.subList(0, limit)) : hits;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Soma (ou subtrai) a frequência de um termo; termos que chegam a zero saem do índice
+    private void add(Long householdId, TermType type, String name, long delta) {
+        String key = TextNormalizer.fold(name);
+        if (key.isEmpty()) {
+            return;
+        }
+
+        Index index = byHousehold.get(householdId);
+        if (index == null) {
+            if (delta <= 0) {
+                return;
+            }
+            index = new Index();
+            byHousehold.put(householdId, index);
+        }
+        index.add(type, key, name, delta);
+        if (index.termsByKey.isEmpty()) {
+            byHousehold.remove(householdId);
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byHousehold.values().stream().mapToInt(index -> index.termsByKey.size()).sum();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static Set<String> grams(String key) {
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= key.length(); i++) {
+            grams.add(key.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    // Índice de uma família: termos distintos e, para cada trigrama, os termos que o contêm
+    private static final class Index {
+        private final Map<String, Term> termsByKey = new HashMap<>();
+        private final Map<String, Set<Term>> postings = new HashMap<>();
+
+        // Termos que possuem TODOS os trigramas da busca (buscas com menos de 3 letras olham todos os termos)
+        private Collection<Term> candidates(String query) {
+            if (query.length() < GRAM) {
+                return termsByKey.values();
+            }
+
+            List<Set<Term>> lists = new ArrayList<>();
+            for (String gram : grams(query)) {
+                Set<Term> list = postings.get(gram);
+                if (list == null) {
+                    return List.of(); // Algum trigrama não existe em nenhum termo: nada bate
+                }
+                lists.add(list);
+            }
+
+            // Começa pela menor lista para a interseção ser a mais barata possível
+            lists.sort(Comparator.comparingInt(Set::size));
+            Set<Term> result = new HashSet<>(lists.get(0));
+            for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+                result.retainAll(lists.get(i));
+            }
+            return result;
+        }
+
+        private void add(TermType type, String key, String name, long delta) {
+            String mapKey = type + ":" + key;
+            Term term = termsByKey.get(mapKey);
+
+            if (term == null) {
+                if (delta <= 0) {
+                    return;
+                }
+                term = new Term(type, key, name.trim());
+                termsByKey.put(mapKey, term);
+                for (String gram : grams(key)) {
+                    postings.computeIfAbsent(gram, g -> new HashSet<>()).add(term);
+                }
+            }
+
+            term.frequency += delta;
+
+            if (term.frequency <= 0) {
+                termsByKey.remove(mapKey);
+                for (String gram : grams(key)) {
+                    Set<Term> list = postings.get(gram);
+                    if (list != null) {
+                        list.remove(term);
+                        if (list.isEmpty()) {
+                            postings.remove(gram);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    private static final class Term {
+        private final TermType type;
+        private final String key;          // Texto normalizado (sem acento/maiúsculas)
+        private final String displayName;  // Como aparece para o usuário
+        private long frequency;            // Quantos itens comprados usam esse termo
+
+        private Term(TermType type, String key, String displayName) {
+            this.type = type;
+            this.key = key;
+            this.displayName = displayName;
+        }
+    }
+
+    public record SearchHit(String name, TermType type, long frequency) {}
+}
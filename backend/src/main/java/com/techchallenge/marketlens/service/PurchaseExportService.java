@@ -0,0 +1,195 @@
+package com.techchallenge.marketlens.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.techchallenge.marketlens.repository.PurchaseExportRepository;
+import com.techchallenge.marketlens.repository.PurchaseExportRepository.PurchaseRow;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportação do histórico de compras da família em CSV (uma linha por item, para planilhas) ou NDJSON (uma nota
+ * por linha, no mesmo formato aceito pelo POST /api/receipts/import).
+ *
+ * Cada linha lida do cursor (PurchaseExportRepository) é escrita direto na resposta, então a memória fica
+ * constante para qualquer tamanho de histórico. A leitura roda numa transação somente leitura: alguns bancos
+ * (ex: PostgreSQL) só respeitam o fetch size com o autocommit desligado.
+ */
+@Service
+public class PurchaseExportService {
+
+    public enum Format {
+        CSV("text/csv", "csv"),
+        NDJSON("application/x-ndjson", "ndjson");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() { return contentType; }
+        public String extension() { return extension; }
+    }
+
+    static final String CSV_HEADER = "receipt_id,date,supermarket,receipt_total,item_id,product_name,category,"
+            + "sub_category,quantity,unit,unit_price,total_price";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PurchaseExportRepository exportRepository;
+    private final TransactionTemplate readOnlyTransaction;
+
+    public PurchaseExportService(PurchaseExportRepository exportRepository, PlatformTransactionManager transactionManager) {
+        this.exportRepository = exportRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    // Datas inclusivas, como na listagem paginada (/api/receipts/page)
+    public void export(Long householdId, LocalDate from, LocalDate to, Format format, boolean gzip, OutputStream output)
+            throws IOException {
+        LocalDateTime start = from != null ? from.atStartOfDay() : null;
+        LocalDateTime end = to != null ? to.plusDays(1).atStartOfDay() : null;
+
+        OutputStream target = gzip ? new GZIPOutputStream(output, BUFFER_SIZE) : output;
+        try (RowWriter writer = format == Format.CSV ? new CsvWriter(target) : new NdjsonWriter(target)) {
+            readOnlyTransaction.executeWithoutResult(status -> exportRepository.forEach(householdId, start, end, writer::write));
+        }
+    }
+
+    private interface RowWriter extends AutoCloseable {
+        void write(PurchaseRow row) throws IOException;
+
+        @Override
+        void close() throws IOException;
+    }
+
+    // RFC 4180: vírgula como separador; campos com vírgula, aspas ou quebra de linha vão entre aspas
+    private static final class CsvWriter implements RowWriter {
+        private final Writer out;
+
+        private CsvWriter(OutputStream output) throws IOException {
+            this.out = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8), BUFFER_SIZE);
+            out.write(CSV_HEADER);
+            out.write("\r\n");
+        }
+
+        @Override
+        public void write(PurchaseRow row) throws IOException {
+            out.write(Long.toString(row.receiptId()));
+            field(row.date() != null ? row.date().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null);
+            field(row.supermarketName());
+            field(row.totalAmount());
+            field(row.itemId());
+            field(row.productName());
+            field(row.category());
+            field(row.subCategory());
+            field(row.quantity());
+            field(row.unit());
+            field(row.unitPrice());
+            field(row.totalPrice());
+            out.write("\r\n");
+        }
+
+        private void field(Object value) throws IOException {
+            out.write(',');
+            if (value == null) {
+                return;
+            }
+            String text = value.toString();
+            if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+                out.write(text);
+                return;
+            }
+            out.write('"');
+            out.write(text.replace("\"", "\"\""));
+            out.write('"');
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+
+    // Uma nota por linha: as linhas do cursor chegam agrupadas por nota, então basta fechar o objeto
+    // quando o id da nota muda
+    private static final class NdjsonWriter implements RowWriter {
+        private final JsonGenerator json;
+        private Long currentReceiptId;
+
+        private NdjsonWriter(OutputStream output) throws IOException {
+            this.json = JSON.createGenerator(output, JsonEncoding.UTF8);
+            json.setRootValueSeparator(null); // O separador entre as notas é a quebra de linha, escrita à mão
+        }
+
+        @Override
+        public void write(PurchaseRow row) throws IOException {
+            if (currentReceiptId == null || currentReceiptId != row.receiptId()) {
+                endReceipt();
+                currentReceiptId = row.receiptId();
+                json.writeStartObject();
+                json.writeNumberField("id", row.receiptId());
+                json.writeStringField("supermarketName", row.supermarketName());
+                json.writeStringField("date", row.date() != null ? row.date().format(DateTimeFormatter.ISO_LOCAL_DATE_TIME) : null);
+                writeNumber("totalAmount", row.totalAmount());
+                json.writeArrayFieldStart("items");
+            }
+            if (row.itemId() == null) {
+                return;
+            }
+            json.writeStartObject();
+            json.writeNumberField("id", row.itemId());
+            json.writeStringField("productName", row.productName());
+            json.writeStringField("category", row.category());
+            json.writeStringField("subCategory", row.subCategory());
+            writeNumber("quantity", row.quantity());
+            json.writeStringField("unit", row.unit());
+            writeNumber("unitPrice", row.unitPrice());
+            writeNumber("totalPrice", row.totalPrice());
+            json.writeEndObject();
+        }
+
+        private void writeNumber(String field, Double value) throws IOException {
+            if (value == null) {
+                json.writeNullField(field);
+            } else {
+                json.writeNumberField(field, value);
+            }
+        }
+
+        private void endReceipt() throws IOException {
+            if (currentReceiptId != null) {
+                json.writeEndArray();
+                json.writeEndObject();
+                json.writeRaw('\n');
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                endReceipt();
+            } finally {
+                json.close(); // Fecha também o stream (e termina o gzip)
+            }
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.techchallenge.marketlens.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
+import javax.imageio.stream.ImageOutputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Prepara a foto da nota antes de ir para o Gemini.
+ *
+ * Fotos de celular chegam com 3-8 MB, mas para ler o texto de um cupom basta bem menos:
+ * a imagem é reduzida até "max-dimension" no maior lado, convertida para tons de cinza e regravada
+ * como JPEG na qualidade configurada. O formato real é detectado pelos primeiros bytes (a extensão e o
+ * Content-Type do upload não são confiáveis), e o mime type enviado ao Gemini passa a ser o verdadeiro.
+ *
+ * Formatos que o Java não decodifica (WEBP, HEIC) seguem sem alteração, com o mime type correto.
+ */
+@Service
+public class ReceiptImagePreprocessor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReceiptImagePreprocessor.class);
+
+    private static final String JPEG = "image/jpeg";
+
+    private final boolean enabled;
+    private final int maxDimension;
+    private final float jpegQuality;
+
+    private final DistributionSummary originalSize;
+    private final DistributionSummary sentSize;
+    private final DistributionSummary reduction;
+    private final Counter bytesSaved;
+
+    public ReceiptImagePreprocessor(@Value("${receipts.preprocess.enabled:true}") boolean enabled,
+                                    @Value("${receipts.preprocess.max-dimension:2000}") int maxDimension,
+                                    @Value("${receipts.preprocess.jpeg-quality:0.85}") float jpegQuality,
+                                    MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxDimension = Math.max(1, maxDimension);
+        this.jpegQuality = Math.min(1.0f, Math.max(0.1f, jpegQuality));
+
+        this.originalSize = DistributionSummary.builder("marketlens.image.original.size")
+            .description("Tamanho da foto recebida")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.sentSize = DistributionSummary.builder("marketlens.image.sent.size")
+            .description("Tamanho da imagem enviada ao Gemini depois do pré-processamento")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        this.reduction = DistributionSummary.builder("marketlens.image.reduction")
+            .description("Quanto o pré-processamento reduziu cada foto (0 = enviada como chegou)")
+            .baseUnit("percent")
+            .register(meterRegistry);
+        this.bytesSaved = Counter.builder("marketlens.image.bytes.saved")
+            .description("Bytes economizados no envio ao Gemini pelo pré-processamento")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    // Identifica as configurações que mudam a imagem enviada: entra na chave do cache de extrações
+    public String getVersion() {
+        return enabled ? "p" + maxDimension + "q" + Math.round(jpegQuality * 100) : "raw";
+    }
+
+    /**
+     * Devolve a imagem a ser enviada. Quando o resultado é um arquivo novo, ele é apagado no close();
+     * o arquivo original nunca é alterado.
+     */
+    public PreparedImage prepare(Path original) throws IOException {
+        long originalBytes = Files.size(original);
+        String mimeType = detectMimeType(original);
+
+        PreparedImage prepared = enabled && isDecodable(mimeType)
+                ? shrink(original, originalBytes, mimeType)
+                : unchanged(original, originalBytes, mimeType);
+
+        originalSize.record(prepared.originalBytes());
+        sentSize.record(prepared.sentBytes());
+        bytesSaved.increment(prepared.originalBytes() - prepared.sentBytes());
+        if (prepared.originalBytes() > 0) {
+            reduction.record(100.0 * (prepared.originalBytes() - prepared.sentBytes()) / prepared.originalBytes());
+        }
+        log.debug("Imagem {}: {} KB -> {} KB ({})", mimeType, prepared.originalBytes() / 1024,
+                prepared.sentBytes() / 1024, prepared.temporary() ? "reduzida" : "sem alteração");
+        return prepared;
+    }
+
+    // Formato pelos "magic bytes" do início do arquivo
+    static String detectMimeType(Path file) throws IOException {
+        byte[] header = new byte[16];
+        int read;
+        try (InputStream in = Files.newInputStream(file)) {
+            read = in.readNBytes(header, 0, header.length);
+        }
+        byte[] h = Arrays.copyOf(header, read);
+
+        if (startsWith(h, 0, 0xFF, 0xD8, 0xFF)) return JPEG;
+        if (startsWith(h, 0, 0x89, 'P', 'N', 'G')) return "image/png";
+        if (startsWith(h, 0, 'G', 'I', 'F', '8')) return "image/gif";
+        if (startsWith(h, 0, 'B', 'M')) return "image/bmp";
+        if (startsWith(h, 0, 'R', 'I', 'F', 'F') && startsWith(h, 8, 'W', 'E', 'B', 'P')) return "image/webp";
+        // HEIC/HEIF: caixa "ftyp" no byte 4 seguida da marca
+        if (startsWith(h, 4, 'f', 't', 'y', 'p') && h.length >= 12) {
+            String brand = new String(h, 8, 4, StandardCharsets.US_ASCII);
+            if (brand.startsWith("hei") || brand.startsWith("hev")) return "image/heic";
+            if (brand.equals("mif1") || brand.equals("msf1")) return "image/heif";
+        }
+        throw new IllegalArgumentException("Formato de imagem não suportado. Envie JPEG, PNG, WEBP ou HEIC.");
+    }
+
+    private static boolean isDecodable(String mimeType) {
+        return !mimeType.equals("image/webp") && !mimeType.equals("image/heic") && !mimeType.equals("image/heif");
+    }
+
+    private PreparedImage shrink(Path original, long originalBytes, String mimeType) throws IOException {
+        BufferedImage decoded;
+        try {
+            decoded = decodeSubsampled(original);
+        } catch (IOException | RuntimeException e) {
+            // Ex.: JPEG CMYK, que o ImageIO não lê. O Gemini aceita a foto original
+            log.warn("Não foi possível reduzir a imagem ({}); enviando a original.", e.getMessage());
+            return unchanged(original, originalBytes, mimeType);
+        }
+        if (decoded == null) {
+            return unchanged(original, originalBytes, mimeType);
+        }
+
+        BufferedImage gray = toScaledGrayscale(decoded);
+        Path output = Files.createTempFile("marketlens-prepared-", ".jpg");
+        try {
+            writeJpeg(gray, output);
+            long sentBytes = Files.size(output);
+            // Foto que já era pequena pode "crescer" ao ser regravada: nesse caso vale a original
+            if (sentBytes >= originalBytes && mimeType.equals(JPEG)) {
+                Files.deleteIfExists(output);
+                return unchanged(original, originalBytes, mimeType);
+            }
+            return new PreparedImage(output, JPEG, originalBytes, sentBytes, true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(output);
+            throw e;
+        }
+    }
+
+    // Decodifica já pulando pixels (subsampling) quando a foto é muito maior que o necessário:
+    // uma foto de 4000x3000 não precisa existir inteira no heap para virar 2000x1500
+    private BufferedImage decodeSubsampled(Path file) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(file.toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int largestSide = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = Math.max(1, largestSide / maxDimension);
+
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(step, step, 0, 0);
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private BufferedImage toScaledGrayscale(BufferedImage source) {
+        double scale = Math.min(1.0, (double) maxDimension / Math.max(source.getWidth(), source.getHeight()));
+        int width = Math.max(1, (int) Math.round(source.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(source.getHeight() * scale));
+
+        BufferedImage gray = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        Graphics2D g = gray.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(source, 0, 0, width, height, null);
+        } finally {
+            g.dispose();
+        }
+        return gray;
+    }
+
+    private void writeJpeg(BufferedImage image, Path output) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        try (ImageOutputStream out = ImageIO.createImageOutputStream(output.toFile())) {
+            writer.setOutput(out);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(jpegQuality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+    }
+
+    private static PreparedImage unchanged(Path original, long originalBytes, String mimeType) {
+        return new PreparedImage(original, mimeType, originalBytes, originalBytes, false);
+    }
+
+    private static boolean startsWith(byte[] data, int offset, int... expected) {
+        if (data.length < offset + expected.length) {
+            return false;
+        }
+        for (int i = 0; i < expected.length; i++) {
+            if ((data[offset + i] & 0xFF) != expected[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Imagem pronta para envio. temporary = arquivo criado aqui (apagado no close)
+    public record PreparedImage(Path path, String mimeType, long originalBytes, long sentBytes, boolean temporary)
+            implements AutoCloseable {
+
+        @Override
+        public void close() {
+            if (temporary) {
+                try {
+                    Files.deleteIfExists(path);
+                } catch (IOException e) {
+                    log.warn("Não foi possível apagar o arquivo temporário {}: {}", path, e.getMessage());
+                }
+            }
+        }
+    }
+}
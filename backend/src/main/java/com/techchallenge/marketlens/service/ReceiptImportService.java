@@ -0,0 +1,168 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.domain.Receipt;
+import com.techchallenge.marketlens.dto.ReceiptImportReportDTO;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Importação em lote do histórico de notas: um arquivo NDJSON (uma nota por linha, no mesmo formato
+ * JSON que a IA devolve na extração).
+ *
+ * O arquivo é lido linha a linha (nunca inteiro em memória) e gravado em blocos de "chunk-size" notas,
+ * cada bloco na sua transação. Dentro do bloco o Hibernate agrupa os INSERTs em lotes de "batch-size"
+ * (ids vêm das sequences pooled, sem ida ao banco por linha). Linhas com erro não derrubam a importação:
+ * ficam no relatório com o número da linha.
+ */
+@Service
+public class ReceiptImportService {
+
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    private final ReceiptService receiptService;
+    private final EntityManager entityManager;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chunkSize;
+    private final int batchSize;
+
+    public ReceiptImportService(ReceiptService receiptService,
+                                EntityManager entityManager,
+                                PlatformTransactionManager transactionManager,
+                                ApplicationEventPublisher eventPublisher,
+                                @Value("${receipts.import.chunk-size:500}") int chunkSize,
+                                @Value("${receipts.import.batch-size:50}") int batchSize) {
+        this.receiptService = receiptService;
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    public ReceiptImportReportDTO importNdjson(InputStream input, Long householdId) throws IOException {
+        long start = System.nanoTime();
+        ReceiptImportReportDTO report = new ReceiptImportReportDTO();
+        List<PendingReceipt> chunk = new ArrayList<>(chunkSize);
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        long lineNumber = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.isBlank()) {
+                continue;
+            }
+            report.setLinesRead(report.getLinesRead() + 1);
+
+            try {
+                chunk.add(new PendingReceipt(lineNumber, receiptService.readExtractedReceipt(line, householdId)));
+            } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+                addError(report, lineNumber, "JSON inválido: " + e.getOriginalMessage());
+            } catch (IllegalArgumentException e) {
+                addError(report, lineNumber, e.getMessage());
+            }
+
+            if (chunk.size() >= chunkSize) {
+                flush(chunk, report);
+            }
+        }
+        flush(chunk, report);
+
+        long elapsedNanos = System.nanoTime() - start;
+        report.setElapsedMs(elapsedNanos / 1_000_000);
+        long rows = report.getReceiptsImported() + report.getItemsImported();
+        report.setRowsPerSecond(elapsedNanos == 0 ? 0.0 : Math.round(rows * 1e9 / elapsedNanos * 10.0) / 10.0);
+        return report;
+    }
+
+    private void flush(List<PendingReceipt> chunk, ReceiptImportReportDTO report) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> persist(chunk));
+            chunk.forEach(pending -> countImported(pending, report));
+        } catch (RuntimeException chunkFailure) {
+            // Uma nota com problema (ex.: valor fora do tamanho da coluna) derrubou o bloco inteiro:
+            // regrava nota por nota só este bloco para isolar quem falhou
+            for (PendingReceipt pending : chunk) {
+                resetIds(pending.receipt());
+                try {
+                    transactionTemplate.executeWithoutResult(status -> persist(List.of(pending)));
+                    countImported(pending, report);
+                } catch (RuntimeException e) {
+                    addError(report, pending.line(), rootMessage(e));
+                }
+            }
+        }
+        chunk.clear();
+    }
+
+    private void persist(List<PendingReceipt> chunk) {
+        entityManager.unwrap(Session.class).setJdbcBatchSize(batchSize);
+        for (PendingReceipt pending : chunk) {
+            entityManager.persist(pending.receipt());
+        }
+        entityManager.flush();
+
+        // Os eventos só são entregues depois do commit (índice de busca, cache do planejador)
+        for (PendingReceipt pending : chunk) {
+            eventPublisher.publishEvent(ReceiptChangedEvent.created(pending.receipt()));
+        }
+        // Solta as entidades do bloco: a memória não cresce com o tamanho do arquivo
+        entityManager.clear();
+    }
+
+    // Depois de uma transação desfeita os objetos ficaram com ids que nunca chegaram ao banco
+    private static void resetIds(Receipt receipt) {
+        receipt.setId(null);
+        receipt.setVersion(null);
+        if (receipt.getItems() != null) {
+            receipt.getItems().forEach(item -> item.setId(null));
+        }
+    }
+
+    private static void countImported(PendingReceipt pending, ReceiptImportReportDTO report) {
+        List<ProductItem> items = pending.receipt().getItems();
+        report.setReceiptsImported(report.getReceiptsImported() + 1);
+        report.setItemsImported(report.getItemsImported() + (items != null ? items.size() : 0));
+    }
+
+    private static void addError(ReceiptImportReportDTO report, long line, String message) {
+        report.setReceiptsFailed(report.getReceiptsFailed() + 1);
+        if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+            report.getErrors().add(new ReceiptImportReportDTO.LineError(line, message));
+        } else {
+            report.setErrorsTruncated(true);
+        }
+    }
+
+    private static String rootMessage(Throwable e) {
+        Throwable root = e;
+        while (root.getCause() != null && root.getCause() != root) {
+            root = root.getCause();
+        }
+        // Mensagens do H2 trazem o SQL inteiro nas linhas seguintes
+        String message = String.valueOf(root.getMessage());
+        int lineBreak = message.indexOf('\n');
+        return lineBreak > 0 ? message.substring(0, lineBreak).trim() : message;
+    }
+
+    private record PendingReceipt(long line, Receipt receipt) {}
+}
@@ -0,0 +1,350 @@
+package com.techchallenge.marketlens.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.domain.Receipt;
+import com.techchallenge.marketlens.dto.ItemPatchDTO;
+import com.techchallenge.marketlens.dto.ReceiptItemsPatchDTO;
+import com.techchallenge.marketlens.dto.ReceiptPageDTO;
+import com.techchallenge.marketlens.dto.ReceiptSummaryDTO;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import com.techchallenge.marketlens.repository.ProductItemRepository;
+import com.techchallenge.marketlens.repository.ReceiptRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.data.domain.Limit;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+// Todas as escritas de notas fiscais passam por aqui, para publicar o ReceiptChangedEvent
+// (índice de busca e demais estruturas incrementais dependem dele)
+@Service
+public class ReceiptService {
+
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final LocalDateTime MIN_DATE = LocalDateTime.of(1900, 1, 1, 0, 0);
+    private static final LocalDateTime MAX_DATE = LocalDateTime.of(9999, 12, 31, 0, 0);
+
+    private final ReceiptRepository repository;
+    private final ProductItemRepository itemRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final Counter receiptParseFailures;
+    private final ProductClassifier productClassifier;
+    private final ProductCatalogService catalogService;
+
+    public ReceiptService(ReceiptRepository repository,
+                          ProductItemRepository itemRepository,
+                          ApplicationEventPublisher eventPublisher,
+                          MeterRegistry meterRegistry,
+                          ProductClassifier productClassifier,
+                          ProductCatalogService catalogService) {
+        this.repository = repository;
+        this.itemRepository = itemRepository;
+        this.eventPublisher = eventPublisher;
+        this.productClassifier = productClassifier;
+        this.catalogService = catalogService;
+        this.receiptParseFailures = Counter.builder("marketlens.extraction.parse.failures")
+            .description("Respostas da IA que não puderam ser convertidas")
+            .tag("stage", "receipt")
+            .register(meterRegistry);
+
+        // Configura o Jackson para entender datas (LocalDateTime)
+        this.objectMapper = new ObjectMapper();
+        this.objectMapper.registerModule(new JavaTimeModule());
+    }
+
+    // Converte o JSON extraído pela IA numa nota fiscal e salva (nota + itens em cascata)
+    @Transactional
+    public Receipt saveExtractedReceipt(String extractedJson, Long householdId) {
+        try {
+            Receipt receipt = readExtractedReceipt(extractedJson, householdId);
+
+            // Salva no Banco (Salva a nota e os itens em cascata)
+            Receipt savedReceipt = repository.save(receipt);
+            eventPublisher.publishEvent(ReceiptChangedEvent.created(savedReceipt));
+            return savedReceipt;
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new RuntimeException("JSON da IA inválido: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    // Confere se o JSON da IA vira uma nota, sem salvar nem resolver nada no catálogo.
+    // A ingestão chama antes de guardar a resposta no cache de extração: resposta truncada ou fora do formato não é cacheada
+    public void checkExtractedReceipt(String extractedJson) {
+        try {
+            parseReceipt(extractedJson);
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            throw new RuntimeException("JSON da IA inválido: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    // Lê uma nota no formato da extração (o JSON que a IA devolve) e deixa pronta para inserir.
+    // Também usado pela importação em lote (ReceiptImportService)
+    Receipt readExtractedReceipt(String extractedJson, Long householdId) throws com.fasterxml.jackson.core.JsonProcessingException {
+        // 1. Converte o JSON da IA para a Entidade Receipt
+        Receipt receipt = parseReceipt(extractedJson);
+
+        // 2. Vincula os itens à nota fiscal (Consistência do Banco de Dados)
+        // O JSON cria a nota fiscal e os Itens, mas não diz aos itens "quem é o pai deles".
+        if (receipt.getItems() != null) {
+            receipt.getItems().forEach(item -> {
+                item.setId(null);
+                item.setReceipt(receipt);
+                fillMissingCategories(item);
+                item.setCatalogProductId(catalogService.resolve(item.getProductName(), item.getSubCategory(), item.getCategory()));
+            });
+        }
+
+        // Nota nova: id e versão são controlados pelo JPA (ignora o que vier no JSON)
+        receipt.setId(null);
+        receipt.setVersion(null);
+        receipt.setHouseholdId(householdId); // A família vem de quem enviou, nunca do JSON
+
+        // Sem data no cupom: considera a data do envio (a listagem paginada ordena por data)
+        if (receipt.getDate() == null) {
+            receipt.setDate(LocalDateTime.now());
+        }
+        return receipt;
+    }
+
+    private Receipt parseReceipt(String extractedJson) throws com.fasterxml.jackson.core.JsonProcessingException {
+        Receipt receipt;
+        try {
+            receipt = objectMapper.readValue(extractedJson, Receipt.class);
+        } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
+            receiptParseFailures.increment();
+            throw e;
+        }
+        if (receipt == null) {
+            throw new IllegalArgumentException("a linha não contém uma nota fiscal");
+        }
+        return receipt;
+    }
+
+    // A IA (ou o arquivo importado) às vezes deixa a categoria em branco: completa pelo dicionário do classificador.
+    // O que veio preenchido nunca é sobrescrito
+    private void fillMissingCategories(ProductItem item) {
+        boolean noCategory = item.getCategory() == null || item.getCategory().isBlank();
+        boolean noSubCategory = item.getSubCategory() == null || item.getSubCategory().isBlank();
+        if (!noCategory && !noSubCategory) {
+            return;
+        }
+        ProductClassifier.Classification classification = productClassifier.classify(item.getProductName());
+        if (classification == null) {
+            return;
+        }
+        if (noCategory) {
+            item.setCategory(classification.category());
+        }
+        if (noSubCategory) {
+            item.setSubCategory(classification.subCategory());
+        }
+    }
+
+    // ==========================================
+    // LISTAGEM PAGINADA (KEYSET)
+    // ==========================================
+    @Transactional(readOnly = true)
+    public ReceiptPageDTO listReceipts(Long householdId, LocalDate from, LocalDate to, String cursor, int limit) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+
+        // Sem filtro/cursor usamos limites "infinitos" para manter uma única query simples
+        LocalDateTime fromDate = from != null ? from.atStartOfDay() : MIN_DATE;
+        LocalDateTime toDate = to != null ? to.plusDays(1).atStartOfDay() : MAX_DATE; // "to" é inclusivo
+        LocalDateTime cursorDate = MAX_DATE;
+        long cursorId = Long.MAX_VALUE;
+
+        if (cursor != null && !cursor.isBlank()) {
+            String[] parts = decodeCursor(cursor);
+            cursorDate = LocalDateTime.parse(parts[0]);
+            cursorId = Long.parseLong(parts[1]);
+        }
+
+        // Busca 1 a mais só para saber se existe próxima página
+        List<ReceiptSummaryDTO> rows = repository.findSummariesBefore(householdId, fromDate, toDate, cursorDate, cursorId, Limit.of(pageSize + 1));
+        boolean hasMore = rows.size() > pageSize;
+        List<ReceiptSummaryDTO> page = hasMore ? rows.subList(0, pageSize) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            ReceiptSummaryDTO last = page.get(page.size() - 1);
+            nextCursor = encodeCursor(last.getDate(), last.getId());
+        }
+        return new ReceiptPageDTO(List.copyOf(page), nextCursor, hasMore);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<Receipt> findReceiptWithItems(Long receiptId, Long householdId) {
+        return repository.findWithItemsByIdAndHouseholdId(receiptId, householdId);
+    }
+
+    @Transactional(readOnly = true)
+    public List<Receipt> findAllReceipts(Long householdId) {
+        return repository.findAllByHouseholdId(householdId);
+    }
+
+    // Cursor opaco para o frontend: base64url("data|id") da última nota da página
+    private static String encodeCursor(LocalDateTime date, Long id) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString((date + "|" + id).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String[] decodeCursor(String cursor) {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split("\\|");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Cursor inválido.");
+            }
+            return parts;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Cursor inválido.", e);
+        }
+    }
+
+    // As edições e exclusões abaixo só enxergam notas da família informada (outra família = não encontrado)
+    @Transactional
+    public Optional<ProductItem> updateItem(Long itemId, Long householdId, ProductItem updatedData) {
+        return itemRepository.findByIdAndReceiptHouseholdId(itemId, householdId).map(item -> {
+            Receipt receipt = item.getReceipt();
+            ReceiptChangedEvent.ItemSnapshot before = ReceiptChangedEvent.ItemSnapshot.of(receipt, item);
+            double oldItemTotal = valueOrZero(item.getTotalPrice());
+
+            item.setProductName(updatedData.getProductName());
+            item.setCategory(updatedData.getCategory());
+            item.setSubCategory(updatedData.getSubCategory());
+            item.setQuantity(updatedData.getQuantity());
+            item.setUnit(updatedData.getUnit());
+            item.setUnitPrice(updatedData.getUnitPrice());
+            item.setTotalPrice(updatedData.getUnitPrice() * updatedData.getQuantity());
+            relinkCatalogIfRenamed(item, before);
+
+            ProductItem savedItem = itemRepository.save(item);
+
+            // Atualiza o total da nota fiscal Pai pela diferença (sem re-somar todos os itens)
+            applyTotalDelta(receipt, item.getTotalPrice() - oldItemTotal);
+            repository.save(receipt);
+
+            eventPublisher.publishEvent(ReceiptChangedEvent.updated(receipt.getId(),
+                    List.of(before), List.of(ReceiptChangedEvent.ItemSnapshot.of(receipt, savedItem))));
+            return savedItem;
+        });
+    }
+
+    // Edição em lote: várias alterações de itens da mesma nota numa única transação,
+    // com o total mantido por diferença e a versão da nota protegendo contra edições simultâneas
+    @Transactional
+    public Optional<Receipt> patchItems(Long receiptId, Long householdId, ReceiptItemsPatchDTO patch) {
+        return repository.findWithItemsByIdAndHouseholdId(receiptId, householdId).map(receipt -> {
+            if (patch.getVersion() != null && !patch.getVersion().equals(receipt.getVersion())) {
+                throw new OptimisticLockingFailureException(
+                        "A nota fiscal " + receiptId + " foi alterada (versão " + receipt.getVersion() + "). Recarregue e tente de novo.");
+            }
+
+            Map<Long, ProductItem> itemsById = new HashMap<>();
+            receipt.getItems().forEach(item -> itemsById.put(item.getId(), item));
+
+            List<ReceiptChangedEvent.ItemSnapshot> before = new ArrayList<>();
+            List<ProductItem> changed = new ArrayList<>();
+            double delta = 0.0;
+
+            for (ItemPatchDTO itemPatch : patch.getItems() == null ? List.<ItemPatchDTO>of() : patch.getItems()) {
+                ProductItem item = itemsById.get(itemPatch.getId());
+                if (item == null) {
+                    throw new IllegalArgumentException("Item " + itemPatch.getId() + " não pertence à nota fiscal " + receiptId + ".");
+                }
+                before.add(ReceiptChangedEvent.ItemSnapshot.of(receipt, item));
+                double oldItemTotal = valueOrZero(item.getTotalPrice());
+
+                if (itemPatch.getProductName() != null) item.setProductName(itemPatch.getProductName());
+                if (itemPatch.getCategory() != null) item.setCategory(itemPatch.getCategory());
+                if (itemPatch.getSubCategory() != null) item.setSubCategory(itemPatch.getSubCategory());
+                if (itemPatch.getQuantity() != null) item.setQuantity(itemPatch.getQuantity());
+                if (itemPatch.getUnit() != null) item.setUnit(itemPatch.getUnit());
+                if (itemPatch.getUnitPrice() != null) item.setUnitPrice(itemPatch.getUnitPrice());
+                item.setTotalPrice(valueOrZero(item.getUnitPrice()) * valueOrZero(item.getQuantity()));
+                relinkCatalogIfRenamed(item, before.get(before.size() - 1));
+
+                delta += item.getTotalPrice() - oldItemTotal;
+                changed.add(item);
+            }
+
+            applyTotalDelta(receipt, delta);
+            Receipt savedReceipt = repository.saveAndFlush(receipt); // flush: conflito de versão estoura aqui (409)
+
+            List<ReceiptChangedEvent.ItemSnapshot> after = changed.stream()
+                    .map(item -> ReceiptChangedEvent.ItemSnapshot.of(savedReceipt, item))
+                    .toList();
+            eventPublisher.publishEvent(ReceiptChangedEvent.updated(receiptId, before, after));
+            return savedReceipt;
+        });
+    }
+
+    // Nome ou subcategoria editados à mão: o item (e as próximas notas com o mesmo nome) vai para o produto novo
+    private void relinkCatalogIfRenamed(ProductItem item, ReceiptChangedEvent.ItemSnapshot before) {
+        if (!Objects.equals(before.productName(), item.getProductName())
+                || !Objects.equals(before.subCategory(), item.getSubCategory())) {
+            item.setCatalogProductId(catalogService.reassign(item.getProductName(), item.getSubCategory(), item.getCategory()));
+        }
+    }
+
+    // Soma a diferença no total da nota (arredondado em centavos para não acumular erro de ponto flutuante).
+    // Notas antigas sem total caem no cálculo completo uma única vez.
+    private void applyTotalDelta(Receipt receipt, double delta) {
+        double newTotal;
+        if (receipt.getTotalAmount() == null) {
+            newTotal = receipt.getItems().stream().mapToDouble(item -> valueOrZero(item.getTotalPrice())).sum();
+        } else {
+            newTotal = receipt.getTotalAmount() + delta;
+        }
+        receipt.setTotalAmount(Math.round(newTotal * 100.0) / 100.0);
+    }
+
+    private static double valueOrZero(Double value) {
+        return value != null ? value : 0.0;
+    }
+
+    @Transactional
+    public boolean updateHeader(Long receiptId, Long householdId, Map<String, String> updates) {
+        return repository.findByIdAndHouseholdId(receiptId, householdId).map(receipt -> {
+            // Mercado e data fazem parte da "foto" de todos os itens da nota
+            List<ReceiptChangedEvent.ItemSnapshot> before = ReceiptChangedEvent.snapshot(receipt);
+
+            if (updates.containsKey("supermarketName")) {
+                receipt.setSupermarketName(updates.get("supermarketName"));
+            }
+            if (updates.containsKey("date")) {
+                receipt.setDate(java.time.LocalDate.parse(updates.get("date")).atStartOfDay());
+            }
+            repository.save(receipt);
+
+            eventPublisher.publishEvent(ReceiptChangedEvent.updated(receiptId, before, ReceiptChangedEvent.snapshot(receipt)));
+            return true;
+        }).orElse(false);
+    }
+
+    @Transactional
+    public boolean deleteReceipt(Long receiptId, Long householdId) {
+        return repository.findByIdAndHouseholdId(receiptId, householdId).map(receipt -> {
+            List<ReceiptChangedEvent.ItemSnapshot> before = ReceiptChangedEvent.snapshot(receipt);
+            repository.delete(receipt);
+
+            eventPublisher.publishEvent(ReceiptChangedEvent.deleted(receiptId, before));
+            return true;
+        }).orElse(false);
+    }
+}
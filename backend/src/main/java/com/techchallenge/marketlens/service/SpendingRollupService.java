@@ -0,0 +1,150 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.SpendingDimension;
+import com.techchallenge.marketlens.dto.RollupRebuildReportDTO;
+import com.techchallenge.marketlens.dto.SpendingSummaryDTO;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import com.techchallenge.marketlens.repository.SpendingRollupRepository;
+import com.techchallenge.marketlens.repository.SpendingRollupRepository.RollupKey;
+import com.techchallenge.marketlens.repository.SpendingRollupRepository.RollupValue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Gastos mensais por categoria, mercado e subcategoria, mantidos incrementalmente.
+ *
+ * Cada ReceiptChangedEvent traz a "foto" dos itens antes e depois da mudança: o que saiu é subtraído e o
+ * que entrou é somado nas linhas da tabela spending_rollup, sem reler o histórico. A atualização roda
+ * ANTES do commit, na mesma transação da nota: ou os dois são gravados, ou nenhum.
+ *
+ * O rebuild recalcula tudo a partir das notas e informa quantas linhas estavam diferentes
+ * (deve ser 0; serve como verificação de consistência).
+ */
+@Service
+public class SpendingRollupService {
+
+    private static final Logger log = LoggerFactory.getLogger(SpendingRollupService.class);
+
+    static final String UNKNOWN_KEY = "NAO_INFORMADO";
+
+    private final SpendingRollupRepository rollupRepository;
+    private final Counter mismatchedRows;
+
+    public SpendingRollupService(SpendingRollupRepository rollupRepository, MeterRegistry meterRegistry) {
+        this.rollupRepository = rollupRepository;
+        this.mismatchedRows = Counter.builder("marketlens.rollup.mismatched")
+            .description("Linhas dos agregados de gasto que o rebuild encontrou divergentes das notas (deveria ficar em 0)")
+            .register(meterRegistry);
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onReceiptChanged(ReceiptChangedEvent event) {
+        Map<RollupKey, RollupValue> deltas = new HashMap<>();
+        for (ReceiptChangedEvent.ItemSnapshot item : event.removed()) {
+            accumulate(deltas, item, -1);
+        }
+        for (ReceiptChangedEvent.ItemSnapshot item : event.added()) {
+            accumulate(deltas, item, 1);
+        }
+        // Ex.: só o nome do produto mudou, ou o item saiu e voltou na mesma categoria: nada a gravar
+        deltas.values().removeIf(RollupValue::isZero);
+        if (!deltas.isEmpty()) {
+            rollupRepository.applyDeltas(deltas);
+        }
+    }
+
+    public List<SpendingSummaryDTO> getSpending(Long householdId, SpendingDimension dimension, YearMonth from, YearMonth to) {
+        return rollupRepository.findSpending(householdId, dimension, from, to);
+    }
+
+    public List<SpendingSummaryDTO> getMonthlyTotals(Long householdId, YearMonth from, YearMonth to) {
+        return rollupRepository.findMonthlyTotals(householdId, from, to);
+    }
+
+    // Recalcula do zero e substitui a tabela (na mesma transação: as leituras nunca veem a tabela vazia)
+    @Transactional
+    public RollupRebuildReportDTO rebuild() {
+        long start = System.nanoTime();
+        Map<RollupKey, RollupValue> current = rollupRepository.loadAll();
+        Map<RollupKey, RollupValue> recomputed = rollupRepository.computeFromReceipts();
+
+        Set<RollupKey> keys = new HashSet<>(current.keySet());
+        keys.addAll(recomputed.keySet());
+        long mismatched = keys.stream().filter(key -> !sameValue(current.get(key), recomputed.get(key))).count();
+
+        rollupRepository.replaceAll(recomputed);
+
+        RollupRebuildReportDTO report = new RollupRebuildReportDTO();
+        report.setRowsBefore(current.size());
+        report.setRowsAfter(recomputed.size());
+        report.setRowsMismatched(mismatched);
+        report.setElapsedMs((System.nanoTime() - start) / 1_000_000);
+        if (mismatched > 0) {
+            mismatchedRows.increment(mismatched);
+            log.warn("Agregados de gasto tinham {} linha(s) divergente(s) das notas; reconstruídos.", mismatched);
+        }
+        return report;
+    }
+
+    private static void accumulate(Map<RollupKey, RollupValue> deltas, ReceiptChangedEvent.ItemSnapshot item, int sign) {
+        if (item.date() == null) {
+            return; // Sem data não há mês (mesma regra do SQL de reconstrução)
+        }
+        LocalDate monthStart = item.date().toLocalDate().withDayOfMonth(1);
+        BigDecimal amount = amount(item);
+        RollupValue delta = new RollupValue(sign < 0 ? amount.negate() : amount, sign);
+
+        deltas.merge(new RollupKey(item.householdId(), SpendingDimension.CATEGORY, monthStart, key(item.category())), delta, RollupValue::plus);
+        deltas.merge(new RollupKey(item.householdId(), SpendingDimension.SUPERMARKET, monthStart, key(item.supermarketName())), delta, RollupValue::plus);
+        deltas.merge(new RollupKey(item.householdId(), SpendingDimension.SUB_CATEGORY, monthStart, key(item.subCategory())), delta, RollupValue::plus);
+    }
+
+    // Valor do item em centavos: total da linha ou, se faltar, preço x quantidade
+    static BigDecimal amount(ReceiptChangedEvent.ItemSnapshot item) {
+        double value;
+        if (item.totalPrice() != null) {
+            value = item.totalPrice();
+        } else if (item.unitPrice() != null && item.quantity() != null) {
+            value = item.unitPrice() * item.quantity();
+        } else {
+            value = 0.0;
+        }
+        return BigDecimal.valueOf(value).setScale(2, RoundingMode.HALF_UP);
+    }
+
+    // Igual a COALESCE(NULLIF(UPPER(TRIM(coluna)), ''), 'NAO_INFORMADO') no SQL (o TRIM do banco só remove espaços)
+    static String key(String value) {
+        if (value == null) {
+            return UNKNOWN_KEY;
+        }
+        int begin = 0;
+        int end = value.length();
+        while (begin < end && value.charAt(begin) == ' ') begin++;
+        while (end > begin && value.charAt(end - 1) == ' ') end--;
+        return begin == end ? UNKNOWN_KEY : value.substring(begin, end).toUpperCase(Locale.ROOT);
+    }
+
+    private static boolean sameValue(RollupValue a, RollupValue b) {
+        if (a == null || b == null) {
+            return a == b;
+        }
+        return a.itemCount() == b.itemCount() && a.totalSpent().compareTo(b.totalSpent()) == 0;
+    }
+}
@@ -0,0 +1,249 @@
+package com.techchallenge.marketlens.util;
+
+import java.text.Normalizer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Autômato de Aho-Corasick: encontra, numa única passada pelo texto, qual dos termos de um dicionário
+ * aparece nele, em vez de testar termo a termo com contains().
+ *
+ * A comparação segue as regras do TextNormalizer (sem acentos, sem maiúsculas, espaços repetidos
+ * contam como um), mas a normalização é feita caractere a caractere durante a busca, sem criar strings.
+ * Um termo só vale se começar no início de uma palavra ("ovo" casa com "Ovos", mas não com "Novo").
+ * Se vários termos aparecem, vence o mais longo ("leite condensado" ganha de "leite"); no empate, o primeiro.
+ *
+ * Imutável depois de construído: pode ser compartilhado entre threads.
+ *
+ * Ex: {"leite" -> A, "leite condensado" -> B}.find("Leite Condensado Moça") -> B
+ */
+public final class KeywordAutomaton<T> {
+
+    // Até aqui os caracteres são normalizados por tabela (ASCII, Latin-1, Latin Extended e os acentos combinantes)
+    private static final int FOLD_TABLE_SIZE = 0x370;
+    private static final char[] FOLD = buildFoldTable();
+    private static final char SKIP = '\0';
+
+    // O histórico de "início de palavra" cabe num long
+    public static final int MAX_TERM_LENGTH = 62;
+
+    private final int[] symbolOf;   // caractere normalizado -> símbolo (0 = fora do alfabeto dos termos)
+    private final int alphabetSize;
+    private final int[] next;       // transições completas (já com as falhas resolvidas): estado * alfabeto + símbolo
+    private final int[] depth;      // tamanho do prefixo representado pelo estado
+    private final int[] outputLink; // próximo estado terminal na cadeia de falhas (0 = nenhum)
+    private final Object[] values;  // valor do termo que termina no estado (null se não terminal)
+
+    private KeywordAutomaton(int[] symbolOf, int alphabetSize, int[] next, int[] depth, int[] outputLink, Object[] values) {
+        this.symbolOf = symbolOf;
+        this.alphabetSize = alphabetSize;
+        this.next = next;
+        this.depth = depth;
+        this.outputLink = outputLink;
+        this.values = values;
+    }
+
+    /**
+     * Monta o autômato. Termos que ficam iguais depois de normalizados (ex: "Feijão" e "feijao")
+     * são erro de configuração.
+     */
+    public static <T> KeywordAutomaton<T> build(Map<String, T> terms) {
+        // 1. Normaliza os termos e monta o alfabeto (só os caracteres que aparecem nos termos)
+        int[] symbolOf = new int[FOLD_TABLE_SIZE];
+        int alphabetSize = 1;
+        List<String> foldedTerms = new ArrayList<>(terms.size());
+        List<T> termValues = new ArrayList<>(terms.size());
+        for (Map.Entry<String, T> entry : terms.entrySet()) {
+            String folded = foldTerm(entry.getKey());
+            if (folded.isEmpty()) {
+                throw new IllegalArgumentException("Termo vazio no dicionário");
+            }
+            if (folded.length() > MAX_TERM_LENGTH) {
+                throw new IllegalArgumentException("Termo maior que " + MAX_TERM_LENGTH + " caracteres: " + entry.getKey());
+            }
+            if (entry.getValue() == null) {
+                throw new IllegalArgumentException("Termo sem valor: " + entry.getKey());
+            }
+            for (int i = 0; i < folded.length(); i++) {
+                char c = folded.charAt(i);
+                if (c >= FOLD_TABLE_SIZE) {
+                    throw new IllegalArgumentException("Caractere não suportado no termo '" + entry.getKey() + "': " + c);
+                }
+                if (symbolOf[c] == 0) {
+                    symbolOf[c] = alphabetSize++;
+                }
+            }
+            foldedTerms.add(folded);
+            termValues.add(entry.getValue());
+        }
+
+        // 2. Trie dos termos
+        List<Map<Integer, Integer>> children = new ArrayList<>();
+        List<Integer> depths = new ArrayList<>();
+        List<Object> stateValues = new ArrayList<>();
+        Map<Integer, String> termOfState = new HashMap<>();
+        children.add(new HashMap<>());
+        depths.add(0);
+        stateValues.add(null);
+        for (int t = 0; t < foldedTerms.size(); t++) {
+            String term = foldedTerms.get(t);
+            int state = 0;
+            for (int i = 0; i < term.length(); i++) {
+                int symbol = symbolOf[term.charAt(i)];
+                Integer child = children.get(state).get(symbol);
+                if (child == null) {
+                    child = children.size();
+                    children.add(new HashMap<>());
+                    depths.add(i + 1);
+                    stateValues.add(null);
+                    children.get(state).put(symbol, child);
+                }
+                state = child;
+            }
+            if (stateValues.get(state) != null) {
+                throw new IllegalArgumentException("Termo repetido no dicionário (após normalização): " + term);
+            }
+            stateValues.set(state, termValues.get(t));
+            termOfState.put(state, term);
+        }
+
+        // 3. Falhas em largura (BFS), já transformando a trie em transições completas
+        int states = children.size();
+        int[] next = new int[states * alphabetSize];
+        int[] fail = new int[states];
+        int[] outputLink = new int[states];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < alphabetSize; symbol++) {
+            Integer child = children.get(0).get(symbol);
+            if (child != null) {
+                next[symbol] = child;
+                queue.add(child);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            int failState = fail[state];
+            outputLink[state] = stateValues.get(failState) != null ? failState : outputLink[failState];
+            for (int symbol = 0; symbol < alphabetSize; symbol++) {
+                Integer child = children.get(state).get(symbol);
+                if (child != null) {
+                    fail[child] = next[failState * alphabetSize + symbol];
+                    next[state * alphabetSize + symbol] = child;
+                    queue.add(child);
+                } else {
+                    next[state * alphabetSize + symbol] = next[failState * alphabetSize + symbol];
+                }
+            }
+        }
+
+        int[] depthArray = depths.stream().mapToInt(Integer::intValue).toArray();
+        return new KeywordAutomaton<>(symbolOf, alphabetSize, next, depthArray, outputLink, stateValues.toArray());
+    }
+
+    /** Valor do termo mais longo encontrado no texto, ou null se nenhum aparece. */
+    @SuppressWarnings("unchecked")
+    public T find(CharSequence text) {
+        if (text == null) {
+            return null;
+        }
+        int state = 0;
+        int position = -1;        // posição no texto normalizado
+        long wordChars = 0;       // bit k = o caractere em (position - k) é letra/dígito
+        boolean lastWasSpace = true;
+        int bestState = 0;
+        int bestLength = 0;
+
+        for (int i = 0; i < text.length(); i++) {
+            char raw = text.charAt(i);
+            char c;
+            if (Character.isWhitespace(raw)) {
+                if (lastWasSpace) {
+                    continue; // espaços no início ou repetidos
+                }
+                c = ' ';
+                lastWasSpace = true;
+            } else {
+                c = raw < FOLD_TABLE_SIZE ? FOLD[raw] : raw;
+                if (c == SKIP) {
+                    continue; // acento combinante (texto já decomposto)
+                }
+                lastWasSpace = false;
+            }
+            position++;
+            wordChars = (wordChars << 1) | (Character.isLetterOrDigit(c) ? 1L : 0L);
+            int symbol = c < FOLD_TABLE_SIZE ? symbolOf[c] : 0;
+            state = next[state * alphabetSize + symbol];
+
+            // Todos os termos que terminam aqui: o próprio estado e a cadeia de saídas
+            for (int s = values[state] != null ? state : outputLink[state]; s != 0; s = outputLink[s]) {
+                int length = depth[s];
+                if (length <= bestLength) {
+                    break; // a cadeia vem do maior para o menor: nada mais aqui ganha do melhor
+                }
+                boolean startsWord = ((wordChars >>> length) & 1L) == 0;
+                if (startsWord) {
+                    bestState = s;
+                    bestLength = length;
+                    break;
+                }
+            }
+        }
+        return bestLength == 0 ? null : (T) values[bestState];
+    }
+
+    public int size() {
+        int count = 0;
+        for (Object value : values) {
+            if (value != null) count++;
+        }
+        return count;
+    }
+
+    // Mesma normalização da busca, para que termo e texto sejam comparados do mesmo jeito
+    private static String foldTerm(String term) {
+        StringBuilder folded = new StringBuilder(term.length());
+        boolean lastWasSpace = true;
+        for (int i = 0; i < term.length(); i++) {
+            char raw = term.charAt(i);
+            if (Character.isWhitespace(raw)) {
+                if (!lastWasSpace) {
+                    folded.append(' ');
+                    lastWasSpace = true;
+                }
+                continue;
+            }
+            char c = raw < FOLD_TABLE_SIZE ? FOLD[raw] : raw;
+            if (c != SKIP) {
+                folded.append(c);
+                lastWasSpace = false;
+            }
+        }
+        int end = folded.length();
+        while (end > 0 && folded.charAt(end - 1) == ' ') end--;
+        folded.setLength(end);
+        return folded.toString();
+    }
+
+    // Cada caractere -> minúsculo sem acento (ex: 'Ç' -> 'c'); acentos combinantes -> SKIP
+    private static char[] buildFoldTable() {
+        char[] table = new char[FOLD_TABLE_SIZE];
+        for (char ch = 0; ch < FOLD_TABLE_SIZE; ch++) {
+            if (Character.getType(ch) == Character.NON_SPACING_MARK) {
+                table[ch] = SKIP;
+                continue;
+            }
+            String base = Normalizer.normalize(String.valueOf(ch), Normalizer.Form.NFD)
+                    .replaceAll("\\p{M}+", "")
+                    .toLowerCase(Locale.ROOT);
+            table[ch] = base.length() == 1 && base.charAt(0) < FOLD_TABLE_SIZE
+                    ? base.charAt(0)
+                    : Character.toLowerCase(ch);
+        }
+        table[0] = SKIP;
+        return table;
+    }
+}
@@ -0,0 +1,142 @@
+package com.techchallenge.marketlens.util;
+
+import java.util.Arrays;
+
+/**
+ * Resumo (sketch) de uma distribuição de preços em baldes logarítmicos, para calcular mediana e percentis
+ * sem guardar nem ordenar os preços.
+ *
+ * O balde i cobre (gamma^(i-1), gamma^i]; qualquer percentil sai com erro relativo de no máximo
+ * RELATIVE_ACCURACY (1%: "R$ 4,59" vem entre 4,54 e 4,64), qualquer que seja a quantidade de preços.
+ * Um produto ocupa algumas dezenas de baldes, porque os preços dele ficam numa faixa estreita.
+ *
+ * Cada balde guarda a contagem e o peso (decaimento para frente, ver PriceStatisticsService), o que dá
+ * percentis "de todo o histórico" e "recentes" com a mesma estrutura. Preço removido (nota editada ou
+ * excluída) é só somar com sinal negativo, e dois sketches se juntam somando os baldes (merge).
+ *
+ * Não é thread-safe: quem usa controla o acesso.
+ */
+public final class PriceSketch {
+
+    public static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+
+    // Preços <= MIN_PRICE (brindes, descontos que zeraram o item) ficam num balde à parte, valendo 0
+    private static final double MIN_PRICE = 0.005;
+
+    private int offset;                 // índice logarítmico do balde counts[0]
+    private long[] counts = new long[0];
+    private double[] weights = new double[0];
+    private long zeroCount;
+    private double zeroWeight;
+    private long totalCount;
+
+    /** Soma (sign = 1) ou remove (sign = -1) um preço com o peso informado. */
+    public void add(double price, double weight, int sign) {
+        if (Double.isNaN(price)) {
+            return;
+        }
+        totalCount += sign;
+        if (price <= MIN_PRICE) {
+            zeroCount += sign;
+            zeroWeight = zeroCount == 0 ? 0.0 : zeroWeight + sign * weight;
+            return;
+        }
+        int slot = slotFor(index(price));
+        counts[slot] += sign;
+        // Quando o balde esvazia, zera o peso de vez (sem sobras de arredondamento da subtração)
+        weights[slot] = counts[slot] == 0 ? 0.0 : weights[slot] + sign * weight;
+    }
+
+    /** Junta os baldes de outro sketch neste. */
+    public void merge(PriceSketch other) {
+        zeroCount += other.zeroCount;
+        zeroWeight += other.zeroWeight;
+        totalCount += other.totalCount;
+        for (int i = 0; i < other.counts.length; i++) {
+            if (other.counts[i] != 0) {
+                int slot = slotFor(other.offset + i);
+                counts[slot] += other.counts[i];
+                weights[slot] += other.weights[i];
+            }
+        }
+    }
+
+    /** Percentil q (0 a 1) de todos os preços, ou null se o sketch está vazio. */
+    public Double quantile(double q) {
+        return totalCount <= 0 ? null : walk(q * totalCount, false);
+    }
+
+    /** Percentil q com cada preço valendo o seu peso (preços recentes pesam mais), ou null se vazio. */
+    public Double weightedQuantile(double q) {
+        double total = zeroWeight;
+        for (double weight : weights) {
+            total += weight;
+        }
+        return totalCount <= 0 || total <= 0 ? null : walk(q * total, true);
+    }
+
+    public long count() {
+        return totalCount;
+    }
+
+    public boolean isEmpty() {
+        return totalCount <= 0;
+    }
+
+    // Percorre os baldes do menor para o maior até alcançar o "rank" pedido
+    // (com quantidade par, a mediana é o menor dos dois preços do meio)
+    private double walk(double rank, boolean weighted) {
+        double accumulated = weighted ? zeroWeight : zeroCount;
+        if (zeroCount > 0 && accumulated >= rank) {
+            return 0.0;
+        }
+        int last = -1;
+        for (int i = 0; i < counts.length; i++) {
+            if (counts[i] <= 0) {
+                continue;
+            }
+            last = i;
+            accumulated += weighted ? weights[i] : counts[i];
+            if (accumulated >= rank) {
+                return value(offset + i);
+            }
+        }
+        return last < 0 ? 0.0 : value(offset + last);
+    }
+
+    private static int index(double price) {
+        return (int) Math.ceil(Math.log(price) / LOG_GAMMA);
+    }
+
+    // Ponto do balde com o menor erro relativo para qualquer preço dentro dele
+    private static double value(int index) {
+        return 2 * Math.pow(GAMMA, index) / (GAMMA + 1);
+    }
+
+    // Posição do balde no array, aumentando o array (para a esquerda ou para a direita) se precisar
+    private int slotFor(int index) {
+        if (counts.length == 0) {
+            offset = index;
+            counts = new long[8];
+            weights = new double[8];
+            return 0;
+        }
+        if (index < offset) {
+            int shift = Math.max(offset - index, counts.length / 2);
+            long[] newCounts = new long[counts.length + shift];
+            double[] newWeights = new double[counts.length + shift];
+            System.arraycopy(counts, 0, newCounts, shift, counts.length);
+            System.arraycopy(weights, 0, newWeights, shift, weights.length);
+            counts = newCounts;
+            weights = newWeights;
+            offset -= shift;
+        } else if (index - offset >= counts.length) {
+            int size = Math.max(index - offset + 1, counts.length + counts.length / 2);
+            counts = Arrays.copyOf(counts, size);
+            weights = Arrays.copyOf(weights, size);
+        }
+        return index - offset;
+    }
+}
@@ -0,0 +1,48 @@
+package com.techchallenge.marketlens.util;
+
+import java.text.Normalizer;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * Normalização de textos livres (nomes de produtos, subcategorias, itens do planejador)
+ * para comparação por igualdade: remove acentos, ignora maiúsculas e espaços extras.
+ *
+ * Ex: "  Feijão   Carioca " -> "feijao carioca"
+ */
+public final class TextNormalizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    private TextNormalizer() {}
+
+    public static String fold(String text) {
+        if (text == null) {
+            return "";
+        }
+
+        String result = text;
+
+        // Atalho: textos puramente ASCII não precisam passar pelo Normalizer (caso mais comum)
+        if (!isAscii(result)) {
+            result = DIACRITICS.matcher(Normalizer.normalize(result, Normalizer.Form.NFD)).replaceAll("");
+        }
+
+        return WHITESPACE.matcher(result.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    // Para as colunas *_norm do banco: texto ausente continua null (e fica fora dos filtros, como a coluna original)
+    public static String foldOrNull(String text) {
+        return text == null ? null : fold(text);
+    }
+
+    private static boolean isAscii(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) > 127) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
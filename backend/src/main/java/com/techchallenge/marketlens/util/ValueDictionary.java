@@ -0,0 +1,59 @@
+package com.techchallenge.marketlens.util;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Dicionário de valores repetidos (nomes de produto, mercados, ids do catálogo...) para colunas codificadas:
+ * cada valor distinto ganha um código int sequencial (0, 1, 2...) e a coluna guarda só o código.
+ * Um milhão de itens com "Leite Integral Italac 1L" guardam 4 bytes cada, não um ponteiro para uma String.
+ *
+ * null tem o código fixo NULL_CODE. Os códigos nunca são reaproveitados (valores que deixaram de aparecer
+ * continuam no dicionário), então um código guardado numa coluna nunca muda de significado.
+ *
+ * Não é thread-safe: quem usa controla o acesso.
+ */
+public final class ValueDictionary<T> {
+
+    public static final int NULL_CODE = -1;
+
+    private final Map<T, Integer> codes = new HashMap<>();
+    private final List<T> values = new ArrayList<>();
+
+    // Código do valor, criando um novo se ainda não existe
+    public int encode(T value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = values.size();
+            codes.put(value, code);
+            values.add(value);
+        }
+        return code;
+    }
+
+    // Código do valor, ou NULL_CODE se ele nunca apareceu (não cria)
+    public int find(T value) {
+        if (value == null) {
+            return NULL_CODE;
+        }
+        return codes.getOrDefault(value, NULL_CODE);
+    }
+
+    public T decode(int code) {
+        return code == NULL_CODE ? null : values.get(code);
+    }
+
+    public int size() {
+        return values.size();
+    }
+
+    public void clear() {
+        codes.clear();
+        values.clear();
+    }
+}
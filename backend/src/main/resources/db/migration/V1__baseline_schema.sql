@@ -0,0 +1,60 @@
+-- Schema inicial, igual ao que o Hibernate (ddl-auto=update) criava até aqui.
+-- Idempotente: em bancos antigos (baseline-on-migrate) só cria o que ainda não existe.
+
+CREATE SEQUENCE IF NOT EXISTS receipt_seq START WITH 1 INCREMENT BY 50;
+CREATE SEQUENCE IF NOT EXISTS product_item_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE IF NOT EXISTS receipt (
+    id               BIGINT NOT NULL PRIMARY KEY,
+    household_id     BIGINT DEFAULT 1 NOT NULL,
+    supermarket_name CHARACTER VARYING(255),
+    date             TIMESTAMP(6),
+    total_amount     FLOAT(53),
+    version          BIGINT DEFAULT 0 NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS product_item (
+    id            BIGINT NOT NULL PRIMARY KEY,
+    receipt_id    BIGINT,
+    product_name  CHARACTER VARYING(255),
+    category      CHARACTER VARYING(255),
+    sub_category  CHARACTER VARYING(255),
+    quantity      FLOAT(53),
+    unit          CHARACTER VARYING(255),
+    unit_price    FLOAT(53),
+    total_price   FLOAT(53),
+    CONSTRAINT fk_product_item_receipt FOREIGN KEY (receipt_id) REFERENCES receipt (id)
+);
+
+CREATE TABLE IF NOT EXISTS family_profiles (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    household_id   BIGINT DEFAULT 1 NOT NULL,
+    adults_count   INTEGER NOT NULL,
+    children_count INTEGER NOT NULL,
+    monthly_budget NUMERIC(10, 2) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS item_adjustments (
+    id                BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    household_id      BIGINT DEFAULT 1 NOT NULL,
+    item_name         CHARACTER VARYING(255) NOT NULL,
+    adjustment_factor FLOAT(53) NOT NULL
+);
+
+CREATE TABLE IF NOT EXISTS extraction_cache (
+    cache_key        CHARACTER VARYING(100) NOT NULL PRIMARY KEY,
+    extracted_json   CHARACTER LARGE OBJECT NOT NULL,
+    size_bytes       INTEGER,
+    created_at       TIMESTAMP(6),
+    last_accessed_at TIMESTAMP(6)
+);
+
+-- Colunas que vieram depois da primeira versão (bancos criados antes do multi-família / do controle de versão)
+ALTER TABLE receipt ADD COLUMN IF NOT EXISTS household_id BIGINT DEFAULT 1 NOT NULL;
+ALTER TABLE receipt ADD COLUMN IF NOT EXISTS version BIGINT DEFAULT 0 NOT NULL;
+ALTER TABLE family_profiles ADD COLUMN IF NOT EXISTS household_id BIGINT DEFAULT 1 NOT NULL;
+ALTER TABLE item_adjustments ADD COLUMN IF NOT EXISTS household_id BIGINT DEFAULT 1 NOT NULL;
+
+CREATE INDEX IF NOT EXISTS idx_receipt_household_date ON receipt (household_id, date, id);
+CREATE INDEX IF NOT EXISTS idx_family_profiles_household ON family_profiles (household_id);
+ALTER TABLE item_adjustments ADD CONSTRAINT IF NOT EXISTS uk_item_adjustments_household_item UNIQUE (household_id, item_name);
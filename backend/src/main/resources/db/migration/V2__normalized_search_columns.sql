@@ -0,0 +1,18 @@
+-- Colunas normalizadas (maiúsculas) para as buscas que ignoram maiúsculas/minúsculas.
+-- Antes as queries faziam UPPER(coluna) = UPPER(?) / LOWER(coluna) LIKE ..., o que obriga o banco a
+-- calcular a função em toda linha e impede o uso de índice. As colunas são calculadas pelo próprio banco
+-- (GENERATED ALWAYS), então ficam corretas em qualquer caminho de escrita (JPA, importação, JDBC).
+
+ALTER TABLE product_item ADD COLUMN IF NOT EXISTS product_name_norm CHARACTER VARYING(255) GENERATED ALWAYS AS (UPPER(product_name));
+ALTER TABLE product_item ADD COLUMN IF NOT EXISTS category_norm CHARACTER VARYING(255) GENERATED ALWAYS AS (UPPER(category));
+ALTER TABLE product_item ADD COLUMN IF NOT EXISTS sub_category_norm CHARACTER VARYING(255) GENERATED ALWAYS AS (UPPER(sub_category));
+ALTER TABLE item_adjustments ADD COLUMN IF NOT EXISTS item_name_norm CHARACTER VARYING(255) GENERATED ALWAYS AS (UPPER(item_name));
+
+-- Itens de uma nota filtrados por categoria (lista de essenciais do planejador: JOIN pela nota + categoria)
+CREATE INDEX IF NOT EXISTS idx_product_item_receipt_category ON product_item (receipt_id, category_norm);
+-- Histórico de preço por subcategoria (igualdade) e agregação/agrupamento por nome
+CREATE INDEX IF NOT EXISTS idx_product_item_sub_category ON product_item (sub_category_norm);
+CREATE INDEX IF NOT EXISTS idx_product_item_product_name ON product_item (product_name_norm);
+CREATE INDEX IF NOT EXISTS idx_product_item_category ON product_item (category_norm);
+-- Ajuste de um item da família (feedback do planejador)
+CREATE INDEX IF NOT EXISTS idx_item_adjustments_household_item_norm ON item_adjustments (household_id, item_name_norm);
@@ -0,0 +1,37 @@
+-- Gastos mensais já agregados por família, dimensão (categoria, mercado, subcategoria) e valor da dimensão.
+-- Mantida incrementalmente a cada nota salva/editada/excluída (SpendingRollupService); o dashboard lê só daqui.
+-- As regras de chave e valor são as mesmas de SpendingRollupService/SpendingRollupRepository.
+
+CREATE TABLE IF NOT EXISTS spending_rollup (
+    household_id BIGINT NOT NULL,
+    dimension    CHARACTER VARYING(20) NOT NULL,
+    month_start  DATE NOT NULL,
+    dim_key      CHARACTER VARYING(255) NOT NULL,
+    total_spent  NUMERIC(14, 2) NOT NULL,
+    item_count   BIGINT NOT NULL,
+    PRIMARY KEY (household_id, dimension, month_start, dim_key)
+);
+
+-- Carga inicial com o histórico existente (uma linha por item na subconsulta, agrupada por fora)
+INSERT INTO spending_rollup (household_id, dimension, month_start, dim_key, total_spent, item_count)
+SELECT household_id, dimension, month_start, dim_key, SUM(amount), COUNT(*)
+FROM (
+    SELECT r.household_id, 'CATEGORY' AS dimension, CAST(DATE_TRUNC('MONTH', r.date) AS DATE) AS month_start,
+           COALESCE(NULLIF(UPPER(TRIM(p.category)), ''), 'NAO_INFORMADO') AS dim_key,
+           CAST(ROUND(COALESCE(p.total_price, p.unit_price * p.quantity, 0), 2) AS NUMERIC(14, 2)) AS amount
+    FROM product_item p JOIN receipt r ON r.id = p.receipt_id
+    WHERE r.date IS NOT NULL
+    UNION ALL
+    SELECT r.household_id, 'SUPERMARKET', CAST(DATE_TRUNC('MONTH', r.date) AS DATE),
+           COALESCE(NULLIF(UPPER(TRIM(r.supermarket_name)), ''), 'NAO_INFORMADO'),
+           CAST(ROUND(COALESCE(p.total_price, p.unit_price * p.quantity, 0), 2) AS NUMERIC(14, 2))
+    FROM product_item p JOIN receipt r ON r.id = p.receipt_id
+    WHERE r.date IS NOT NULL
+    UNION ALL
+    SELECT r.household_id, 'SUB_CATEGORY', CAST(DATE_TRUNC('MONTH', r.date) AS DATE),
+           COALESCE(NULLIF(UPPER(TRIM(p.sub_category)), ''), 'NAO_INFORMADO'),
+           CAST(ROUND(COALESCE(p.total_price, p.unit_price * p.quantity, 0), 2) AS NUMERIC(14, 2))
+    FROM product_item p JOIN receipt r ON r.id = p.receipt_id
+    WHERE r.date IS NOT NULL
+) items
+GROUP BY household_id, dimension, month_start, dim_key;
@@ -0,0 +1,32 @@
+-- Catálogo canônico de produtos. Cada item de nota aponta para um produto do catálogo (product_item.catalog_product_id),
+-- e histórico, preços e planejador agrupam pelo id (igualdade de inteiro, com índice) em vez de comparar textos livres.
+-- A chave é o nome genérico normalizado (sem acento/maiúsculas, ver TextNormalizer), ex: "feijao" para "Feijão".
+CREATE TABLE IF NOT EXISTS catalog_product (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    normalized_key CHARACTER VARYING(255) NOT NULL,
+    display_name   CHARACTER VARYING(255) NOT NULL,
+    sub_category   CHARACTER VARYING(255),
+    category       CHARACTER VARYING(255),
+    CONSTRAINT uk_catalog_product_key UNIQUE (normalized_key)
+);
+
+-- Variantes de marca/tamanho (nome do item normalizado) -> produto do catálogo.
+-- Ex: "leite integral italac 1l" -> Leite. Um nome já visto vai sempre para o mesmo produto,
+-- mesmo que a IA devolva outra subcategoria na próxima nota.
+CREATE TABLE IF NOT EXISTS catalog_alias (
+    id                 BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    alias_key          CHARACTER VARYING(255) NOT NULL,
+    catalog_product_id BIGINT NOT NULL,
+    CONSTRAINT uk_catalog_alias_key UNIQUE (alias_key),
+    CONSTRAINT fk_catalog_alias_product FOREIGN KEY (catalog_product_id) REFERENCES catalog_product (id)
+);
+
+ALTER TABLE product_item ADD COLUMN IF NOT EXISTS catalog_product_id BIGINT;
+-- Histórico/série de preços de um produto: itens do produto, depois JOIN na nota pela chave primária.
+-- Criado antes da FK para o H2 reaproveitá-lo em vez de criar um índice próprio para a constraint
+CREATE INDEX IF NOT EXISTS idx_product_item_catalog_product ON product_item (catalog_product_id);
+ALTER TABLE product_item ADD CONSTRAINT IF NOT EXISTS fk_product_item_catalog_product
+    FOREIGN KEY (catalog_product_id) REFERENCES catalog_product (id);
+
+-- Os itens já existentes são ligados ao catálogo pela migração V6 (ProductCatalogBackfillMigration, em Java,
+-- porque a normalização sem acento não existe no SQL do H2)
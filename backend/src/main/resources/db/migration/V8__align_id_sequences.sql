@@ -0,0 +1,7 @@
+-- Receipt e ProductItem usavam IDENTITY antes das sequences (V1). Num banco antigo (baseline-on-migrate) a V1
+-- cria as sequences começando em 1, abaixo dos ids que já existem: aqui elas passam para depois do maior id.
+-- O otimizador pooled do Hibernate (allocationSize = 50) usa os ids (valor - 49 .. valor), daí o + 50.
+-- Num banco novo ou já alinhado nada muda de fato: nenhum id acima do maior foi gravado.
+
+ALTER SEQUENCE receipt_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM receipt);
+ALTER SEQUENCE product_item_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 50 FROM product_item);
@@ -0,0 +1,161 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.config.QueryCountingInspector;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Planos de execução (EXPLAIN do H2) das consultas que ignoram maiúsculas, antes e depois das colunas
+ * normalizadas da migração V2 (e do catálogo da V5). O "antes" é a forma antiga, com UPPER na coluna. O "depois" é o SQL
+ * que o Hibernate gera de verdade para o método do repositório (capturado pelo StatementInspector) ou, para as leituras
+ * de preço que hoje vêm do retrato colunar, a consulta de referência usada nos benchmarks (ReferenceItemQueries).
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:query-plan;DB_CLOSE_DELAY=-1",
+		"spring.jpa.show-sql=false",
+		"spring.jpa.properties.hibernate.session_factory.statement_inspector=com.techchallenge.marketlens.repository.QueryPlanTest$CapturingInspector"
+})
+class QueryPlanTest {
+
+	private static final LocalDateTime START = LocalDateTime.of(2026, 1, 1, 10, 0);
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Autowired
+	private ItemAdjustmentRepository adjustmentRepository;
+
+	// Guarda o SQL preparado pelo Hibernate, mantendo a contagem por requisição da aplicação
+	public static class CapturingInspector extends QueryCountingInspector {
+
+		static final List<String> CAPTURED = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public String inspect(String sql) {
+			CAPTURED.add(sql);
+			return super.inspect(sql);
+		}
+	}
+
+	@BeforeEach
+	void seed() {
+		if (jdbcTemplate.queryForObject("SELECT COUNT(*) FROM receipt", Integer.class) > 0) {
+			return;
+		}
+		String[][] catalog = {
+				{"MERCEARIA", "Arroz"}, {"MERCEARIA", "Feijão"}, {"LATICINIOS", "Leite"}, {"LIMPEZA", "Detergente"},
+				{"HIGIENE", "Sabonete"}, {"HORTIFRUTI", "Banana"}, {"BEBIDAS", "Refrigerante"}, {"ACOGUE", "Frango"}
+		};
+		// Catálogo: produto i+1 = subcategoria catalog[i]
+		List<Object[]> products = new ArrayList<>();
+		for (int i = 0; i < catalog.length; i++) {
+			products.add(new Object[] {i + 1L, TextNormalizer.fold(catalog[i][1]), catalog[i][1], catalog[i][1], catalog[i][0]});
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO catalog_product (id, normalized_key, display_name, sub_category, category) VALUES (?, ?, ?, ?, ?)", products);
+
+		List<Object[]> receipts = new ArrayList<>();
+		List<Object[]> items = new ArrayList<>();
+		long itemId = 1;
+		for (long receiptId = 1; receiptId <= 400; receiptId++) {
+			receipts.add(new Object[] {receiptId, receiptId % 20 + 1, "Mercado " + receiptId % 5, START.plusDays(receiptId % 180), 100.0});
+			for (int i = 0; i < 10; i++) {
+				int productIndex = (int) ((receiptId + i) % catalog.length);
+				String[] product = catalog[productIndex];
+				String name = product[1] + " Marca " + i;
+				items.add(new Object[] {itemId++, receiptId, name, product[0], product[1], 1.0, "UN", 5.0 + i, 5.0 + i, productIndex + 1L,
+						TextNormalizer.fold(name), TextNormalizer.fold(product[0]), TextNormalizer.fold(product[1])});
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO receipt (id, household_id, supermarket_name, date, total_amount) VALUES (?, ?, ?, ?, ?)", receipts);
+		jdbcTemplate.batchUpdate("INSERT INTO product_item (id, receipt_id, product_name, category, sub_category, quantity, unit, unit_price, total_price, catalog_product_id, " +
+				"product_name_norm, category_norm, sub_category_norm) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)", items);
+
+		List<Object[]> adjustments = new ArrayList<>();
+		for (long household = 1; household <= 20; household++) {
+			for (String[] product : catalog) {
+				adjustments.add(new Object[] {household, product[1], TextNormalizer.fold(product[1]), 1.0});
+			}
+		}
+		jdbcTemplate.batchUpdate("INSERT INTO item_adjustments (household_id, item_name, item_name_norm, adjustment_factor) VALUES (?, ?, ?, ?)", adjustments);
+		jdbcTemplate.execute("ANALYZE");
+	}
+
+	@Test
+	void priceSeriesBySubCategoryUsesNormalizedIndex() {
+		String before = explain("SELECT p.id, r.date FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+				"WHERE UPPER(p.sub_category) = UPPER(?) ORDER BY r.date", "leite");
+		String after = explain(ReferenceItemQueries.PRICE_POINTS_BY_SUB_CATEGORY, "leite");
+
+		assertTrue(before.contains("tableScan"), before);
+		assertFalse(before.contains("IDX_PRODUCT_ITEM_SUB_CATEGORY"), before);
+		assertTrue(after.contains("IDX_PRODUCT_ITEM_SUB_CATEGORY"), after);
+		assertFalse(after.contains("tableScan"), after);
+	}
+
+	@Test
+	void priceSeriesByCatalogProductUsesIntegerIndex() {
+		String before = explain("SELECT p.id, r.date FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+				"WHERE UPPER(p.sub_category) = UPPER(?) ORDER BY r.date", "leite");
+		String after = explain(ReferenceItemQueries.PRICE_POINTS_BY_CATALOG_PRODUCT, 3L);
+
+		assertTrue(before.contains("tableScan"), before);
+		assertTrue(after.contains("IDX_PRODUCT_ITEM_CATALOG_PRODUCT"), after);
+		assertFalse(after.contains("tableScan"), after);
+	}
+
+	@Test
+	void essentialItemsUseHouseholdDateAndReceiptCategoryIndexes() {
+		LocalDateTime since = START.plusDays(120);
+		String before = explain("SELECT DISTINCT p.product_name FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+				"WHERE r.household_id = ? AND r.date >= ? AND UPPER(p.category) IN ('MERCEARIA', 'LIMPEZA', 'HIGIENE', 'LATICINIOS')", 1L, since);
+		String after = explain(ReferenceItemQueries.ESSENTIAL_ITEMS_SINCE, 1L, since);
+
+		assertFalse(before.contains("IDX_PRODUCT_ITEM_RECEIPT_CATEGORY"), before);
+		assertTrue(after.contains("IDX_RECEIPT_HOUSEHOLD_DATE"), after);
+		assertTrue(after.contains("IDX_PRODUCT_ITEM_RECEIPT_CATEGORY"), after);
+		assertFalse(after.contains("tableScan"), after);
+	}
+
+	@Test
+	void adjustmentLookupUsesNormalizedIndex() {
+		String before = explain("SELECT a.* FROM item_adjustments a WHERE a.household_id = ? AND UPPER(a.item_name) = UPPER(?)", 3L, "arroz");
+		String after = explain(capture(() -> adjustmentRepository.findByHouseholdIdAndItemNameNorm(3L, "arroz")), 3L, "arroz");
+
+		assertFalse(before.contains("IDX_ITEM_ADJUSTMENTS_HOUSEHOLD_ITEM_NORM"), before);
+		assertTrue(after.contains("IDX_ITEM_ADJUSTMENTS_HOUSEHOLD_ITEM_NORM"), after);
+		// A chave chega já normalizada: a condição de índice cobre família e nome
+		assertTrue(after.contains("ITEM_NAME_NORM = ?2"), after);
+	}
+
+	// Executa o método do repositório e devolve o primeiro SELECT que o Hibernate gerou para ele
+	// (os seguintes, se houver, são as notas carregadas pelo @ManyToOne)
+	private static String capture(Runnable repositoryCall) {
+		CapturingInspector.CAPTURED.clear();
+		repositoryCall.run();
+		synchronized (CapturingInspector.CAPTURED) {
+			for (String sql : CapturingInspector.CAPTURED) {
+				if (sql.trim().toLowerCase().startsWith("select")) {
+					return sql;
+				}
+			}
+		}
+		throw new AssertionError("Nenhum SELECT capturado");
+	}
+
+	private String explain(String sql, Object... args) {
+		// O plano (que já traz o SQL) vai como mensagem dos asserts: aparece só quando um deles falha
+		return jdbcTemplate.queryForObject("EXPLAIN " + sql, String.class, args);
+	}
+}
@@ -0,0 +1,116 @@
+package com.techchallenge.marketlens.repository;
+
+import com.techchallenge.marketlens.service.HistoricalPriceSnapshot;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * As leituras analíticas feitas direto no banco, como eram antes do retrato colunar (ProductItemColumnStore).
+ * Servem de referência: o ProductItemColumnStoreTest confere que o retrato responde igual, o QueryPlanTest
+ * confere os índices que elas usam e os benchmarks (src/jmh) medem uma contra o outro.
+ *
+ * Os textos comparados com as colunas *_norm passam antes pelo TextNormalizer.fold, como na gravação.
+ */
+public final class ReferenceItemQueries {
+
+	private static final String POINTS = "SELECT p.id, p.product_name, p.unit_price, r.date, r.supermarket_name " +
+			"FROM product_item p JOIN receipt r ON r.id = p.receipt_id ";
+
+	public static final String PRICE_POINTS_BY_PRODUCT_NAME = POINTS +
+			"WHERE p.product_name_norm LIKE CONCAT('%', ?, '%') ORDER BY r.date";
+
+	public static final String PRICE_POINTS_BY_SUB_CATEGORY = POINTS +
+			"WHERE p.sub_category_norm = ? ORDER BY r.date";
+
+	public static final String PRICE_POINTS_BY_HOUSEHOLD_AND_SUB_CATEGORY = POINTS +
+			"WHERE r.household_id = ? AND p.sub_category_norm = ? ORDER BY r.date";
+
+	public static final String PRICE_POINTS_BY_CATALOG_PRODUCT = POINTS +
+			"WHERE p.catalog_product_id = ? ORDER BY r.date";
+
+	private static final String DAYS = "SELECT CAST(r.date AS DATE), r.supermarket_name, " +
+			"MIN(p.unit_price), MAX(p.unit_price), SUM(p.unit_price), COUNT(p.unit_price) " +
+			"FROM product_item p JOIN receipt r ON r.id = p.receipt_id WHERE p.unit_price IS NOT NULL AND ";
+	private static final String BY_DAY = " GROUP BY CAST(r.date AS DATE), r.supermarket_name ORDER BY CAST(r.date AS DATE)";
+
+	public static final String DAILY_PRICES_BY_PRODUCT_NAME = DAYS + "p.product_name_norm LIKE CONCAT('%', ?, '%')" + BY_DAY;
+
+	public static final String DAILY_PRICES_BY_SUB_CATEGORY = DAYS + "p.sub_category_norm = ?" + BY_DAY;
+
+	public static final String DAILY_PRICES_BY_CATALOG_PRODUCT = DAYS + "p.catalog_product_id = ?" + BY_DAY;
+
+	public static final String PRODUCT_TOTALS = "SELECT p.product_name_norm, SUM(p.unit_price), COUNT(p.unit_price) " +
+			"FROM product_item p WHERE p.unit_price IS NOT NULL AND p.product_name_norm IS NOT NULL GROUP BY p.product_name_norm";
+
+	public static final String ESSENTIAL_ITEMS_SINCE = "SELECT DISTINCT p.product_name " +
+			"FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+			"WHERE r.household_id = ? AND r.date >= ? AND p.category_norm IN ('mercearia', 'limpeza', 'higiene', 'laticinios')";
+
+	// Um preço pago (mesmos campos do PricePoint)
+	public record Point(Long id, String productName, Double price, LocalDateTime date, String supermarket) {}
+
+	// Preços de um dia num mercado (mesmos campos do DailyPriceAggregate)
+	public record Day(LocalDate day, String supermarket, Double minPrice, Double maxPrice, Double priceSum, Long priceCount) {}
+
+	private final JdbcTemplate jdbcTemplate;
+
+	public ReferenceItemQueries(JdbcTemplate jdbcTemplate) {
+		this.jdbcTemplate = jdbcTemplate;
+	}
+
+	public List<Point> pricePointsByProductName(String name) {
+		return points(PRICE_POINTS_BY_PRODUCT_NAME, TextNormalizer.fold(name));
+	}
+
+	public List<Point> pricePointsBySubCategory(String subCategory) {
+		return points(PRICE_POINTS_BY_SUB_CATEGORY, TextNormalizer.fold(subCategory));
+	}
+
+	public List<Point> pricePointsBySubCategory(Long householdId, String subCategory) {
+		return points(PRICE_POINTS_BY_HOUSEHOLD_AND_SUB_CATEGORY, householdId, TextNormalizer.fold(subCategory));
+	}
+
+	public List<Point> pricePointsByCatalogProduct(Long catalogProductId) {
+		return points(PRICE_POINTS_BY_CATALOG_PRODUCT, catalogProductId);
+	}
+
+	public List<Day> dailyPricesByProductName(String name) {
+		return days(DAILY_PRICES_BY_PRODUCT_NAME, TextNormalizer.fold(name));
+	}
+
+	public List<Day> dailyPricesBySubCategory(String subCategory) {
+		return days(DAILY_PRICES_BY_SUB_CATEGORY, TextNormalizer.fold(subCategory));
+	}
+
+	public List<Day> dailyPricesByCatalogProduct(Long catalogProductId) {
+		return days(DAILY_PRICES_BY_CATALOG_PRODUCT, catalogProductId);
+	}
+
+	public List<HistoricalPriceSnapshot.ProductTotal> productTotals() {
+		return jdbcTemplate.query(PRODUCT_TOTALS, (rs, row) ->
+				new HistoricalPriceSnapshot.ProductTotal(rs.getString(1), rs.getDouble(2), rs.getLong(3)));
+	}
+
+	public List<String> essentialItemsSince(Long householdId, LocalDateTime since) {
+		return jdbcTemplate.queryForList(ESSENTIAL_ITEMS_SINCE, String.class, householdId, since);
+	}
+
+	private List<Point> points(String sql, Object... args) {
+		return jdbcTemplate.query(sql, (rs, row) -> {
+			Timestamp date = rs.getTimestamp(4);
+			return new Point(rs.getLong(1), rs.getString(2), rs.getObject(3, Double.class),
+					date != null ? date.toLocalDateTime() : null, rs.getString(5));
+		}, args);
+	}
+
+	private List<Day> days(String sql, Object arg) {
+		return jdbcTemplate.query(sql, (rs, row) -> new Day(rs.getObject(1, LocalDate.class), rs.getString(2),
+				rs.getObject(3, Double.class), rs.getObject(4, Double.class), rs.getObject(5, Double.class),
+				rs.getLong(6)), arg);
+	}
+}
@@ -0,0 +1,54 @@
+package com.techchallenge.marketlens.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Cache de extração com a mesma validação da ingestão (ReceiptService.checkExtractedReceipt):
+ * uma resposta ruim da IA falha o upload, mas não fica guardada para os reenvios da mesma foto.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:extraction-cache-test;DB_CLOSE_DELAY=-1",
+		"spring.jpa.show-sql=false"
+})
+class ExtractionCacheServiceTest {
+
+	private static final String VALID = "{\"supermarketName\":\"Mercado\",\"totalAmount\":9.9,\"items\":[]}";
+
+	@Autowired
+	private ExtractionCacheService extractionCache;
+
+	@Autowired
+	private ReceiptService receiptService;
+
+	@Test
+	void badResponseIsNotServedOnTheNextUpload() {
+		AtomicInteger calls = new AtomicInteger();
+
+		// Resposta cortada no meio, ainda com a cerca de markdown
+		assertThrows(RuntimeException.class, () -> extractionCache.getOrCompute("foto-1", "v1", () -> {
+			calls.incrementAndGet();
+			return "```json\n{\"supermarketName\":\"Merc";
+		}, receiptService::checkExtractedReceipt));
+
+		// O reenvio chama a IA de novo e a resposta boa passa a ser a cacheada
+		String json = extractionCache.getOrCompute("foto-1", "v1", () -> {
+			calls.incrementAndGet();
+			return VALID;
+		}, receiptService::checkExtractedReceipt);
+		assertEquals(VALID, json);
+		assertEquals(2, calls.get());
+
+		assertEquals(VALID, extractionCache.getOrCompute("foto-1", "v1", () -> {
+			calls.incrementAndGet();
+			return "não deveria ser chamada";
+		}, receiptService::checkExtractedReceipt));
+		assertEquals(2, calls.get());
+	}
+}
@@ -0,0 +1,176 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.dto.ItemFeedbackDTO;
+import com.techchallenge.marketlens.repository.ItemAdjustmentWriteRepository;
+import com.techchallenge.marketlens.util.TextNormalizer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Feedback do planejador sob cliques simultâneos: o MERGE atômico não pode perder incrementos, nem no
+ * primeiro clique de um item (dois INSERTs disputando a unique key), nem com escrita adiada.
+ * Cada teste usa a sua família, no mesmo banco em memória.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:feedback-test;DB_CLOSE_DELAY=-1",
+		"spring.jpa.show-sql=false"
+})
+class FeedbackServiceTest {
+
+	private static final int THREADS = 16;
+	private static final int CLICKS_PER_THREAD = 50;
+
+	@Autowired
+	private FeedbackService feedbackService;
+
+	@Autowired
+	private ItemAdjustmentWriteRepository writeRepository;
+
+	@Autowired
+	private PlanCache planCache;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	@Test
+	void parallelClicksOnNewItemAreNotLost() throws Exception {
+		long household = 101;
+		runInParallel(() -> {
+			for (int i = 0; i < CLICKS_PER_THREAD; i++) {
+				feedbackService.record(household, "Arroz", 2.0);
+			}
+		});
+
+		assertEquals((double) THREADS * CLICKS_PER_THREAD, factor(household, "Arroz"));
+		assertEquals(1, rows(household));
+	}
+
+	@Test
+	void parallelBatchesAreNotLost() throws Exception {
+		long household = 102;
+		feedbackService.record(household, "Feijão", 2.0);
+		runInParallel(() -> {
+			for (int i = 0; i < CLICKS_PER_THREAD; i++) {
+				// "feijão" e "Feijão" são o mesmo ajuste (comparação sem maiúsculas, como na leitura)
+				feedbackService.recordBatch(household, List.of(
+						new ItemFeedbackDTO("Feijão", 2.0),
+						new ItemFeedbackDTO("feijão", 2.0),
+						new ItemFeedbackDTO("Feijão", 0.5),
+						new ItemFeedbackDTO("Café", 0.5)));
+			}
+		});
+
+		assertEquals(1.0 + THREADS * CLICKS_PER_THREAD, factor(household, "Feijão"));
+		assertEquals(-1.0 * THREADS * CLICKS_PER_THREAD, factor(household, "Café"));
+	}
+
+	@Test
+	void writeBehindCoalescesParallelClicks() throws Exception {
+		long household = 103;
+		SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+		FeedbackService writeBehind = new FeedbackService(writeRepository, planCache, transactionManager, true, Duration.ofHours(1),
+				meterRegistry);
+		try {
+			runInParallel(() -> {
+				for (int i = 0; i < CLICKS_PER_THREAD; i++) {
+					writeBehind.record(household, "Leite", 2.0);
+				}
+			});
+			assertNull(factor(household, "Leite")); // Ainda só em memória
+			assertEquals(1.0, meterRegistry.get("marketlens.feedback.pending").gauge().value());
+
+			writeBehind.flush(household);
+			assertEquals((double) THREADS * CLICKS_PER_THREAD, factor(household, "Leite"));
+			assertEquals(0.0, meterRegistry.get("marketlens.feedback.pending").gauge().value());
+		} finally {
+			writeBehind.shutdown();
+		}
+	}
+
+	@Test
+	void buttonRulesMatchTheClickSequence() {
+		long household = 104;
+		// Lixeira, depois ➕: sai da lixeira com 1
+		feedbackService.recordBatch(household, List.of(new ItemFeedbackDTO("Sabonete", 0.0), new ItemFeedbackDTO("Sabonete", 2.0)));
+		assertEquals(1.0, factor(household, "Sabonete"));
+
+		// Item na lixeira: ➖ não tira de lá
+		feedbackService.record(household, "Detergente", 0.0);
+		feedbackService.record(household, "Detergente", 0.5);
+		assertEquals(FeedbackService.TRASH, factor(household, "Detergente"));
+
+		// Lote com ➕ ➕ Lixeira ➕ sobre um item com fator 3: o efeito é o da sequência (1), não a soma
+		feedbackService.recordBatch(household, List.of(new ItemFeedbackDTO("Ovos", 2.0), new ItemFeedbackDTO("Ovos", 2.0),
+				new ItemFeedbackDTO("Ovos", 2.0)));
+		feedbackService.recordBatch(household, List.of(new ItemFeedbackDTO("Ovos", 2.0), new ItemFeedbackDTO("Ovos", 2.0),
+				new ItemFeedbackDTO("Ovos", 0.0), new ItemFeedbackDTO("Ovos", 2.0)));
+		assertEquals(1.0, factor(household, "Ovos"));
+
+		// Combinação de sequências = sequência inteira
+		FeedbackService.Adjustment plusMinus = FeedbackService.Adjustment.ofClick(2.0).then(FeedbackService.Adjustment.ofClick(0.5));
+		assertEquals(5.0, plusMinus.apply(5.0));
+		assertEquals(0.0, plusMinus.apply(FeedbackService.TRASH));
+	}
+
+	@Test
+	void accentAndCaseVariantsShareTheAdjustment() {
+		long household = 103;
+		feedbackService.record(household, "Feijão", 2.0);
+		feedbackService.record(household, "FEIJAO", 2.0);
+		feedbackService.record(household, " feijao  ", 2.0);
+
+		// Mesma chave do planejador (TextNormalizer.fold): uma linha só, com os três cliques
+		assertEquals(3.0, factor(household, "feijão"));
+		assertEquals(1, rows(household));
+	}
+
+	private void runInParallel(Runnable clicks) throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+		try {
+			CountDownLatch start = new CountDownLatch(1);
+			List<Future<?>> futures = new ArrayList<>();
+			for (int t = 0; t < THREADS; t++) {
+				futures.add(executor.submit(() -> {
+					start.await();
+					clicks.run();
+					return null;
+				}));
+			}
+			start.countDown();
+			for (Future<?> future : futures) {
+				future.get(); // Propaga qualquer exceção das threads
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private Double factor(long household, String itemName) {
+		List<Double> factors = jdbcTemplate.queryForList(
+				"SELECT adjustment_factor FROM item_adjustments WHERE household_id = ? AND item_name_norm = ?",
+				Double.class, household, TextNormalizer.fold(itemName));
+		return factors.isEmpty() ? null : factors.get(0);
+	}
+
+	private int rows(long household) {
+		return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM item_adjustments WHERE household_id = ?", Integer.class, household);
+	}
+}
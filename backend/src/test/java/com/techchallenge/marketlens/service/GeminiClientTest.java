@@ -0,0 +1,175 @@
+package com.techchallenge.marketlens.service;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+// GeminiClient contra um servidor HTTP local que faz o papel do Gemini (respostas roteirizadas)
+class GeminiClientTest {
+
+	private static final byte[] BODY = "{\"contents\":[]}".getBytes(StandardCharsets.UTF_8);
+
+	private HttpServer server;
+	private URI uri;
+	private final ConcurrentLinkedQueue<StubResponse> script = new ConcurrentLinkedQueue<>();
+	private final List<String> receivedBodies = new CopyOnWriteArrayList<>();
+	private final AtomicInteger requests = new AtomicInteger();
+	private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+	private GeminiClient client;
+
+	private record StubResponse(int status, String body, long delayMs) {}
+
+	@BeforeEach
+	void startServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		server.createContext("/generate", this::handle);
+		server.setExecutor(Executors.newCachedThreadPool());
+		server.start();
+		uri = URI.create("http://127.0.0.1:" + server.getAddress().getPort() + "/generate?key=test");
+	}
+
+	@AfterEach
+	void stopServer() throws IOException {
+		if (client != null) {
+			client.close();
+		}
+		server.stop(0);
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.incrementAndGet();
+		receivedBodies.add(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+		StubResponse response = script.poll();
+		if (response == null) {
+			response = new StubResponse(200, "ok", 0);
+		}
+		try {
+			Thread.sleep(response.delayMs());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		byte[] bytes = response.body().getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().add("Content-Type", "application/json; charset=UTF-8");
+		exchange.sendResponseHeaders(response.status(), bytes.length);
+		exchange.getResponseBody().write(bytes);
+		exchange.close();
+	}
+
+	private GeminiClient client(int maxAttempts, int failureThreshold, boolean hedging) {
+		return client(maxAttempts, failureThreshold, Duration.ofMinutes(1), hedging);
+	}
+
+	private GeminiClient client(int maxAttempts, int failureThreshold, Duration openDuration, boolean hedging) {
+		client = new GeminiClient(new GeminiClient.Settings(
+				Duration.ofSeconds(2), Duration.ofSeconds(5), 4, maxAttempts,
+				Duration.ofMillis(10), Duration.ofMillis(50), failureThreshold, openDuration,
+				hedging, 0.95, 3, Duration.ofMillis(100)), meterRegistry);
+		return client;
+	}
+
+	private long requestCount(String attempt, String outcome) {
+		return meterRegistry.get("marketlens.gemini.requests").tag("attempt", attempt).tag("outcome", outcome).timer().count();
+	}
+
+	private String post(GeminiClient client) {
+		return client.postJson(uri, BODY.length, out -> out.write(BODY));
+	}
+
+	@Test
+	void retriesServerErrorsAndResendsTheBody() {
+		script.add(new StubResponse(503, "indisponível", 0));
+		script.add(new StubResponse(503, "indisponível", 0));
+		script.add(new StubResponse(200, "{\"candidates\":[]}", 0));
+
+		assertEquals("{\"candidates\":[]}", post(client(3, 5, false)));
+		assertEquals(3, requests.get());
+		receivedBodies.forEach(body -> assertEquals(new String(BODY, StandardCharsets.UTF_8), body));
+
+		// Cada tentativa no timer com o seu número
+		assertEquals(1, requestCount("1", "SERVER_ERROR"));
+		assertEquals(1, requestCount("2", "SERVER_ERROR"));
+		assertEquals(1, requestCount("3", "SUCCESS"));
+	}
+
+	@Test
+	void doesNotRetryClientErrors() {
+		script.add(new StubResponse(400, "chave inválida", 0));
+
+		RestClientResponseException error = assertThrows(RestClientResponseException.class, () -> post(client(3, 5, false)));
+		assertEquals(400, error.getStatusCode().value());
+		assertEquals(1, requests.get());
+	}
+
+	@Test
+	void opensTheCircuitAfterRepeatedFailures() {
+		GeminiClient client = client(1, 2, false);
+		for (int i = 0; i < 2; i++) {
+			script.add(new StubResponse(500, "erro", 0));
+			assertThrows(GeminiUnavailableException.class, () -> post(client));
+		}
+		assertEquals(2, requests.get());
+
+		// Aberto: falha na hora, sem chegar ao servidor
+		GeminiUnavailableException error = assertThrows(GeminiUnavailableException.class, () -> post(client));
+		assertTrue(error.getMessage().contains("temporariamente indisponível"));
+		assertEquals(2, requests.get());
+	}
+
+	@Test
+	void unexpectedErrorInTheTrialCallReleasesTheHalfOpenCircuit() throws InterruptedException {
+		GeminiClient client = client(1, 1, Duration.ofMillis(100), false);
+		script.add(new StubResponse(500, "erro", 0));
+		assertThrows(GeminiUnavailableException.class, () -> post(client));
+
+		// Meio-aberto: a chamada de teste falha com uma exceção que não é de HTTP nem de rede
+		Thread.sleep(150);
+		assertThrows(IllegalStateException.class, () -> client.postJson(uri, BODY.length, out -> {
+			throw new IllegalStateException("falha ao montar o corpo");
+		}));
+
+		// Conta como falha (abre de novo) e, passado o tempo, uma nova chamada de teste é aceita e fecha o circuito
+		assertThrows(GeminiUnavailableException.class, () -> post(client));
+		Thread.sleep(150);
+		assertEquals("ok", post(client));
+		assertEquals("ok", post(client));
+	}
+
+	@Test
+	void hedgesSlowRequestsAndKeepsTheFastestResponse() {
+		GeminiClient client = client(1, 5, true);
+		// Histórico de latências baixas para o percentil (mínimo de 3 amostras)
+		for (int i = 0; i < 3; i++) {
+			post(client);
+		}
+		requests.set(0);
+
+		script.add(new StubResponse(200, "lenta", 3_000));
+		script.add(new StubResponse(200, "rápida", 0));
+
+		long start = System.nanoTime();
+		assertEquals("rápida", post(client));
+		long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+		assertEquals(2, requests.get());
+		assertTrue(elapsedMs < 2_000, "resposta veio da requisição lenta: " + elapsedMs + " ms");
+	}
+}
@@ -0,0 +1,275 @@
+package com.techchallenge.marketlens.service;
+
+import com.techchallenge.marketlens.domain.ProductItem;
+import com.techchallenge.marketlens.dto.ItemPatchDTO;
+import com.techchallenge.marketlens.dto.ReceiptItemsPatchDTO;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent;
+import com.techchallenge.marketlens.event.ReceiptChangedEvent.ItemSnapshot;
+import com.techchallenge.marketlens.repository.ItemSnapshotRepository;
+import com.techchallenge.marketlens.repository.ReferenceItemQueries;
+import com.techchallenge.marketlens.repository.projection.DailyPriceAggregate;
+import com.techchallenge.marketlens.repository.projection.PricePoint;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * O retrato colunar tem que responder igual às consultas do banco que ele substitui (ReferenceItemQueries),
+ * na subida e depois de importações, edições e exclusões aplicadas pelos eventos.
+ */
+@SpringBootTest(properties = {
+		"spring.datasource.url=jdbc:h2:mem:column-store;DB_CLOSE_DELAY=-1",
+		"spring.jpa.show-sql=false"
+})
+class ProductItemColumnStoreTest {
+
+	private static final String[][] PRODUCTS = {
+			{"Leite Integral Italac 1L", "LATICINIOS", "Leite"}, {"Leite Desnatado Piracanjuba", "LATICINIOS", "Leite"},
+			{"Arroz Tio João 5kg", "MERCEARIA", "Arroz"}, {"Feijão Carioca Camil", "MERCEARIA", "Feijão"},
+			{"Café Pilão 500g", "MERCEARIA", "Café"}, {"Detergente Ypê", "LIMPEZA", "Detergente"},
+			{"Sabonete Dove", "HIGIENE", "Sabonete"}, {"Cerveja Heineken", "BEBIDAS", "Cerveja"}
+	};
+	private static final String[] MARKETS = {"Mercado A", "Mercado B", "Atacadão"};
+	private static final List<String> KEYWORDS = List.of("leite", "ARROZ", "café", "dove", "não existe");
+	private static final List<String> SUB_CATEGORIES = List.of("Leite", "feijão", "CAFÉ", "Cerveja", "Leite Integral Italac 1L");
+
+	@Autowired
+	private ProductItemColumnStore columnStore;
+
+	@Autowired
+	private ReceiptImportService importService;
+
+	@Autowired
+	private ReceiptService receiptService;
+
+	@Autowired
+	private ItemSnapshotRepository snapshotRepository;
+
+	@Autowired
+	private PriceSeriesService priceSeriesService;
+
+	@Autowired
+	private ProductSearchIndex searchIndex;
+
+	@Autowired
+	private JdbcTemplate jdbcTemplate;
+
+	private ReferenceItemQueries reference;
+
+	@Test
+	void answersLikeTheDatabaseAfterImportsEditsAndDeletes() throws Exception {
+		reference = new ReferenceItemQueries(jdbcTemplate);
+		Random random = new Random(7);
+		importReceipts(1L, 40, random);
+		importReceipts(2L, 20, random);
+		assertMatchesDatabase();
+
+		// Edição de um item (renomeado: muda de produto do catálogo), edição em lote, cabeçalho e exclusão
+		Long itemId = jdbcTemplate.queryForObject("SELECT MIN(id) FROM product_item", Long.class);
+		ProductItem renamed = new ProductItem();
+		renamed.setProductName("Café Melitta 500g");
+		renamed.setCategory("MERCEARIA");
+		renamed.setSubCategory("Café");
+		renamed.setQuantity(2.0);
+		renamed.setUnit("UN");
+		renamed.setUnitPrice(18.9);
+		assertTrue(receiptService.updateItem(itemId, 1L, renamed).isPresent());
+
+		List<Long> receiptIds = jdbcTemplate.queryForList("SELECT id FROM receipt ORDER BY id", Long.class);
+		Long patchedReceipt = receiptIds.get(5);
+		ReceiptItemsPatchDTO patch = new ReceiptItemsPatchDTO();
+		List<ItemPatchDTO> items = new ArrayList<>();
+		for (Long id : jdbcTemplate.queryForList("SELECT id FROM product_item WHERE receipt_id = ?", Long.class, patchedReceipt)) {
+			ItemPatchDTO item = new ItemPatchDTO();
+			item.setId(id);
+			item.setUnitPrice(1.99);
+			items.add(item);
+		}
+		patch.setItems(items);
+		assertTrue(receiptService.patchItems(patchedReceipt, 1L, patch).isPresent());
+
+		assertTrue(receiptService.updateHeader(receiptIds.get(6), 1L, Map.of("supermarketName", "Mercado Novo",
+				"date", LocalDate.now().minusDays(3).toString())));
+		// Nota de outra família: tratada como inexistente, nada muda
+		assertFalse(receiptService.deleteReceipt(receiptIds.get(7), 2L));
+		assertFalse(receiptService.updateItem(itemId, 2L, renamed).isPresent());
+		assertTrue(receiptService.deleteReceipt(receiptIds.get(7), 1L));
+		assertTrue(receiptService.deleteReceipt(receiptIds.get(45), 2L));
+		assertMatchesDatabase();
+
+		// Muitos itens excluídos: o espaço das linhas removidas é recuperado (compactação) sem mudar as respostas
+		importReceipts(3L, 400, random);
+		assertMatchesDatabase();
+		for (Long receiptId : jdbcTemplate.queryForList("SELECT id FROM receipt WHERE household_id = 3", Long.class)) {
+			receiptService.deleteReceipt(receiptId, 3L);
+		}
+		assertMatchesDatabase();
+
+		// Remontado do zero (como na subida) dá o mesmo resultado
+		int sizeBefore = columnStore.size();
+		columnStore.rebuild();
+		assertEquals(sizeBefore, columnStore.size());
+		assertMatchesDatabase();
+
+		// Subida com tráfego: o commit já foi lido pela montagem e o evento dele só chega depois. Não duplica
+		Long lastReceipt = receiptIds.get(receiptIds.size() - 1);
+		List<ItemSnapshot> alreadyLoaded = new ArrayList<>();
+		snapshotRepository.forEach(item -> {
+			if (item.receiptId().equals(lastReceipt)) {
+				alreadyLoaded.add(item);
+			}
+		});
+		assertFalse(alreadyLoaded.isEmpty());
+		columnStore.onReceiptChanged(ReceiptChangedEvent.updated(lastReceipt, List.of(), alreadyLoaded));
+		assertMatchesDatabase();
+	}
+
+	private void assertMatchesDatabase() {
+		assertEquals(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM product_item", Integer.class), columnStore.size());
+
+		for (String keyword : KEYWORDS) {
+			List<PricePoint> points = columnStore.query().productNameContains(keyword).pricePoints();
+			assertEquals(pointKeys(reference.pricePointsByProductName(keyword)), pointKeys(toPoints(points)), keyword);
+			assertSortedByDate(points);
+			assertEquals(dayKeys(reference.dailyPricesByProductName(keyword)),
+					dayKeys(toDays(columnStore.query().productNameContains(keyword).dailyPrices())), keyword);
+		}
+
+		// Histórico por subcategoria (/category-history e /price-series): o texto da subcategoria de cada item,
+		// não o produto do catálogo (um nome de variante não é subcategoria e não traz nada), só das notas da família
+		for (String subCategory : SUB_CATEGORIES) {
+			for (long household : new long[] {1L, 2L, 3L}) {
+				List<PricePoint> points = priceSeriesService.rawBySubCategory(household, subCategory);
+				assertEquals(pointKeys(reference.pricePointsBySubCategory(household, subCategory)), pointKeys(toPoints(points)),
+						household + " " + subCategory);
+				assertSortedByDate(points);
+			}
+			assertEquals(dayKeys(reference.dailyPricesBySubCategory(subCategory)),
+					dayKeys(toDays(columnStore.query().subCategory(subCategory).dailyPrices())), subCategory);
+		}
+		assertTrue(priceSeriesService.rawBySubCategory(4L, "Leite").isEmpty()); // Família sem notas
+		assertTrue(priceSeriesService.rawBySubCategory(1L, "Leite Integral Italac 1L").isEmpty());
+
+		// Autocomplete (/search, /search-smart): só os produtos que a família comprou, com a frequência dela
+		for (long household : new long[] {1L, 2L, 3L, 4L}) {
+			Map<String, Long> expected = new HashMap<>();
+			jdbcTemplate.query("SELECT p.product_name, COUNT(*) FROM product_item p JOIN receipt r ON r.id = p.receipt_id " +
+					"WHERE r.household_id = ? AND p.product_name_norm LIKE '%leite%' GROUP BY p.product_name",
+					rs -> { expected.put(rs.getString(1), rs.getLong(2)); }, household);
+			Map<String, Long> actual = new HashMap<>();
+			searchIndex.search(household, "LEITE", ProductSearchIndex.TermType.PRODUTO, 10)
+					.forEach(hit -> actual.put(hit.name(), hit.frequency()));
+			assertEquals(expected, actual, "busca da família " + household);
+		}
+
+		List<Long> catalogIds = jdbcTemplate.queryForList("SELECT DISTINCT catalog_product_id FROM product_item WHERE catalog_product_id IS NOT NULL", Long.class);
+		assertFalse(catalogIds.isEmpty());
+		for (Long catalogId : catalogIds) {
+			List<PricePoint> points = columnStore.query().catalogProduct(catalogId).pricePoints();
+			assertEquals(pointKeys(reference.pricePointsByCatalogProduct(catalogId)), pointKeys(toPoints(points)));
+			assertSortedByDate(points);
+			assertEquals(dayKeys(reference.dailyPricesByCatalogProduct(catalogId)),
+					dayKeys(toDays(columnStore.query().catalogProduct(catalogId).dailyPrices())));
+		}
+
+		// Preços do planejador: mesma média por palavra-chave que a agregação no banco
+		HistoricalPriceSnapshot fromDatabase = new HistoricalPriceSnapshot(reference.productTotals());
+		HistoricalPriceSnapshot fromStore = HistoricalPriceSnapshot.of(columnStore.query().groupBy(ProductItemColumnStore.Dimension.PRODUCT_NAME));
+		for (String keyword : KEYWORDS) {
+			Double expected = fromDatabase.averageFor(keyword);
+			Double actual = fromStore.averageFor(keyword);
+			if (expected == null) {
+				assertEquals(null, actual, keyword);
+			} else {
+				assertEquals(expected, actual, 1e-9, keyword);
+			}
+		}
+
+		// Essenciais da família (as datas da massa evitam o dia exato do corte de 60 dias)
+		for (long household : new long[] {1L, 2L, 3L}) {
+			assertEquals(new HashSet<>(reference.essentialItemsSince(household, LocalDateTime.now().minusDays(60))),
+					new HashSet<>(columnStore.query().household(household)
+							.categories(List.of("MERCEARIA", "LIMPEZA", "HIGIENE", "LATICINIOS"))
+							.between(LocalDate.now().minusDays(60), null)
+							.distinctProductNames()));
+		}
+	}
+
+	private void importReceipts(long household, int receipts, Random random) throws Exception {
+		StringBuilder ndjson = new StringBuilder();
+		for (int r = 0; r < receipts; r++) {
+			int daysAgo = random.nextInt(100);
+			if (daysAgo >= 59 && daysAgo <= 61) {
+				daysAgo += 5;
+			}
+			LocalDateTime date = LocalDate.now().minusDays(daysAgo).atTime(8 + random.nextInt(12), random.nextInt(60));
+			ndjson.append("{\"supermarketName\":\"").append(MARKETS[random.nextInt(MARKETS.length)])
+					.append("\",\"date\":\"").append(date).append("\",\"totalAmount\":50.0,\"items\":[");
+			int items = 1 + random.nextInt(6);
+			for (int i = 0; i < items; i++) {
+				String[] product = PRODUCTS[random.nextInt(PRODUCTS.length)];
+				// Alguns itens sem preço: ficam nos pontos "crus", mas fora das médias e séries
+				String price = random.nextInt(10) == 0 ? "null" : String.valueOf(Math.round((2 + random.nextDouble() * 20) * 100) / 100.0);
+				ndjson.append(i > 0 ? "," : "").append("{\"productName\":\"").append(product[0])
+						.append("\",\"category\":\"").append(product[1]).append("\",\"subCategory\":\"").append(product[2])
+						.append("\",\"quantity\":1.0,\"unit\":\"UN\",\"unitPrice\":").append(price)
+						.append(",\"totalPrice\":").append(price).append("}");
+			}
+			ndjson.append("]}\n");
+		}
+		importService.importNdjson(new ByteArrayInputStream(ndjson.toString().getBytes(StandardCharsets.UTF_8)), household);
+	}
+
+	private static List<ReferenceItemQueries.Point> toPoints(List<PricePoint> points) {
+		return points.stream()
+				.map(p -> new ReferenceItemQueries.Point(p.getId(), p.getProductName(), p.getPrice(), p.getDate(), p.getSupermarket()))
+				.toList();
+	}
+
+	private static List<ReferenceItemQueries.Day> toDays(List<DailyPriceAggregate> days) {
+		return days.stream()
+				.map(d -> new ReferenceItemQueries.Day(d.getDay(), d.getSupermarket(), d.getMinPrice(), d.getMaxPrice(),
+						d.getPriceSum(), d.getPriceCount()))
+				.toList();
+	}
+
+	// Compara como conjunto: empates de data podem vir em ordem diferente
+	private static List<String> pointKeys(List<ReferenceItemQueries.Point> points) {
+		return points.stream()
+				.map(p -> p.id() + "|" + p.productName() + "|" + p.price() + "|" + p.date() + "|" + p.supermarket())
+				.sorted()
+				.toList();
+	}
+
+	// Somas arredondadas: a ordem de soma dos preços muda os últimos bits
+	private static List<String> dayKeys(List<ReferenceItemQueries.Day> days) {
+		return days.stream()
+				.map(d -> d.day() + "|" + d.supermarket() + "|" + d.minPrice() + "|" + d.maxPrice() + "|"
+						+ Math.round(d.priceSum() * 1e6) + "|" + d.priceCount())
+				.sorted()
+				.toList();
+	}
+
+	private static void assertSortedByDate(List<PricePoint> points) {
+		List<PricePoint> sorted = new ArrayList<>(points);
+		sorted.sort(Comparator.comparing(PricePoint::getDate, Comparator.nullsFirst(Comparator.naturalOrder())));
+		assertEquals(sorted.stream().map(PricePoint::getDate).toList(), points.stream().map(PricePoint::getDate).toList());
+	}
+}
@@ -12,6 +12,17 @@ const ReceiptUpload = ({ onUploadSuccess }) => {
     setError(null);
   };
 
+  // Consulta o status do job a cada 1.5s até terminar (DONE ou FAILED)
+  const waitForJob = async (jobId) => {
+    while (true) {
+      await new Promise((resolve) => setTimeout(resolve, 1500));
+      const { data: job } = await axios.get(`http://localhost:8080/api/receipts/jobs/${jobId}`);
+
+      if (job.status === 'DONE') return job;
+      if (job.status === 'FAILED') throw new Error(job.error);
+    }
+  };
+
   const handleUpload = async () => {
     if (!file) return;
 
@@ -22,16 +33,24 @@ const ReceiptUpload = ({ onUploadSuccess }) => {
     formData.append('file', file);
 
     try {
-      // Chama o Backend Java na porta 8080
+      // Chama o Backend Java na porta 8080 (responde 202 na hora com o id do job)
       const response = await axios.post('http://localhost:8080/api/receipts/upload', formData, {
         headers: { 'Content-Type': 'multipart/form-data' },
       });
-      
-      onUploadSuccess(response.data); // Passa o JSON para o pai (App.jsx)
+
+      // Acompanha o processamento da IA até a nota ser salva
+      const job = await waitForJob(response.data.jobId);
+      const receipt = await axios.get(`http://localhost:8080/api/receipts/${job.receiptId}`);
+
+      onUploadSuccess(receipt.data); // Passa o JSON para o pai (App.jsx)
       setFile(null); // Limpa o input
     } catch (err) {
       console.error(err);
-      setError('Erro ao processar imagem. Verifique se o Backend está rodando.');
+      if (err.response?.status === 429) {
+        setError('Muitas notas sendo processadas agora. Tente novamente em alguns segundos.');
+      } else {
+        setError('Erro ao processar imagem. Verifique se o Backend está rodando.');
+      }
     } finally {
       setLoading(false);
     }